@@ -0,0 +1,25 @@
+#!/bin/sh
+#
+# Starts the peptide scan collector with a class data sharing archive of its classes.
+# The archive is created by a training run (Java 13 or newer):
+#
+#   psc.sh --create-archive -jobs training_jobs.txt -psm "DB search psm.csv" -out /tmp/training/
+#
+# Later runs load the classes of the tool and commons-cli from the archive. Without an archive, or when the archive was
+# created by another Java version, the tool starts as usual. Set PSC_ARCHIVE to use another archive path and JAVA_OPTS
+# for other virtual machine options.
+#
+DIST=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIST/PeptideScanComparator.jar"
+ARCHIVE=${PSC_ARCHIVE:-"$DIST/PeptideScanComparator.jsa"}
+JAVA=${JAVA_HOME:+"$JAVA_HOME/bin/"}java
+
+if [ "$1" = "--create-archive" ]; then
+    shift
+    rm -f "$ARCHIVE"
+    exec "$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" $JAVA_OPTS -jar "$JAR" "$@"
+elif [ -f "$ARCHIVE" ]; then
+    exec "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto $JAVA_OPTS -jar "$JAR" "$@"
+else
+    exec "$JAVA" $JAVA_OPTS -jar "$JAR" "$@"
+fi
@@ -0,0 +1,189 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package benchmark;
+
+import collection.creator.DelimiterScanner;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the split based field parsing of psm lines with the DelimiterScanner.
+ * Both parsers find the peptide, score, scan ID and accession fields of each line, split the scan ID on the colon and split
+ * the accessions on colons. Each parser runs a few warmup rounds before the measured rounds.
+ *
+ * Usage: java -cp PeptideScanComparator.jar benchmark.DelimiterBenchmark [psm file] [rounds]
+ * Without a psm file a file with 200000 generated rows is used.
+ *
+ * @author vnijenhuis
+ */
+public class DelimiterBenchmark {
+
+    /**
+     * Amount of rounds before the measured rounds.
+     */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * Column index of the peptide sequence.
+     */
+    private static final int SEQUENCE = 0;
+
+    /**
+     * Column index of the -10lgP score.
+     */
+    private static final int SCORE = 1;
+
+    /**
+     * Column index of the scan ID.
+     */
+    private static final int SCAN = 10;
+
+    /**
+     * Column index of the accessions.
+     */
+    private static final int ACCESSION = 12;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional psm file and amount of measured rounds.
+     * @throws IOException could not read the psm file.
+     */
+    public static void main(final String[] args) throws IOException {
+        byte[] content;
+        if (args.length > 0) {
+            content = Files.readAllBytes(Paths.get(args[0]));
+        } else {
+            content = generateContent(200000);
+        }
+        int rounds = 10;
+        if (args.length > 1) {
+            rounds = Integer.parseInt(args[1]);
+        }
+        DelimiterBenchmark benchmark = new DelimiterBenchmark();
+        double splitTime = benchmark.measure(content, rounds, false);
+        double scannerTime = benchmark.measure(content, rounds, true);
+        System.out.println(String.format(Locale.ROOT, "Split:   %.2f ms per round, %.1f MB/s", splitTime,
+                content.length / splitTime / 1000));
+        System.out.println(String.format(Locale.ROOT, "Scanner: %.2f ms per round, %.1f MB/s", scannerTime,
+                content.length / scannerTime / 1000));
+        System.out.println(String.format(Locale.ROOT, "Speedup: %.2fx", splitTime / scannerTime));
+    }
+
+    /**
+     * Measures the average time of a parser.
+     *
+     * @param content raw bytes of the psm file.
+     * @param rounds amount of measured rounds.
+     * @param scanner true to measure the DelimiterScanner, false to measure split.
+     * @return average time per round in milliseconds.
+     * @throws IOException could not read the content.
+     */
+    public final double measure(final byte[] content, final int rounds, final boolean scanner) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += scanner ? parseWithScanner(content) : parseWithSplit(content);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += scanner ? parseWithScanner(content) : parseWithSplit(content);
+        }
+        double time = (System.nanoTime() - startTime) / 1e6 / rounds;
+        //The checksum keeps the parsed fields from being optimized away.
+        System.out.println((scanner ? "Scanner" : "Split") + " checksum: " + checksum);
+        return time;
+    }
+
+    /**
+     * Parses all lines with String.split, as the scan collection creator did.
+     *
+     * @param content raw bytes of the psm file.
+     * @return checksum of the parsed fields.
+     * @throws IOException could not read the content.
+     */
+    public final long parseWithSplit(final byte[] content) throws IOException {
+        long checksum = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        while ((line = reader.readLine()) != null) {
+            String[] data = line.split(",");
+            if (data.length <= ACCESSION) {
+                continue;
+            }
+            String fileNumber = data[SCAN].split(":")[0];
+            checksum += data[SEQUENCE].length() + data[SCORE].length() + fileNumber.length();
+            for (String accession : data[ACCESSION].split(":")) {
+                checksum += accession.length();
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Parses all lines with the DelimiterScanner, as the scan collection creator does.
+     *
+     * @param content raw bytes of the psm file.
+     * @return checksum of the parsed fields.
+     */
+    public final long parseWithScanner(final byte[] content) {
+        long checksum = 0;
+        DelimiterScanner scanner = new DelimiterScanner(content);
+        int[] fieldEnds = new int[ACCESSION + 1];
+        int lineStart = scanner.indexOf((byte) '\n', 0, content.length) + 1;
+        while (lineStart < content.length) {
+            int lineEnd = scanner.indexOf((byte) '\n', lineStart, content.length);
+            int fields = scanner.split((byte) ',', lineStart, lineEnd, fieldEnds);
+            if (fields == fieldEnds.length) {
+                String sequence = new String(content, lineStart, fieldEnds[SEQUENCE] - lineStart, StandardCharsets.UTF_8);
+                String score = new String(content, fieldEnds[SCORE - 1] + 1, fieldEnds[SCORE] - fieldEnds[SCORE - 1] - 1,
+                        StandardCharsets.UTF_8);
+                long scanID = scanner.parseScanID(fieldEnds[SCAN - 1] + 1, fieldEnds[SCAN]);
+                checksum += sequence.length() + score.length() + (scanID >>> 32 < 10 ? 2 : 3);
+                int tokenStart = fieldEnds[ACCESSION - 1] + 1;
+                while (tokenStart <= fieldEnds[ACCESSION]) {
+                    int tokenEnd = scanner.indexOf((byte) ':', tokenStart, fieldEnds[ACCESSION]);
+                    checksum += new String(content, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8).length();
+                    tokenStart = tokenEnd + 1;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return checksum;
+    }
+
+    /**
+     * Generates the content of a psm file in the format of the PEAKS DB search psm.csv files.
+     *
+     * @param rows amount of rows.
+     * @return raw bytes of the generated file.
+     */
+    private static byte[] generateContent(final int rows) {
+        Random random = new Random(42);
+        String residues = "ACDEFGHIKLMNPQRSTVWY";
+        StringBuilder builder = new StringBuilder("Peptide,-10lgP,Mass,Length,ppm,m/z,RT,Area,Fraction,Id,Scan,Source File,"
+                + "Accession,PTM,AScore\n");
+        for (int i = 0; i < rows; i++) {
+            int length = 7 + random.nextInt(15);
+            for (int j = 0; j < length; j++) {
+                builder.append(residues.charAt(random.nextInt(residues.length())));
+            }
+            builder.append(',').append(20 + random.nextInt(8000) / 100.0).append(",1000.5,").append(length)
+                    .append(",1.2,500.2,30.1,1e5,1,").append(i).append(",F").append(1 + random.nextInt(9)).append(':')
+                    .append(random.nextInt(100000)).append(",file.raw,P").append(10000 + random.nextInt(80000));
+            if (random.nextInt(4) == 0) {
+                builder.append(":P").append(10000 + random.nextInt(80000));
+            }
+            builder.append(",,\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
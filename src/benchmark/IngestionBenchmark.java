@@ -0,0 +1,233 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package benchmark;
+
+import collection.creator.LineChunkReader;
+import collection.creator.PsmFilter;
+import collection.creator.ScanIDCollectionCreator;
+import com.sun.management.ThreadMXBean;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import objects.ScanID;
+
+/**
+ * Measures the heap allocations of the scan collection creator per psm row.
+ * Two psm files are generated: one with a row for each scan ID and one with the same rows followed by repeated rows of
+ * scan IDs and sequences that were already collected. The difference in allocated bytes, without the chunk buffers of the
+ * files, gives the allocations of a row that updates an existing scan ID. Files are read on the measuring thread, so the
+ * allocations of that thread contain all allocations of the collection.
+ *
+ * Usage: java -cp PeptideScanComparator.jar benchmark.IngestionBenchmark [scan IDs] [repeated rows] [rounds]
+ *
+ * @author vnijenhuis
+ */
+public class IngestionBenchmark {
+
+    /**
+     * Amount of rounds before the measured rounds.
+     */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * Allocation counter of the threads.
+     */
+    private final ThreadMXBean threadBean;
+
+    /**
+     * Creates the benchmark.
+     *
+     * @param threadBean allocation counter of the threads.
+     */
+    public IngestionBenchmark(final ThreadMXBean threadBean) {
+        this.threadBean = threadBean;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional amount of scan IDs, repeated rows and measured rounds.
+     * @throws IOException could not write or read the generated psm files.
+     */
+    public static void main(final String[] args) throws IOException {
+        int scans = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Object threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof ThreadMXBean)) {
+            throw new IllegalStateException("This virtual machine does not measure allocated bytes per thread.");
+        }
+        Path folder = Files.createTempDirectory("ingestion_benchmark");
+        try {
+            String[] rows = generateRows(scans);
+            String uniqueFile = writePsmFile(folder.resolve("unique"), rows, new String[0]);
+            String repeatedFile = writePsmFile(folder.resolve("repeated"), rows, generateRepeats(rows, repeats));
+            IngestionBenchmark benchmark = new IngestionBenchmark((ThreadMXBean) threadBean);
+            long[] unique = benchmark.measure(uniqueFile, rounds);
+            long[] repeated = benchmark.measure(repeatedFile, rounds);
+            long extraBytes = getBufferBytes(repeatedFile) - getBufferBytes(uniqueFile);
+            System.out.println(String.format(Locale.ROOT, "New scan IDs:   %.1f bytes per row, %.2f ms per round",
+                    (double) (unique[0] - getBufferBytes(uniqueFile)) / scans, unique[1] / 1e6));
+            System.out.println(String.format(Locale.ROOT, "Repeated rows:  %.2f bytes per row, %.2f ms per round",
+                    (double) (repeated[0] - unique[0] - extraBytes) / repeats, repeated[1] / 1e6));
+        } finally {
+            for (File file : listFiles(folder.toFile())) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Measures the lowest allocated bytes and the average time of collecting a psm file.
+     * Progress messages of the collector are discarded, the messages are still created and measured.
+     *
+     * @param file path of the psm file.
+     * @param rounds amount of measured rounds.
+     * @return lowest allocated bytes per round and the average nanoseconds per round.
+     * @throws IOException could not read the psm file.
+     */
+    public final long[] measure(final String file, final int rounds) throws IOException {
+        ArrayList<String> files = new ArrayList<>(Arrays.asList(file));
+        ArrayList<String> datasets = new ArrayList<>(Arrays.asList("Uniprot", "CombinedmRNASeq", "IndividualmRNASeq"));
+        ArrayList<String> samples = new ArrayList<>(Arrays.asList("COPD", "Control"));
+        ScanIDCollectionCreator creator = new ScanIDCollectionCreator();
+        PsmFilter psmFilter = new PsmFilter();
+        long threadID = Thread.currentThread().getId();
+        long lowestBytes = Long.MAX_VALUE;
+        long time = 0;
+        long checksum = 0;
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+        }));
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS + rounds; i++) {
+                long startBytes = threadBean.getThreadAllocatedBytes(threadID);
+                long startTime = System.nanoTime();
+                for (ArrayList<ScanID> scanList : creator.createScanCollection(files, "Uniprot", "1D25", datasets, samples, null,
+                        psmFilter).values()) {
+                    checksum += scanList.size();
+                }
+                if (i >= WARMUP_ROUNDS) {
+                    time += System.nanoTime() - startTime;
+                    lowestBytes = Math.min(lowestBytes, threadBean.getThreadAllocatedBytes(threadID) - startBytes);
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+        //The checksum keeps the collection from being optimized away.
+        System.out.println("Checksum of " + new File(file).getParentFile().getParentFile().getParentFile().getName() + ": "
+                + checksum);
+        return new long[]{lowestBytes, time / rounds};
+    }
+
+    /**
+     * Provides the size of the chunk buffer that is allocated to read a psm file.
+     *
+     * @param file path of the psm file.
+     * @return buffer size in bytes.
+     */
+    private static long getBufferBytes(final String file) {
+        return Math.min(LineChunkReader.CHUNK_BYTES, new File(file).length() + 1);
+    }
+
+    /**
+     * Generates a psm row for each scan ID in the format of the PEAKS DB search psm.csv files.
+     *
+     * @param scans amount of scan IDs.
+     * @return generated rows.
+     */
+    private static String[] generateRows(final int scans) {
+        Random random = new Random(42);
+        String residues = "ACDEFGHIKLMNPQRSTVWY";
+        String[] rows = new String[scans];
+        for (int i = 0; i < scans; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = 7 + random.nextInt(15);
+            for (int j = 0; j < length; j++) {
+                builder.append(residues.charAt(random.nextInt(residues.length())));
+            }
+            builder.append(',').append(20 + random.nextInt(8000) / 100.0).append(",1000.5,").append(length)
+                    .append(",1.2,500.2,30.1,1e5,1,").append(i).append(",F").append(1 + i % 9).append(':').append(i)
+                    .append(",file.raw,P").append(10000 + random.nextInt(80000));
+            if (random.nextInt(4) == 0) {
+                builder.append(":P").append(10000 + random.nextInt(80000));
+            }
+            rows[i] = builder.append(",,\n").toString();
+        }
+        return rows;
+    }
+
+    /**
+     * Picks rows of scan IDs that are repeated.
+     *
+     * @param rows rows of each scan ID.
+     * @param repeats amount of repeated rows.
+     * @return repeated rows.
+     */
+    private static String[] generateRepeats(final String[] rows, final int repeats) {
+        Random random = new Random(7);
+        String[] repeated = new String[repeats];
+        for (int i = 0; i < repeats; i++) {
+            repeated[i] = rows[random.nextInt(rows.length)];
+        }
+        return repeated;
+    }
+
+    /**
+     * Writes a psm file inside the sample folder of a uniprot dataset folder.
+     *
+     * @param folder method folder.
+     * @param rows rows of each scan ID.
+     * @param repeated repeated rows after the rows of each scan ID.
+     * @return path of the psm file.
+     * @throws IOException could not write the file.
+     */
+    private static String writePsmFile(final Path folder, final String[] rows, final String[] repeated) throws IOException {
+        Path sampleFolder = folder.resolve("Uniprot").resolve("COPD1");
+        Files.createDirectories(sampleFolder);
+        StringBuilder builder = new StringBuilder("Peptide,-10lgP,Mass,Length,ppm,m/z,RT,Area,Fraction,Id,Scan,Source File,"
+                + "Accession,PTM,AScore\n");
+        for (String row : rows) {
+            builder.append(row);
+        }
+        for (String row : repeated) {
+            builder.append(row);
+        }
+        Path file = sampleFolder.resolve("DB search psm.csv");
+        Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    /**
+     * Lists a folder and all files and folders inside it, deepest first.
+     *
+     * @param folder folder to list.
+     * @return files and folders that can be deleted in order.
+     */
+    private static ArrayList<File> listFiles(final File folder) {
+        ArrayList<File> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                files.addAll(listFiles(child));
+            }
+        }
+        files.add(folder);
+        return files;
+    }
+}
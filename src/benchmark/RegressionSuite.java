@@ -0,0 +1,479 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.CRC32;
+import peptide.scan.collector.PeptideScanCollector;
+
+/**
+ * Runs complete comparisons on generated datasets of fixed sizes and compares the relative speed, peak heap usage and
+ * output checksum of each dataset with a recorded baseline.
+ * The datasets are generated with fixed seeds, so every build compares the same rows and has to write the same output.
+ * Each measured run is paired with a reference run in the same virtual machine, which reads and splits the same psm files
+ * with String.split and a HashMap. The relative speed is the median of the reference time divided by the comparison time,
+ * so it does not depend on the speed of the machine. Rows per second are reported but not compared.
+ * A run fails if the output checksum changed or if the relative speed or peak heap usage is worse than the baseline by more
+ * than the tolerance. The small dataset is too short to time, only its checksum is compared. The suite runs offline in a
+ * temporary folder, which is removed afterwards.
+ *
+ * Usage: java -cp PeptideScanComparator.jar benchmark.RegressionSuite check|record [baseline file] [tolerance]
+ * The tolerance is a fraction, 0.3 accepts a 30% lower relative speed or 30% more peak heap usage.
+ *
+ * @author vnijenhuis
+ */
+public class RegressionSuite {
+
+    /**
+     * Names of the generated datasets.
+     */
+    private static final String[] SIZES = {"small", "medium", "large"};
+
+    /**
+     * Amount of rows per psm file of each generated dataset.
+     */
+    private static final int[] ROWS = {2000, 20000, 50000};
+
+    /**
+     * True if the relative speed and peak heap usage of the generated dataset are compared with the baseline.
+     */
+    private static final boolean[] TIMED = {false, true, true};
+
+    /**
+     * Sample folders of each generated dataset.
+     */
+    private static final String[] SAMPLES = {"COPD1", "COPD2", "Control1", "Control2"};
+
+    /**
+     * Name of the psm files.
+     */
+    private static final String PSM_FILE = "DB search psm.csv";
+
+    /**
+     * Amount of runs before the measured runs.
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * Amount of measured runs, the median run is compared with the baseline.
+     */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Temporary folder of the generated datasets and output.
+     */
+    private final Path folder;
+
+    /**
+     * Creates the regression suite.
+     *
+     * @param folder temporary folder of the generated datasets and output.
+     */
+    public RegressionSuite(final Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Runs the regression suite.
+     *
+     * @param args check or record, optional baseline file and tolerance.
+     * @throws Exception a comparison failed.
+     * @throws IllegalStateException one or more datasets regressed.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 0 || !args[0].equals("check") && !args[0].equals("record")) {
+            throw new IllegalArgumentException("Usage: benchmark.RegressionSuite check|record [baseline file] [tolerance]");
+        }
+        boolean record = args[0].equals("record");
+        String baselinePath = args.length > 1 ? args[1] : "regression_baseline.properties";
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.3;
+        Path folder = Files.createTempDirectory("regression_suite");
+        try {
+            RegressionSuite suite = new RegressionSuite(folder);
+            Properties results = new Properties();
+            for (int i = 0; i < SIZES.length; i++) {
+                suite.measure(SIZES[i], ROWS[i], results);
+            }
+            if (record) {
+                writeBaseline(baselinePath, results);
+                System.out.println("Recorded the baseline in " + baselinePath);
+            } else {
+                Properties baseline = new Properties();
+                try (InputStream input = new FileInputStream(baselinePath)) {
+                    baseline.load(input);
+                }
+                int regressions = 0;
+                for (int i = 0; i < SIZES.length; i++) {
+                    regressions += compare(SIZES[i], TIMED[i], results, baseline, tolerance);
+                }
+                if (regressions > 0) {
+                    throw new IllegalStateException(regressions + " regression(s) found compared to " + baselinePath
+                            + " with a tolerance of " + tolerance + ".");
+                }
+                System.out.println("No regressions found compared to " + baselinePath + " with a tolerance of " + tolerance + ".");
+            }
+        } finally {
+            for (File file : listFiles(folder.toFile())) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Generates a dataset and measures the median of the measured runs.
+     *
+     * @param size name of the dataset.
+     * @param rows amount of rows per psm file.
+     * @param results results with the size as prefix of each key.
+     * @throws Exception the comparison failed.
+     */
+    public final void measure(final String size, final int rows, final Properties results) throws Exception {
+        Path method = folder.resolve(size).resolve("1D25");
+        long totalRows = generateDataset(method, rows, size.hashCode());
+        Path output = folder.resolve(size).resolve("out");
+        Files.createDirectories(output);
+        String[] args = {"-uniprot", method.resolve("Uniprot") + File.separator,
+            "-combined", method.resolve("CombinedmRNASeq") + File.separator,
+            "-individual", method.resolve("IndividualmRNASeq") + File.separator,
+            "-psm", PSM_FILE, "-out", output + File.separator};
+        double[] throughputs = new double[MEASURED_RUNS];
+        double[] speeds = new double[MEASURED_RUNS];
+        long lowestPeak = Long.MAX_VALUE;
+        String checksum = null;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            //The reference run directly precedes the comparison, so both see the same state of the machine.
+            System.gc();
+            long referenceStart = System.nanoTime();
+            long referenceRows = runReference(method);
+            double referenceSeconds = (System.nanoTime() - referenceStart) / 1e9;
+            if (referenceRows != totalRows) {
+                throw new IllegalStateException("The reference run of " + size + " read " + referenceRows + " of " + totalRows
+                        + " rows.");
+            }
+            System.gc();
+            resetPeakHeap();
+            long startTime = System.nanoTime();
+            runQuietly(args);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            long peak = getPeakHeap();
+            String runChecksum = checksum(output.toFile());
+            if (checksum != null && !checksum.equals(runChecksum)) {
+                throw new IllegalStateException("The output of " + size + " differs between runs of the same build.");
+            }
+            checksum = runChecksum;
+            if (run >= WARMUP_RUNS) {
+                throughputs[run - WARMUP_RUNS] = totalRows / seconds;
+                speeds[run - WARMUP_RUNS] = referenceSeconds / seconds;
+                lowestPeak = Math.min(lowestPeak, peak);
+            }
+        }
+        double throughput = median(throughputs);
+        double speed = median(speeds);
+        results.setProperty(size + ".rows", Long.toString(totalRows));
+        results.setProperty(size + ".rowsPerSecond", String.format(Locale.ROOT, "%.0f", throughput));
+        results.setProperty(size + ".relativeSpeed", String.format(Locale.ROOT, "%.3f", speed));
+        results.setProperty(size + ".peakHeapMB", String.format(Locale.ROOT, "%.1f", lowestPeak / 1048576.0));
+        results.setProperty(size + ".checksum", checksum);
+        System.out.println(String.format(Locale.ROOT, "%-7s %9d rows, %10.0f rows/s, %6.3f x reference, %7.1f MB peak heap, "
+                + "checksum %s", size, totalRows, throughput, speed, lowestPeak / 1048576.0, checksum));
+    }
+
+    /**
+     * Reads the psm files of a method as a reference for the speed of the machine. Each line is split with String.split and
+     * the sequences are grouped on their scan ID in a HashMap, which does not use any code of the comparison.
+     *
+     * @param method method folder.
+     * @return amount of rows that were read.
+     * @throws IOException could not read a psm file.
+     */
+    private static long runReference(final Path method) throws IOException {
+        HashMap<String, ArrayList<String>> sequences = new HashMap<>();
+        long rows = 0;
+        for (String dataset : new String[]{"Uniprot", "CombinedmRNASeq", "IndividualmRNASeq"}) {
+            for (String sample : SAMPLES) {
+                Path file = method.resolve(dataset).resolve(sample).resolve(PSM_FILE);
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    //Skips the header.
+                    String line = reader.readLine();
+                    while ((line = reader.readLine()) != null) {
+                        String[] fields = line.split(",", -1);
+                        String scan = sample + ":" + fields[10];
+                        ArrayList<String> scanSequences = sequences.get(scan);
+                        if (scanSequences == null) {
+                            scanSequences = new ArrayList<>();
+                            sequences.put(scan, scanSequences);
+                        }
+                        scanSequences.add(fields[0]);
+                        rows++;
+                    }
+                }
+            }
+        }
+        //Sorts the scan IDs like the output, the result is checked so the work is not skipped.
+        ArrayList<String> scans = new ArrayList<>(sequences.keySet());
+        Collections.sort(scans);
+        long grouped = 0;
+        for (String scan : scans) {
+            grouped += sequences.get(scan).size();
+        }
+        return grouped == rows ? rows : -1;
+    }
+
+    /**
+     * Provides the median of the measured values.
+     *
+     * @param values measured values, sorted in place.
+     * @return median value.
+     */
+    private static double median(final double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        if (values.length % 2 == 0) {
+            return (values[middle - 1] + values[middle]) / 2;
+        }
+        return values[middle];
+    }
+
+    /**
+     * Compares the results of a dataset with the baseline.
+     *
+     * @param size name of the dataset.
+     * @param timed true to compare the relative speed and peak heap usage, false to only compare the output.
+     * @param results measured results.
+     * @param baseline recorded results.
+     * @param tolerance accepted fraction of lower relative speed or higher peak heap usage.
+     * @return amount of regressions.
+     */
+    private static int compare(final String size, final boolean timed, final Properties results, final Properties baseline,
+            final double tolerance) {
+        if (baseline.getProperty(size + ".checksum") == null || baseline.getProperty(size + ".relativeSpeed") == null) {
+            System.out.println("REGRESSION " + size + ": not present in the baseline, record the baseline again.");
+            return 1;
+        }
+        int regressions = 0;
+        if (!baseline.getProperty(size + ".rows").equals(results.getProperty(size + ".rows"))
+                || !baseline.getProperty(size + ".checksum").equals(results.getProperty(size + ".checksum"))) {
+            System.out.println("REGRESSION " + size + ": output checksum " + results.getProperty(size + ".checksum")
+                    + " differs from the baseline " + baseline.getProperty(size + ".checksum") + ".");
+            regressions++;
+        }
+        if (!timed) {
+            return regressions;
+        }
+        double speed = Double.parseDouble(results.getProperty(size + ".relativeSpeed"));
+        double baselineSpeed = Double.parseDouble(baseline.getProperty(size + ".relativeSpeed"));
+        if (speed < baselineSpeed * (1 - tolerance)) {
+            System.out.println(String.format(Locale.ROOT, "REGRESSION %s: %.3f x the reference speed is %.0f%% below the "
+                    + "baseline %.3f x.", size, speed, (1 - speed / baselineSpeed) * 100, baselineSpeed));
+            regressions++;
+        }
+        double peak = Double.parseDouble(results.getProperty(size + ".peakHeapMB"));
+        double baselinePeak = Double.parseDouble(baseline.getProperty(size + ".peakHeapMB"));
+        if (peak > baselinePeak * (1 + tolerance)) {
+            System.out.println(String.format(Locale.ROOT, "REGRESSION %s: %.1f MB peak heap is %.0f%% above the baseline %.1f MB.",
+                    size, peak, (peak / baselinePeak - 1) * 100, baselinePeak));
+            regressions++;
+        }
+        return regressions;
+    }
+
+    /**
+     * Runs a comparison and discards its messages.
+     *
+     * @param args command line arguments of the comparison.
+     * @throws Exception the comparison failed.
+     */
+    private static void runQuietly(final String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+        }));
+        try {
+            PeptideScanCollector.main(args);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Resets the peak usage of the heap memory pools.
+     */
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Provides the peak usage of the heap memory pools since the last reset.
+     *
+     * @return sum of the peak usage of each heap memory pool in bytes.
+     */
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Creates a CRC32 checksum of all files in the output folder in the order of their names.
+     *
+     * @param output output folder.
+     * @return checksum as hexadecimal String.
+     * @throws IOException could not read an output file.
+     */
+    private static String checksum(final File output) throws IOException {
+        File[] files = output.listFiles();
+        Arrays.sort(files);
+        CRC32 crc = new CRC32();
+        for (File file : files) {
+            if (file.isFile()) {
+                crc.update(file.getName().getBytes(StandardCharsets.UTF_8));
+                crc.update(Files.readAllBytes(file.toPath()));
+            }
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Generates the psm files of a method with a uniprot, combined and individual dataset. The combined and individual
+     * datasets find most uniprot scan IDs again, with the same or another sequence, and scan IDs of their own.
+     *
+     * @param method method folder.
+     * @param rows amount of rows per psm file.
+     * @param seed seed of the generated rows.
+     * @return amount of rows of all psm files.
+     * @throws IOException could not write a psm file.
+     */
+    private static long generateDataset(final Path method, final int rows, final long seed) throws IOException {
+        Random random = new Random(seed);
+        String residues = "ACDEFGHIKLMNPQRSTVWY";
+        String[] datasets = {"Uniprot", "CombinedmRNASeq", "IndividualmRNASeq"};
+        long totalRows = 0;
+        for (String sample : SAMPLES) {
+            //Scan IDs and sequences of the uniprot rows, which the other datasets find again.
+            String[] scans = new String[rows];
+            String[] sequences = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                scans[i] = "F" + (1 + random.nextInt(8)) + ":" + random.nextInt(rows * 4);
+                sequences[i] = createSequence(random, residues);
+            }
+            for (int d = 0; d < datasets.length; d++) {
+                Path sampleFolder = method.resolve(datasets[d]).resolve(sample);
+                Files.createDirectories(sampleFolder);
+                try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(sampleFolder.resolve(PSM_FILE).toFile()), StandardCharsets.UTF_8))) {
+                    writer.write("Peptide,-10lgP,Mass,Length,ppm,m/z,RT,Area,Fraction,Id,Scan,Source File,Accession,PTM,AScore\n");
+                    for (int i = 0; i < rows; i++) {
+                        String scan = scans[i];
+                        String sequence = sequences[i];
+                        int kind = random.nextInt(10);
+                        if (d > 0 && kind < 2) {
+                            sequence = createSequence(random, residues);
+                        } else if (d > 0 && kind == 2) {
+                            scan = "F" + (1 + random.nextInt(8)) + ":" + (rows * 4 + random.nextInt(rows));
+                        }
+                        String accession = "P" + (10000 + random.nextInt(5000));
+                        if (kind == 3) {
+                            accession += ":P" + (10000 + random.nextInt(5000));
+                        } else if (kind == 4) {
+                            accession = "DECOY_" + accession;
+                        }
+                        writer.write(sequence + "," + String.format(Locale.ROOT, "%.2f", 20 + random.nextInt(8000) / 100.0)
+                                + ",1000.5," + sequence.length() + ",1.2,500.2,30.1,1e5,1," + i + "," + scan + ",file.raw,"
+                                + accession + ",,\n");
+                    }
+                }
+                totalRows += rows;
+            }
+        }
+        return totalRows;
+    }
+
+    /**
+     * Creates a random peptide sequence.
+     *
+     * @param random random generator.
+     * @param residues residue letters.
+     * @return peptide sequence of 7 to 21 residues.
+     */
+    private static String createSequence(final Random random, final String residues) {
+        int length = 7 + random.nextInt(15);
+        StringBuilder builder = new StringBuilder(length);
+        for (int j = 0; j < length; j++) {
+            builder.append(residues.charAt(random.nextInt(residues.length())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the results as baseline file in a fixed order.
+     *
+     * @param path path of the baseline file.
+     * @param results measured results.
+     * @throws IOException could not write the baseline file.
+     */
+    private static void writeBaseline(final String path, final Properties results) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add("# Baseline of benchmark.RegressionSuite, record it again with: ant regression-baseline");
+        lines.add("# Recorded with Java " + System.getProperty("java.version") + " and "
+                + Runtime.getRuntime().maxMemory() / 1048576 + " MB maximum heap.");
+        lines.add("# relativeSpeed is compared with the baseline, rowsPerSecond depends on the machine and is only reported.");
+        for (String size : SIZES) {
+            for (String key : new String[]{"rows", "rowsPerSecond", "relativeSpeed", "peakHeapMB", "checksum"}) {
+                lines.add(size + "." + key + "=" + results.getProperty(size + "." + key));
+            }
+        }
+        Files.write(new File(path).toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lists a folder and all files and folders inside it, deepest first.
+     *
+     * @param folder folder to list.
+     * @return files and folders that can be deleted in order.
+     */
+    private static ArrayList<File> listFiles(final File folder) {
+        ArrayList<File> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                files.addAll(listFiles(child));
+            }
+        }
+        files.add(folder);
+        return files;
+    }
+}
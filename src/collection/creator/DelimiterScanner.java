@@ -0,0 +1,165 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds delimiters such as commas, colons and line ends in the raw bytes of a psm file.
+ * Eight bytes are compared at a time: the bytes are read as a single long, the delimiter is removed with an exclusive or
+ * and the lowest zero byte of the result is the first delimiter (SWAR, simd within a register). The last bytes of a range
+ * are compared one by one. Delimiters are ASCII characters, so the bytes of multi-byte UTF-8 characters never match.
+ *
+ * @author vnijenhuis
+ */
+public class DelimiterScanner {
+
+    /**
+     * Lowest bit of each byte.
+     */
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    /**
+     * Highest bit of each byte.
+     */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Raw bytes of the file.
+     */
+    private final byte[] content;
+
+    /**
+     * Reads eight bytes of the content at a time, the first byte is the lowest byte of the long.
+     */
+    private final ByteBuffer words;
+
+    /**
+     * Creates a scanner for the raw bytes of a file.
+     *
+     * @param content raw bytes of the file.
+     */
+    public DelimiterScanner(final byte[] content) {
+        this.content = content;
+        this.words = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Provides the raw bytes of the file.
+     * @return raw bytes.
+     */
+    public final byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * Finds the first delimiter in a range of the content.
+     *
+     * @param delimiter ASCII delimiter. (',', ':' or '\n')
+     * @param from first index of the range.
+     * @param to end index of the range. (exclusive)
+     * @return index of the delimiter or the end of the range if the range has no delimiter.
+     */
+    public final int indexOf(final byte delimiter, final int from, final int to) {
+        long pattern = LOW_BITS * (delimiter & 0xFF);
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = words.getLong(i) ^ pattern;
+            //Sets the high bit of each zero byte. Bytes above a zero byte can be set as well, the lowest bit is exact.
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (content[i] == delimiter) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Finds the end of each field in a range of the content, such as the comma separated fields of a csv line.
+     * Scanning stops after the given amount of fields, so columns after the last needed column are not scanned.
+     *
+     * @param delimiter ASCII delimiter.
+     * @param from first index of the range.
+     * @param to end index of the range. (exclusive)
+     * @param fieldEnds receives the end index (exclusive) of each field.
+     * @return amount of fields that were found. (at most the length of fieldEnds)
+     */
+    public final int split(final byte delimiter, final int from, final int to, final int[] fieldEnds) {
+        int fields = 0;
+        int start = from;
+        while (fields < fieldEnds.length) {
+            int end = indexOf(delimiter, start, to);
+            fieldEnds[fields++] = end;
+            if (end == to) {
+                break;
+            }
+            start = end + 1;
+        }
+        return fields;
+    }
+
+    /**
+     * Parses a scan ID field (F1:2048) into the number of the file number and the scan number.
+     *
+     * @param from first index of the field.
+     * @param to end index of the field. (exclusive)
+     * @return file number digits in the high 32 bits and scan number in the low 32 bits, or -1 if the field does not consist
+     * of a letter prefix and digits, a colon and digits.
+     */
+    public final long parseScanID(final int from, final int to) {
+        int i = from;
+        while (i < to && isLetter(content[i])) {
+            i++;
+        }
+        int colon = indexOf((byte) ':', i, to);
+        long fileNumber = parseNumber(i, colon);
+        if (colon == to || fileNumber < 0) {
+            return -1;
+        }
+        long scanNumber = parseNumber(colon + 1, to);
+        if (scanNumber < 0) {
+            return -1;
+        }
+        return fileNumber << 32 | scanNumber;
+    }
+
+    /**
+     * Parses digits into a number.
+     *
+     * @param from first index of the digits.
+     * @param to end index of the digits. (exclusive)
+     * @return number or -1 if the range is empty, contains other characters or does not fit in 31 bits.
+     */
+    private long parseNumber(final int from, final int to) {
+        if (from >= to || to - from > 9) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = from; i < to; i++) {
+            int digit = content[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    /**
+     * Checks if a byte is an ASCII letter.
+     *
+     * @param value byte value.
+     * @return true if the byte is a letter.
+     */
+    private static boolean isLetter(final byte value) {
+        return value >= 'A' && value <= 'Z' || value >= 'a' && value <= 'z';
+    }
+}
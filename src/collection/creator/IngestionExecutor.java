@@ -0,0 +1,423 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reads and parses peptide data files in parallel and runs other compute tasks, such as matching the scan IDs of each file
+ * number.
+ * Each file is handled by its own (virtual) thread that reads a chunk of whole lines of the file while holding a read permit,
+ * after which the chunk is parsed on the compute pool before the next chunk is read. Only a fixed size buffer is kept per
+ * file, so the heap usage does not depend on the size of the files. The amount of read permits (I/O) and compute threads are set separately, so a node with
+ * network storage can read many files at the same time with few compute threads. The compute pool is a fork/join pool:
+ * idle threads steal queued tasks of busy threads. Queue depths and busy times are counted to tune both amounts.
+ *
+ * @author vnijenhuis
+ */
+public class IngestionExecutor {
+
+    /**
+     * Parses a single file from chunks of whole lines.
+     *
+     * @param <T> type of the parsed result.
+     */
+    public interface FileParser<T> {
+
+        /**
+         * Parses the complete lines of the next chunk of the file.
+         *
+         * @param chunk chunk of whole lines.
+         * @throws IOException could not parse the chunk.
+         */
+        void parse(LineChunkReader chunk) throws IOException;
+
+        /**
+         * Provides the parsed result after the last chunk.
+         *
+         * @return parsed result.
+         * @throws IOException could not finish the file.
+         */
+        T finish() throws IOException;
+    }
+
+    /**
+     * Receives the result of each file as soon as the file is parsed.
+     *
+     * @param <T> type of the parsed result.
+     */
+    public interface FileListener<T> {
+
+        /**
+         * Handles the result of a parsed file. Called on the thread that started parsing the files, one file at a time.
+         *
+         * @param index index of the file in the list of files.
+         * @param result parsed result of the file.
+         * @throws IOException could not handle the result.
+         */
+        void fileParsed(int index, T result) throws IOException;
+    }
+
+    /**
+     * Runs one task per file. Uses virtual threads if the java runtime supports them.
+     */
+    private final ExecutorService fileExecutor;
+
+    /**
+     * Work stealing pool of threads that parse the file content and run other compute tasks.
+     */
+    private final ForkJoinPool computePool;
+
+    /**
+     * Maximum amount of files that are read at the same time.
+     */
+    private final int readers;
+
+    /**
+     * Amount of files that wait for a read permit.
+     */
+    private final AtomicInteger readQueue;
+
+    /**
+     * Highest amount of files that waited for a read permit at the same time.
+     */
+    private final AtomicInteger maximumReadQueue;
+
+    /**
+     * Amount of files that were read.
+     */
+    private final AtomicLong filesRead;
+
+    /**
+     * Amount of bytes that were read.
+     */
+    private final AtomicLong bytesRead;
+
+    /**
+     * Total time in nanoseconds spent reading files.
+     */
+    private final AtomicLong readNanos;
+
+    /**
+     * Amount of files that wait for a compute thread.
+     */
+    private final AtomicInteger parseQueue;
+
+    /**
+     * Highest amount of files that waited for a compute thread at the same time.
+     */
+    private final AtomicInteger maximumParseQueue;
+
+    /**
+     * Total time in nanoseconds spent parsing files.
+     */
+    private final AtomicLong parseNanos;
+
+    /**
+     * Start time in nanoseconds of the statistics.
+     */
+    private volatile long statisticsStart;
+
+    /**
+     * Limits the amount of files that are read at the same time.
+     */
+    private final Semaphore readPermits;
+
+    /**
+     * Limits the amount of chunk buffers that are kept in memory while files are read and parsed.
+     */
+    private final Semaphore bufferPermits;
+
+    /**
+     * True if each file is handled by a virtual thread.
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * Creates an ingestion executor.
+     *
+     * @param readers maximum amount of files that are read at the same time.
+     * @param parsers amount of compute threads that parse file content and run other compute tasks.
+     */
+    public IngestionExecutor(final int readers, final int parsers) {
+        this.readers = readers;
+        this.readPermits = new Semaphore(readers);
+        this.bufferPermits = new Semaphore(readers + parsers);
+        this.computePool = new ForkJoinPool(parsers);
+        this.readQueue = new AtomicInteger();
+        this.maximumReadQueue = new AtomicInteger();
+        this.filesRead = new AtomicLong();
+        this.bytesRead = new AtomicLong();
+        this.readNanos = new AtomicLong();
+        this.parseQueue = new AtomicInteger();
+        this.maximumParseQueue = new AtomicInteger();
+        this.parseNanos = new AtomicLong();
+        this.statisticsStart = System.nanoTime();
+        ExecutorService virtualExecutor = createVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        if (virtualThreads) {
+            this.fileExecutor = virtualExecutor;
+        } else {
+            //Without virtual threads each waiting file would block a platform thread, so the amount of threads is bounded.
+            this.fileExecutor = Executors.newFixedThreadPool(readers + parsers);
+        }
+    }
+
+    /**
+     * Reads and parses all files in parallel.
+     *
+     * @param <T> type of the parsed result.
+     * @param files list of file paths.
+     * @param parsers creates the parser of each file.
+     * @return parsed results in the same order as the list of files.
+     * @throws IOException could not read or parse one of the files.
+     */
+    public final <T> ArrayList<T> parseFiles(final List<String> files, final Function<String, FileParser<T>> parsers)
+            throws IOException {
+        ArrayList<T> results = new ArrayList<>(Collections.<T>nCopies(files.size(), null));
+        parseFiles(files, parsers, results::set);
+        return results;
+    }
+
+    /**
+     * Reads and parses all files in parallel and passes the result of each file to a listener as soon as the file is
+     * parsed, so the results of the first files can be used while the other files are parsed.
+     *
+     * @param <T> type of the parsed result.
+     * @param files list of file paths.
+     * @param parsers creates the parser of each file.
+     * @param listener receives the result of each file in the order in which the files are finished.
+     * @throws IOException could not read or parse one of the files, or the listener could not handle a result.
+     */
+    public final <T> void parseFiles(final List<String> files, final Function<String, FileParser<T>> parsers,
+            final FileListener<T> listener) throws IOException {
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(fileExecutor);
+        HashMap<Future<T>, Integer> futures = new HashMap<>();
+        for (final String file : files) {
+            futures.put(completion.submit(() -> parseFile(file, parsers)), futures.size());
+        }
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Future<T> future = completion.take();
+                listener.fileParsed(futures.get(future), future.get());
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Future<T> future : futures.keySet()) {
+                future.cancel(true);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while collecting peptide data files.");
+        } catch (ExecutionException e) {
+            for (Future<T> future : futures.keySet()) {
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not collect peptide data files.", e.getCause());
+        }
+    }
+
+    /**
+     * Provides if files are handled by virtual threads.
+     * @return true if virtual threads are used.
+     */
+    public final boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Provides the work stealing pool of compute threads.
+     * @return compute pool.
+     */
+    public final ForkJoinPool getComputePool() {
+        return computePool;
+    }
+
+    /**
+     * Provides the amount of compute threads.
+     * @return amount of threads of the compute pool.
+     */
+    public final int getComputeThreads() {
+        return computePool.getParallelism();
+    }
+
+    /**
+     * Provides the current amount of files that wait for a read permit.
+     * @return I/O queue depth.
+     */
+    public final int getReadQueueDepth() {
+        return readQueue.get();
+    }
+
+    /**
+     * Provides the current amount of files and tasks that wait for a compute thread.
+     * @return compute queue depth.
+     */
+    public final long getComputeQueueDepth() {
+        return parseQueue.get() + computePool.getQueuedTaskCount() + computePool.getQueuedSubmissionCount();
+    }
+
+    /**
+     * Provides the part of the available read permit time that was spent reading since the last reset.
+     * @return I/O utilization between 0 and 1.
+     */
+    public final double getReadUtilization() {
+        return readNanos.get() / (double) Math.max(1, (System.nanoTime() - statisticsStart) * readers);
+    }
+
+    /**
+     * Provides the part of the available compute thread time that was spent parsing files since the last reset.
+     * @return parse utilization between 0 and 1.
+     */
+    public final double getParseUtilization() {
+        return parseNanos.get() / (double) Math.max(1, (System.nanoTime() - statisticsStart) * computePool.getParallelism());
+    }
+
+    /**
+     * Resets the counters, such as before the files of the next dataset are collected.
+     */
+    public final void resetStatistics() {
+        maximumReadQueue.set(readQueue.get());
+        maximumParseQueue.set(parseQueue.get());
+        filesRead.set(0);
+        bytesRead.set(0);
+        readNanos.set(0);
+        parseNanos.set(0);
+        statisticsStart = System.nanoTime();
+    }
+
+    /**
+     * Provides the counters since the last reset.
+     * @return counters as String.
+     */
+    public final String getStatistics() {
+        return String.format(Locale.ROOT, "Scheduler{Files; %d, Read MB; %.1f, I/O threads; %d, I/O utilization; %.0f%%, "
+                + "Maximum I/O queue; %d, Compute threads; %d, Parse utilization; %.0f%%, Maximum parse queue; %d, "
+                + "Compute queue; %d, Steals; %d}", filesRead.get(), bytesRead.get() / 1048576.0, readers,
+                getReadUtilization() * 100, maximumReadQueue.get(), computePool.getParallelism(), getParseUtilization() * 100,
+                maximumParseQueue.get(), getComputeQueueDepth(), computePool.getStealCount());
+    }
+
+    /**
+     * Shuts down the file and compute threads.
+     */
+    public final void shutdown() {
+        fileExecutor.shutdown();
+        computePool.shutdown();
+    }
+
+    /**
+     * Reads a file in chunks while holding a read permit and parses each chunk on the parser pool.
+     *
+     * @param <T> type of the parsed result.
+     * @param file path of the file.
+     * @param parsers creates the parser of the file.
+     * @return parsed result.
+     * @throws Exception could not read or parse the file.
+     */
+    private <T> T parseFile(final String file, final Function<String, FileParser<T>> parsers) throws Exception {
+        bufferPermits.acquire();
+        try (LineChunkReader chunk = new LineChunkReader(file, LineChunkReader.CHUNK_BYTES)) {
+            final FileParser<T> parser = parsers.apply(file);
+            while (readChunk(chunk)) {
+                updateMaximum(maximumParseQueue, parseQueue.incrementAndGet());
+                computePool.submit(() -> {
+                    parseQueue.decrementAndGet();
+                    long startTime = System.nanoTime();
+                    try {
+                        parser.parse(chunk);
+                        return null;
+                    } finally {
+                        parseNanos.addAndGet(System.nanoTime() - startTime);
+                    }
+                }).get();
+            }
+            filesRead.incrementAndGet();
+            return parser.finish();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            bufferPermits.release();
+        }
+    }
+
+    /**
+     * Reads the next chunk of a file while holding a read permit.
+     *
+     * @param chunk chunk reader of the file.
+     * @return true if the chunk contains lines, false at the end of the file.
+     * @throws IOException could not read the file.
+     * @throws InterruptedException interrupted while waiting for a read permit.
+     */
+    private boolean readChunk(final LineChunkReader chunk) throws IOException, InterruptedException {
+        updateMaximum(maximumReadQueue, readQueue.incrementAndGet());
+        try {
+            readPermits.acquire();
+        } finally {
+            readQueue.decrementAndGet();
+        }
+        try {
+            long startTime = System.nanoTime();
+            long startBytes = chunk.getBytesRead();
+            boolean lines = chunk.next();
+            readNanos.addAndGet(System.nanoTime() - startTime);
+            bytesRead.addAndGet(chunk.getBytesRead() - startBytes);
+            return lines;
+        } finally {
+            readPermits.release();
+        }
+    }
+
+    /**
+     * Raises a maximum counter to the given value.
+     *
+     * @param maximum maximum counter.
+     * @param value new value.
+     */
+    private static void updateMaximum(final AtomicInteger maximum, final int value) {
+        int current = maximum.get();
+        while (value > current && !maximum.compareAndSet(current, value)) {
+            current = maximum.get();
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for each task.
+     *
+     * @return virtual thread executor or null if the java runtime does not support virtual threads.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            //Looked up at runtime so the project still builds and runs on java versions without virtual threads.
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a psm file in chunks of whole lines into a buffer with a fixed size.
+ * The partial last line of a chunk is moved to the start of the buffer and completed by the next chunk, so the delimiter
+ * scanner only sees complete lines and the heap usage does not depend on the size of the file. A line that is longer than
+ * the buffer doubles the buffer.
+ *
+ * @author vnijenhuis
+ */
+public class LineChunkReader implements Closeable {
+
+    /**
+     * Size of the buffer of each psm file that is read or parsed.
+     */
+    public static final int CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Input stream of the file.
+     */
+    private final InputStream input;
+
+    /**
+     * Buffer of the current chunk.
+     */
+    private byte[] buffer;
+
+    /**
+     * Delimiter scanner of the buffer.
+     */
+    private DelimiterScanner scanner;
+
+    /**
+     * Amount of bytes in the buffer.
+     */
+    private int length;
+
+    /**
+     * End of the last complete line of the chunk. (exclusive, after the line end)
+     */
+    private int lineEnd;
+
+    /**
+     * Amount of bytes that were read from the file.
+     */
+    private long bytesRead;
+
+    /**
+     * True if the end of the file was reached.
+     */
+    private boolean endOfFile;
+
+    /**
+     * Opens a file for reading in chunks.
+     *
+     * @param file path of the file.
+     * @param chunkBytes maximum size of the buffer, unless a single line is longer.
+     * @throws IOException could not open the file.
+     */
+    public LineChunkReader(final String file, final int chunkBytes) throws IOException {
+        FileInputStream fileInput = new FileInputStream(file);
+        this.input = fileInput;
+        //Files smaller than a chunk get a buffer of their own size plus the end of file.
+        this.buffer = new byte[(int) Math.min(chunkBytes, fileInput.getChannel().size() + 1)];
+        this.scanner = new DelimiterScanner(buffer);
+    }
+
+    /**
+     * Reads the next chunk of complete lines. The last line of the file is complete without a line end.
+     *
+     * @return true if the chunk contains lines, false at the end of the file.
+     * @throws IOException could not read the file.
+     */
+    public final boolean next() throws IOException {
+        //Moves the partial last line of the previous chunk to the start of the buffer.
+        int rest = length - lineEnd;
+        System.arraycopy(buffer, lineEnd, buffer, 0, rest);
+        length = rest;
+        lineEnd = 0;
+        while (!endOfFile) {
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfFile = true;
+                break;
+            }
+            length += read;
+            bytesRead += read;
+            if (length == buffer.length) {
+                int last = lastLineEnd();
+                if (last >= 0) {
+                    lineEnd = last + 1;
+                    return true;
+                }
+                //A single line fills the buffer.
+                byte[] larger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, length);
+                buffer = larger;
+                scanner = new DelimiterScanner(buffer);
+            }
+        }
+        lineEnd = length;
+        return lineEnd > 0;
+    }
+
+    /**
+     * Provides the buffer of the current chunk.
+     * @return raw bytes, the lines of the chunk start at index 0.
+     */
+    public final byte[] getContent() {
+        return buffer;
+    }
+
+    /**
+     * Provides the delimiter scanner of the buffer.
+     * @return delimiter scanner.
+     */
+    public final DelimiterScanner getScanner() {
+        return scanner;
+    }
+
+    /**
+     * Provides the end of the lines of the current chunk.
+     * @return index after the last complete line.
+     */
+    public final int getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Provides the amount of bytes that were read from the file.
+     * @return bytes read.
+     */
+    public final long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException could not close the file.
+     */
+    @Override
+    public final void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Finds the last line end in the buffer.
+     *
+     * @return index of the last line end or -1 if the buffer has no line end.
+     */
+    private int lastLineEnd() {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import objects.ScanID;
+
+/**
+ * Filters peptide spectrum match rows on score, decoy accessions and the amount of candidate sequences per scan.
+ * Rows are checked on the raw bytes of the line so rejected rows are never split or stored.
+ *
+ * @author vnijenhuis
+ */
+public class PsmFilter {
+
+    /**
+     * Name that marks decoy accessions.
+     */
+    private static final String DECOY = "DECOY";
+
+    /**
+     * Highest amount of significant digits of a score that is parsed without the java parser.
+     */
+    private static final int MAXIMUM_EXACT_DIGITS = 15;
+
+    /**
+     * Powers of ten that are exact doubles, by exponent.
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Minimum -10lgP score of a row.
+     */
+    private final double minimumScore;
+
+    /**
+     * Maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     */
+    private final int maximumCandidates;
+
+    /**
+     * Keeps the candidate sequences with the highest scores instead of the first candidate sequences if true.
+     */
+    private final boolean topScores;
+
+    /**
+     * Skips decoy accessions if true.
+     */
+    private final boolean excludeDecoys;
+
+    /**
+     * File numbers to keep. (null keeps all file numbers)
+     */
+    private final Set<String> fileNumbers;
+
+    /**
+     * Index of the file number partition to keep.
+     */
+    private final int partition;
+
+    /**
+     * Amount of file number partitions. (1 keeps all file numbers)
+     */
+    private final int partitions;
+
+    /**
+     * Creates a filter that only excludes decoy accessions.
+     */
+    public PsmFilter() {
+        this(Double.NEGATIVE_INFINITY, 0, true);
+    }
+
+    /**
+     * Creates a peptide spectrum match filter.
+     *
+     * @param minimumScore minimum -10lgP score of a row.
+     * @param maximumCandidates maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     * @param excludeDecoys skips decoy accessions if true.
+     */
+    public PsmFilter(final double minimumScore, final int maximumCandidates, final boolean excludeDecoys) {
+        this(minimumScore, maximumCandidates, excludeDecoys, null);
+    }
+
+    /**
+     * Creates a peptide spectrum match filter that only keeps the given file numbers.
+     *
+     * @param minimumScore minimum -10lgP score of a row.
+     * @param maximumCandidates maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     * @param excludeDecoys skips decoy accessions if true.
+     * @param fileNumbers file numbers to keep. (null keeps all file numbers)
+     */
+    public PsmFilter(final double minimumScore, final int maximumCandidates, final boolean excludeDecoys,
+            final Set<String> fileNumbers) {
+        this(minimumScore, maximumCandidates, excludeDecoys, fileNumbers, 0, 1);
+    }
+
+    /**
+     * Creates a peptide spectrum match filter that only keeps file numbers of a single partition.
+     * File numbers are divided over the partitions on their hash code.
+     *
+     * @param minimumScore minimum -10lgP score of a row.
+     * @param maximumCandidates maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     * @param excludeDecoys skips decoy accessions if true.
+     * @param fileNumbers file numbers to keep. (null keeps all file numbers)
+     * @param partition index of the partition to keep.
+     * @param partitions amount of partitions. (1 keeps all file numbers)
+     */
+    public PsmFilter(final double minimumScore, final int maximumCandidates, final boolean excludeDecoys,
+            final Set<String> fileNumbers, final int partition, final int partitions) {
+        this(minimumScore, maximumCandidates, false, excludeDecoys, fileNumbers, partition, partitions);
+    }
+
+    /**
+     * Creates a peptide spectrum match filter.
+     *
+     * @param minimumScore minimum -10lgP score of a row.
+     * @param maximumCandidates maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     * @param topScores keeps the candidate sequences with the highest scores if true.
+     * @param excludeDecoys skips decoy accessions if true.
+     * @param fileNumbers file numbers to keep. (null keeps all file numbers)
+     * @param partition index of the partition to keep.
+     * @param partitions amount of partitions. (1 keeps all file numbers)
+     */
+    private PsmFilter(final double minimumScore, final int maximumCandidates, final boolean topScores,
+            final boolean excludeDecoys, final Set<String> fileNumbers, final int partition, final int partitions) {
+        this.minimumScore = minimumScore;
+        this.maximumCandidates = maximumCandidates;
+        this.topScores = topScores;
+        this.excludeDecoys = excludeDecoys;
+        this.fileNumbers = fileNumbers;
+        this.partition = partition;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Creates a copy of this filter that only keeps file numbers of a single partition.
+     *
+     * @param newPartition index of the partition to keep.
+     * @param newPartitions amount of partitions.
+     * @return new peptide spectrum match filter.
+     */
+    public final PsmFilter forPartition(final int newPartition, final int newPartitions) {
+        return new PsmFilter(minimumScore, maximumCandidates, topScores, excludeDecoys, fileNumbers, newPartition, newPartitions);
+    }
+
+    /**
+     * Creates a copy of this filter that keeps the candidate sequences with the highest scores.
+     *
+     * @param candidates maximum amount of candidate sequences per scan ID and dataset.
+     * @return new peptide spectrum match filter.
+     */
+    public final PsmFilter forTopScores(final int candidates) {
+        return new PsmFilter(minimumScore, candidates, candidates > 0, excludeDecoys, fileNumbers, partition, partitions);
+    }
+
+    /**
+     * Provides the partition of a file number.
+     *
+     * @param fileNumber file number of the scan ID.
+     * @param partitions amount of partitions.
+     * @return index of the partition.
+     */
+    public static int getPartition(final String fileNumber, final int partitions) {
+        return Math.floorMod(fileNumber.hashCode(), partitions);
+    }
+
+    /**
+     * Checks the score and accession fields of a csv line inside the raw bytes of a psm file.
+     *
+     * @param scanner delimiter scanner of the raw bytes.
+     * @param scoreStart start index of the -10lgP score.
+     * @param scoreEnd end index of the -10lgP score. (exclusive)
+     * @param accessionStart start index of the accessions.
+     * @param accessionEnd end index of the accessions. (exclusive)
+     * @return true if the row passes the score threshold and has at least one accepted accession.
+     */
+    public final boolean acceptFields(final DelimiterScanner scanner, final int scoreStart, final int scoreEnd,
+            final int accessionStart, final int accessionEnd) {
+        byte[] content = scanner.getContent();
+        if (minimumScore != Double.NEGATIVE_INFINITY && parseScore(content, scoreStart, scoreEnd) < minimumScore) {
+            return false;
+        }
+        //Accepts the row if one of the colon separated accessions is accepted.
+        int tokenStart = accessionStart;
+        while (tokenStart <= accessionEnd) {
+            int tokenEnd = scanner.indexOf((byte) ':', tokenStart, accessionEnd);
+            if (acceptAccession(content, tokenStart, tokenEnd)) {
+                return true;
+            }
+            tokenStart = tokenEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if rows of a file number are kept.
+     *
+     * @param fileNumber file number of the scan ID.
+     * @return true if the file number is kept.
+     */
+    public final boolean acceptFileNumber(final String fileNumber) {
+        if (partitions > 1 && getPartition(fileNumber, partitions) != partition) {
+            return false;
+        }
+        return fileNumbers == null || fileNumbers.contains(fileNumber);
+    }
+
+    /**
+     * Checks if a scan ID can take another candidate sequence.
+     *
+     * @param candidates current amount of candidate sequences of the scan ID for this dataset.
+     * @return true if another candidate sequence can be added.
+     */
+    public final boolean acceptCandidate(final int candidates) {
+        return maximumCandidates <= 0 || candidates < maximumCandidates;
+    }
+
+    /**
+     * Adds a candidate sequence to the candidates of a scan ID and dataset.
+     * Without top scores the first candidates are kept, otherwise the candidates with the highest scores are kept.
+     *
+     * @param scanObject ScanID object of the candidates.
+     * @param sequences candidate sequences of the scan ID for this dataset.
+     * @param scores scores of the candidate sequences.
+     * @param sequence new candidate sequence.
+     * @param score -10lgP score of the new candidate sequence.
+     */
+    public final void addCandidate(final ScanID scanObject, final ArrayList<String> sequences, final ArrayList<String> scores,
+            final String sequence, final String score) {
+        if (topScores) {
+            ScoreHeap.offer(scanObject, sequences, scores, sequence, score, maximumCandidates);
+        } else if (acceptCandidate(sequences.size())) {
+            sequences.add(sequence);
+            scores.add(score);
+        }
+    }
+
+    /**
+     * Checks if the candidates with the highest scores are kept.
+     * @return true if the candidate lists are score heaps that need sorting after collecting.
+     */
+    public final boolean keepsTopScores() {
+        return topScores;
+    }
+
+    /**
+     * Provides the filter settings.
+     * @return filter settings as String.
+     */
+    @Override
+    public final String toString() {
+        return "PsmFilter{Minimum score; " + this.minimumScore + ", Maximum candidates; " + this.maximumCandidates
+                + (this.topScores ? ", Top scores; true" : "") + ", Exclude decoys; " + this.excludeDecoys + ", File numbers; " + this.fileNumbers
+                + ", Partition; " + this.partition + "/" + this.partitions + "}";
+    }
+
+    /**
+     * Checks if an accession inside the given region of the raw bytes is accepted.
+     *
+     * @param content raw bytes of the psm file.
+     * @param start start index of the accession.
+     * @param end end index of the accession. (exclusive)
+     * @return false if decoys are excluded and the accession is a decoy.
+     */
+    public final boolean acceptAccession(final byte[] content, final int start, final int end) {
+        if (!excludeDecoys) {
+            return true;
+        }
+        //Case insensitive search for the decoy name, decoy letters are upper case and setting bit 5 gives lower case.
+        for (int i = start; i <= end - DECOY.length(); i++) {
+            int j = 0;
+            while (j < DECOY.length() && (content[i + j] | 0x20) == (DECOY.charAt(j) | 0x20)) {
+                j++;
+            }
+            if (j == DECOY.length()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal score inside the given region of the raw bytes.
+     * The digits are read as a whole number and divided once by a power of ten. Both are exact doubles as long as the
+     * number has at most 15 digits, so the division gives the same value as Double.parseDouble of the text.
+     *
+     * @param content raw bytes of the psm file.
+     * @param start start index of the score.
+     * @param end end index of the score.
+     * @return score value, scores that can not be read are returned as negative infinity.
+     */
+    private double parseScore(final byte[] content, final int start, final int end) {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean found = false;
+        boolean point = false;
+        boolean negative = false;
+        for (int i = start; i < end; i++) {
+            char c = (char) content[i];
+            if (c >= '0' && c <= '9') {
+                found = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > 0) {
+                    digits++;
+                }
+                if (point) {
+                    decimals++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (c == '-' && i == start) {
+                negative = true;
+            } else {
+                //Falls back to the java parser for exponents and other notations.
+                return parseScoreText(content, start, end);
+            }
+        }
+        if (!found) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (digits > MAXIMUM_EXACT_DIGITS || decimals >= POWERS_OF_TEN.length) {
+            //Longer numbers are not exact as a double, the java parser rounds them correctly.
+            return parseScoreText(content, start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a score inside the given region of the raw bytes with the java parser.
+     *
+     * @param content raw bytes of the psm file.
+     * @param start start index of the score.
+     * @param end end index of the score.
+     * @return score value, scores that can not be read are returned as negative infinity.
+     */
+    private static double parseScoreText(final byte[] content, final int start, final int end) {
+        try {
+            return Double.parseDouble(new String(content, start, end - start, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+}
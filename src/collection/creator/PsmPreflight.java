@@ -0,0 +1,103 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the header and the first block of all psm files in parallel before any file is collected.
+ * Files without the required columns or with rows that do not have the required columns are reported together within
+ * seconds instead of when the collection reaches them. The column indices of the valid files are kept, so the header of a
+ * file is not searched again while the file is collected.
+ *
+ * @author vnijenhuis
+ */
+public class PsmPreflight {
+
+    /**
+     * Amount of bytes that is read from the start of each psm file.
+     */
+    private static final int BLOCK_BYTES = 1 << 16;
+
+    /**
+     * Checks all psm files and provides their schemas.
+     *
+     * @param files paths of the psm files.
+     * @param threads amount of files that are read at the same time.
+     * @return HashMap with the path of the psm file as key and its schema as value.
+     * @throws IOException could not read one of the psm files.
+     * @throws IllegalArgumentException one or more psm files have an invalid header or invalid rows.
+     */
+    public final HashMap<String, PsmSchema> check(final List<String> files, final int threads) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        HashMap<String, PsmSchema> schemas = new HashMap<>();
+        StringBuilder errors = new StringBuilder();
+        try {
+            ArrayList<Future<PsmSchema>> futures = new ArrayList<>();
+            for (final String file : files) {
+                futures.add(pool.submit(() -> checkFile(file)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    schemas.put(files.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IllegalArgumentException) {
+                        errors.append("\n").append(e.getCause().getMessage());
+                    } else if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    } else {
+                        throw new IOException("Could not check " + files.get(i), e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking the psm files.");
+        } finally {
+            pool.shutdownNow();
+        }
+        if (errors.length() > 0) {
+            throw new IllegalArgumentException("Invalid psm files found:" + errors);
+        }
+        //Counts the files of each scan ID format.
+        TreeMap<PsmSchema.ScanFormat, Integer> formats = new TreeMap<>();
+        for (PsmSchema schema : schemas.values()) {
+            formats.merge(schema.getScanFormat(), 1, Integer::sum);
+        }
+        System.out.println("Checked the headers of " + files.size() + " psm files in " + (System.currentTimeMillis() - startTime)
+                + " ms, scan ID formats: " + formats);
+        return schemas;
+    }
+
+    /**
+     * Reads the first block of a psm file and checks its header and rows.
+     *
+     * @param file path of the psm file.
+     * @return schema of the psm file.
+     * @throws IOException could not read the file.
+     */
+    private PsmSchema checkFile(final String file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long fileSize = input.length();
+            byte[] block = new byte[(int) Math.min(fileSize, BLOCK_BYTES)];
+            input.readFully(block);
+            if (block.length == 0) {
+                throw new IllegalArgumentException("Empty psm file: " + file);
+            }
+            return PsmSchema.detect(file, block, block.length, block.length == fileSize);
+        }
+    }
+}
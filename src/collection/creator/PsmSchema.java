@@ -0,0 +1,268 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.nio.charset.Charset;
+
+/**
+ * Column indices and scan ID format of a psm file.
+ * The columns are found in the header once, either by the preflight check of all psm files or when a file is collected,
+ * and a header without one of the required columns is rejected.
+ *
+ * @author vnijenhuis
+ */
+public class PsmSchema {
+
+    /**
+     * Format of the scan IDs of a psm file.
+     */
+    public enum ScanFormat {
+        /**
+         * Scan IDs with a file number, such as F1:2048.
+         */
+        FILE_SCAN,
+        /**
+         * Scan numbers without a file number, the sample name is used as file number.
+         */
+        BARE,
+        /**
+         * Both formats are used.
+         */
+        MIXED,
+        /**
+         * No rows were checked.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Column index of the peptide sequence.
+     */
+    private final int sequenceIndex;
+
+    /**
+     * Column index of the -10lgP score.
+     */
+    private final int scoreIndex;
+
+    /**
+     * Column index of the scan ID.
+     */
+    private final int scanIndex;
+
+    /**
+     * Column index of the accessions.
+     */
+    private final int accessionIndex;
+
+    /**
+     * Format of the scan IDs.
+     */
+    private final ScanFormat scanFormat;
+
+    /**
+     * Creates a psm file schema.
+     *
+     * @param sequenceIndex column index of the peptide sequence.
+     * @param scoreIndex column index of the -10lgP score.
+     * @param scanIndex column index of the scan ID.
+     * @param accessionIndex column index of the accessions.
+     * @param scanFormat format of the scan IDs.
+     */
+    private PsmSchema(final int sequenceIndex, final int scoreIndex, final int scanIndex, final int accessionIndex,
+            final ScanFormat scanFormat) {
+        this.sequenceIndex = sequenceIndex;
+        this.scoreIndex = scoreIndex;
+        this.scanIndex = scanIndex;
+        this.accessionIndex = accessionIndex;
+        this.scanFormat = scanFormat;
+    }
+
+    /**
+     * Finds the required columns in the header of a psm file.
+     *
+     * @param file path of the psm file.
+     * @param header first line of the psm file.
+     * @return schema with an unknown scan ID format.
+     * @throws IllegalArgumentException the header misses the peptide, -10lgP, scan or accession column.
+     */
+    public static PsmSchema fromHeader(final String file, final String header) {
+        int sequence = -1;
+        int score = -1;
+        int scan = -1;
+        int accession = -1;
+        //Files that are saved with a byte order mark start with an invisible character.
+        String[] columns = header.replace("\uFEFF", "").split(",");
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i].trim().toLowerCase();
+            if (column.equals("peptide")) {
+                sequence = i;
+            } else if (column.contains("accession")) {
+                accession = i;
+            } else if (column.contains("scan")) {
+                scan = i;
+            } else if (column.contains("-10lgp")) {
+                score = i;
+            }
+        }
+        StringBuilder missing = new StringBuilder();
+        addMissing(missing, sequence, "Peptide");
+        addMissing(missing, score, "-10lgP");
+        addMissing(missing, scan, "Scan");
+        addMissing(missing, accession, "Accession");
+        if (missing.length() > 0) {
+            throw new IllegalArgumentException("Missing column(s) " + missing + " in the header of " + file + ": " + header);
+        }
+        return new PsmSchema(sequence, score, scan, accession, ScanFormat.UNKNOWN);
+    }
+
+    /**
+     * Checks the header and the rows of the first block of a psm file.
+     *
+     * @param file path of the psm file.
+     * @param block first bytes of the psm file.
+     * @param length amount of bytes in the block.
+     * @param complete true if the block contains the complete file.
+     * @return schema with the scan ID format of the checked rows.
+     * @throws IllegalArgumentException the header misses a required column or none of the checked rows has all columns.
+     */
+    public static PsmSchema detect(final String file, final byte[] block, final int length, final boolean complete) {
+        DelimiterScanner scanner = new DelimiterScanner(block);
+        Charset charset = Charset.defaultCharset();
+        int lineEnd = scanner.indexOf((byte) '\n', 0, length);
+        if (lineEnd == length && !complete) {
+            throw new IllegalArgumentException("The header of " + file + " is longer than " + length + " bytes.");
+        }
+        PsmSchema schema = fromHeader(file, new String(block, 0, trimLine(block, 0, lineEnd), charset));
+        int[] fieldEnds = new int[schema.getLastColumn() + 1];
+        int rows = 0;
+        int validRows = 0;
+        int fileScans = 0;
+        int lineStart = lineEnd + 1;
+        while (lineStart < length) {
+            lineEnd = scanner.indexOf((byte) '\n', lineStart, length);
+            //The last line of a partial block can be cut off.
+            if (lineEnd == length && !complete) {
+                break;
+            }
+            int end = trimLine(block, lineStart, lineEnd);
+            if (end > lineStart) {
+                rows++;
+                if (scanner.split((byte) ',', lineStart, end, fieldEnds) == fieldEnds.length) {
+                    validRows++;
+                    int scanStart = schema.scanIndex == 0 ? lineStart : fieldEnds[schema.scanIndex - 1] + 1;
+                    if (scanner.indexOf((byte) ':', scanStart, fieldEnds[schema.scanIndex]) < fieldEnds[schema.scanIndex]) {
+                        fileScans++;
+                    }
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (rows > 0 && validRows == 0) {
+            throw new IllegalArgumentException("None of the first " + rows + " rows of " + file + " has "
+                    + fieldEnds.length + " comma separated columns.");
+        }
+        ScanFormat format = ScanFormat.UNKNOWN;
+        if (validRows > 0) {
+            if (fileScans == validRows) {
+                format = ScanFormat.FILE_SCAN;
+            } else if (fileScans == 0) {
+                format = ScanFormat.BARE;
+            } else {
+                format = ScanFormat.MIXED;
+            }
+        }
+        return new PsmSchema(schema.sequenceIndex, schema.scoreIndex, schema.scanIndex, schema.accessionIndex, format);
+    }
+
+    /**
+     * Provides the column index of the peptide sequence.
+     * @return column index.
+     */
+    public final int getSequenceIndex() {
+        return sequenceIndex;
+    }
+
+    /**
+     * Provides the column index of the -10lgP score.
+     * @return column index.
+     */
+    public final int getScoreIndex() {
+        return scoreIndex;
+    }
+
+    /**
+     * Provides the column index of the scan ID.
+     * @return column index.
+     */
+    public final int getScanIndex() {
+        return scanIndex;
+    }
+
+    /**
+     * Provides the column index of the accessions.
+     * @return column index.
+     */
+    public final int getAccessionIndex() {
+        return accessionIndex;
+    }
+
+    /**
+     * Provides the highest index of the required columns, columns after it are not needed.
+     * @return column index.
+     */
+    public final int getLastColumn() {
+        return Math.max(Math.max(accessionIndex, sequenceIndex), Math.max(scanIndex, scoreIndex));
+    }
+
+    /**
+     * Provides the format of the scan IDs.
+     * @return scan ID format.
+     */
+    public final ScanFormat getScanFormat() {
+        return scanFormat;
+    }
+
+    /**
+     * Provides the column indices and scan ID format.
+     * @return schema as String.
+     */
+    @Override
+    public final String toString() {
+        return "PsmSchema{Peptide; " + sequenceIndex + ", -10lgP; " + scoreIndex + ", Scan; " + scanIndex + ", Accession; "
+                + accessionIndex + ", Scan format; " + scanFormat + "}";
+    }
+
+    /**
+     * Adds the name of a column that was not found.
+     *
+     * @param missing names of missing columns.
+     * @param index index of the column or -1 if it was not found.
+     * @param name name of the column.
+     */
+    private static void addMissing(final StringBuilder missing, final int index, final String name) {
+        if (index < 0) {
+            if (missing.length() > 0) {
+                missing.append(", ");
+            }
+            missing.append(name);
+        }
+    }
+
+    /**
+     * Removes the carriage return at the end of a line.
+     *
+     * @param block bytes of the file.
+     * @param lineStart start index of the line.
+     * @param lineEnd end index of the line without the line feed.
+     * @return end index of the line without the carriage return.
+     */
+    private static int trimLine(final byte[] block, final int lineStart, final int lineEnd) {
+        if (lineEnd > lineStart && block[lineEnd - 1] == '\r') {
+            return lineEnd - 1;
+        }
+        return lineEnd;
+    }
+}
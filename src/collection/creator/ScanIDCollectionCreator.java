@@ -1,199 +1,831 @@
-/*
- * @author Vikthor Nijenhuis
- * @project peptide fragmentation control
- */
-package collection.creator;
-
-import collections.ScanIDCollection;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Pattern;
-import objects.ScanID;
-
-/**
- * Read the text file(s) and save entries inside a scan ID collection.
- *
- * @author vnijenhuis
- */
-public class ScanIDCollectionCreator {
-
-    /**
-     * Creates a collection of scan ID objects.
-     *
-     * @param peptideFiles a list of peptide data files.
-     * @param dataset name of the dataset.
-     * @param method name of the ms method that was used.
-     * @param datasets list of all dataset names.
-     * @param sampleList list of sample names
-     * @return Collection of peptide objects.
-     * @throws FileNotFoundException could not find the specified file.
-     * @throws IOException could not find/open the specified file.
-     */
-    public final HashMap<String, ArrayList<ScanID>> createScanCollection(final ArrayList<String> peptideFiles, final String dataset,
-            final String method, final ArrayList<String> datasets, final ArrayList<String> sampleList) throws FileNotFoundException, IOException {
-        //HashMap with the file number as key and a list of ScanIDs as value.
-        HashMap<String, ArrayList<ScanID>> scanFiles = new HashMap<>();
-        // Read the file
-        ScanIDCollection scanCollection = new ScanIDCollection();
-        for (String file : peptideFiles) {
-            //Pattern to split the path into folders.
-            String pattern = Pattern.quote(File.separator);
-            String[] folders = file.split(pattern);
-            String sample = "";
-            //Creates the dataset and sample names.
-            for (String folder : folders) {
-                //Match sample names.
-                String expression = "^(" + sampleList.get(0).toLowerCase() + "|" + sampleList.get(1).toLowerCase() + ")_?\\d{1,}$";
-                if (folder.toLowerCase().matches(expression)) {
-                    sample = folder;
-                }
-            }
-            System.out.println("Collecting peptides from " + sample + " " + method + " " + dataset + "...");
-            FileReader fr = new FileReader(file);
-            BufferedReader bffFr = new BufferedReader(fr);
-            String line;
-            int accessionIndex = 0;
-            int sequenceIndex = 0;
-            int scanIndex = 0;
-            int scoreIndex = 0;
-            boolean firstLine = true;
-            int count = 0;
-            //Reads each line in the given file.
-            while ((line = bffFr.readLine()) != null) {
-                count++;
-                if (firstLine) {
-                    String[] data = line.split(",");
-                    for (int i = 0; i < data.length; i++) {
-                        //Peptide sequence index.
-                        if (data[i].toLowerCase().equals("peptide")) {
-                            sequenceIndex = i;
-                        } //Accession ID index.
-                        else if (data[i].toLowerCase().contains("accession")) {
-                            accessionIndex = i;
-                        } //Scan ID index.
-                        else if (data[i].toLowerCase().contains("scan")) {
-                            scanIndex = i;
-                        } //Score index.
-                        else if (data[i].toLowerCase().contains("-10lgp")) {
-                            scoreIndex = i;
-                        }
-                    }
-                    firstLine = false;
-                    line = bffFr.readLine();
-                }
-                //Splits the data of each line on comma.
-                String[] data = line.split(",");
-                String scan = data[scanIndex];
-                String score = data[scoreIndex];
-                ArrayList<String> accessions = new ArrayList<>();
-                //Checks if accession index is possible to grab. (Analysis can provide empty accession ID's for some reason)
-                if (data.length > accessionIndex) {
-                    String accessionData = data[accessionIndex];
-                    //Splits the accessions names if possible.
-                    if (accessionData.contains(":")) {
-                        accessions.addAll(Arrays.asList(accessionData.split(":")));
-                    } else {
-                        accessions.add(accessionData);
-                    }
-                }
-                for (String accession : accessions) {
-                    //Skip decoy sequences.
-                    if (!accession.toUpperCase().contains("DECOY")) {
-                        String sequence = data[sequenceIndex];
-                        //Can remove (+15.99) and similar matches from a peptide sequence.
-                        //                sequence = sequence.replaceAll("\\(\\+[0-9]+\\.[0-9]+\\)", "");
-                        Boolean newFileNumber = true;
-                        String fileNumber = "";
-                        if (scan.contains(":")) {
-                            fileNumber = scan.split(":")[0];
-                        } else {
-                            fileNumber = sample;
-                            scan = sample + ":" + scan;
-                        }
-                        //Create new scanID object.
-                        ScanID peptideScan = new ScanID(method, scan, sequence, score, sample, dataset, datasets);
-                        if (!scanFiles.entrySet().isEmpty()) {
-                            //Loop through entries of the HashMap.
-                            for (Map.Entry<String, ArrayList<ScanID>> entry : scanFiles.entrySet()) {
-                                //Match filenumber to HashMap keys.
-                                if (entry.getKey().equals(fileNumber)) {
-                                    newFileNumber = false;
-                                    Boolean newScanID = true;
-                                    for (ScanID scanObject : entry.getValue()) {
-                                        //If scan IDs match: add scan sequences to this scan ID.
-                                        if (scanObject.getScanID().equals(scan)) {
-                                            ArrayList<ScanID> newList = entry.getValue();
-                                            newList.remove(scanObject);
-                                            newScanID = false;
-                                            ScanID modifiedScanObject = setScanObjectValues(scanObject, sequence, score, dataset, datasets);
-                                            newList.add(modifiedScanObject);
-                                            scanFiles.put(fileNumber, newList);
-                                            break;
-                                        }
-                                    }
-                                    //If no scan ID was matched a new entry is added,
-                                    if (newScanID) {
-                                        entry.getValue().add(peptideScan);
-                                    }
-                                }
-                                //New scan file number is added to the hashmap.
-                            }
-                            if (newFileNumber) {
-                                ArrayList<ScanID> scanList = new ArrayList<>();
-                                scanList.add(peptideScan);
-                                scanFiles.put(fileNumber, scanList);
-                            }
-                            //First entry of the HashMap.
-                        } else {
-                            ArrayList<ScanID> scanList = new ArrayList<>();
-                            scanList.add(peptideScan);
-                            scanFiles.put(fileNumber, scanList);
-                        }
-                    }
-                }
-                if (count % 1000 == 0) {
-                    System.out.println("Collected data from " + count + " scan IDs!");
-                }
-            }
-            //Returns the collection of Scan ID objects.
-            System.out.println("Collected data from " + count + " scan IDs from "
-                    + sample + " " + method + " " + dataset + "!");
-        }
-        return scanFiles;
-    }
-
-    /**
-     * Edits the scan ID sequence and score values based on the dataset where the scan ID came from.
-     *
-     * @param scanObject current ScanID object.
-     * @param sequence new ScanID sequence.
-     * @param score new ScanID score.
-     * @param dataset name of the dataset.
-     * @param datasets list of all dataset names.
-     * @return returns updated scanObject.
-     */
-    private ScanID setScanObjectValues(ScanID scanObject, final String sequence, final String score, final String dataset,
-            final ArrayList<String> datasets) {
-        //If sequences are not present for the given scan object, then they are added to the scan object.
-        if (dataset.equals(datasets.get(0)) && !scanObject.getUniprotSequences().contains(sequence)) {
-            scanObject.addUniprotSequence(sequence);
-            scanObject.addUniprotScore(score);
-            //Add sequences to combined list.
-        } else if (dataset.equals(datasets.get(1)) && !scanObject.getCombinedSequences().contains(sequence)) {
-            scanObject.addCombinedSequence(sequence);
-            scanObject.addCombinedScore(score);
-            //Add sequences to individual list.
-        } else if (dataset.equals(datasets.get(2)) && !scanObject.getIndividualSequences().contains(sequence)) {
-            scanObject.addIndividualSequence(sequence);
-            scanObject.addIndividualScore(score);
-        }
-        return scanObject;
-    }
-}
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import collections.AccessionIndex;
+import matrix.PeptidePresenceMatrix;
+import objects.ScanID;
+
+/**
+ * Read the text file(s) and save entries inside a scan ID collection.
+ *
+ * @author vnijenhuis
+ */
+public class ScanIDCollectionCreator {
+
+    /**
+     * Pattern to split a path into folders.
+     */
+    private static final Pattern FOLDER_SEPARATOR = Pattern.compile(Pattern.quote(File.separator));
+
+    /**
+     * File numbers up to this number are reused for each row, higher file numbers create a String for each row.
+     */
+    private static final long MAXIMUM_FILE_NUMBER = 1 << 16;
+
+    /**
+     * Reads and parses files in parallel. (null if files are read one by one)
+     */
+    private final IngestionExecutor executor;
+
+    /**
+     * Inverted index from accession to scan IDs that is filled while the files are parsed. (null if accessions are not indexed)
+     */
+    private AccessionIndex proteinIndex;
+
+    /**
+     * Presence matrix of peptides in each sample and dataset that is filled while the files are parsed. (null if no matrix is built)
+     */
+    private PeptidePresenceMatrix presenceMatrix;
+
+    /**
+     * Schemas of the psm files that were found by the preflight check. (null if the header of each file is read when it is collected)
+     */
+    private Map<String, PsmSchema> schemas;
+
+    /**
+     * Creates a scan collection creator that reads files one by one.
+     */
+    public ScanIDCollectionCreator() {
+        this(null);
+    }
+
+    /**
+     * Creates a scan collection creator that reads and parses files with the given executor.
+     *
+     * @param executor executor that reads and parses files in parallel. (null if files are read one by one)
+     */
+    public ScanIDCollectionCreator(final IngestionExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the inverted index that collects the accessions of all parsed rows.
+     *
+     * @param proteinIndex inverted index from accession to scan IDs. (null if accessions are not indexed)
+     */
+    public final void setAccessionIndex(final AccessionIndex proteinIndex) {
+        this.proteinIndex = proteinIndex;
+    }
+
+    /**
+     * Sets the presence matrix that collects the peptides of all parsed rows.
+     *
+     * @param presenceMatrix presence matrix of peptides in each sample and dataset. (null if no matrix is built)
+     */
+    public final void setPresenceMatrix(final PeptidePresenceMatrix presenceMatrix) {
+        this.presenceMatrix = presenceMatrix;
+    }
+
+    /**
+     * Sets the schemas of the psm files that were checked before collecting.
+     *
+     * @param schemas schema of each psm file path. (null if the header of each file is read when it is collected)
+     */
+    public final void setSchemas(final Map<String, PsmSchema> schemas) {
+        this.schemas = schemas;
+    }
+
+    /**
+     * Creates a collection of scan ID objects.
+     *
+     * @param peptideFiles a list of peptide data files.
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param datasets list of all dataset names.
+     * @param sampleList list of sample names
+     * @return Collection of peptide objects.
+     * @throws FileNotFoundException could not find the specified file.
+     * @throws IOException could not find/open the specified file.
+     */
+    public final HashMap<String, ArrayList<ScanID>> createScanCollection(final ArrayList<String> peptideFiles, final String dataset,
+            final String method, final ArrayList<String> datasets, final ArrayList<String> sampleList) throws FileNotFoundException, IOException {
+        return createScanCollection(peptideFiles, dataset, method, datasets, sampleList, null, new PsmFilter());
+    }
+
+    /**
+     * Creates a collection of scan ID objects and only keeps rows that pass the given filters.
+     *
+     * @param peptideFiles a list of peptide data files.
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param datasets list of all dataset names.
+     * @param sampleList list of sample names
+     * @param scanFilter set of scan IDs to keep, rows with other scan IDs are skipped. (null keeps all rows)
+     * @param psmFilter score, decoy and candidate filter for each row.
+     * @return Collection of peptide objects.
+     * @throws FileNotFoundException could not find the specified file.
+     * @throws IOException could not find/open the specified file.
+     */
+    public final HashMap<String, ArrayList<ScanID>> createScanCollection(final ArrayList<String> peptideFiles, final String dataset,
+            final String method, final ArrayList<String> datasets, final ArrayList<String> sampleList, final Set<String> scanFilter,
+            final PsmFilter psmFilter) throws FileNotFoundException, IOException {
+        //HashMap with the file number as key and a list of ScanIDs as value.
+        HashMap<String, ArrayList<ScanID>> scanFiles = new HashMap<>();
+        //The sample name pattern and the scan filter are prepared once for all files.
+        final Pattern samplePattern = Pattern.compile("^(" + sampleList.get(0).toLowerCase() + "|" + sampleList.get(1).toLowerCase()
+                + ")_?\\d{1,}$");
+        final ScanKeyTable<Boolean> filterTable = scanFilter == null ? null : ScanKeyTable.forKeys(scanFilter);
+        if (executor == null) {
+            //Read the files one by one, each file is read in chunks of whole lines.
+            for (String file : peptideFiles) {
+                FileCollector collector = new FileCollector(file, dataset, method, datasets, samplePattern, filterTable, psmFilter);
+                try (LineChunkReader chunk = new LineChunkReader(file, LineChunkReader.CHUNK_BYTES)) {
+                    while (chunk.next()) {
+                        collector.parse(chunk);
+                    }
+                }
+                mergeScanCollection(scanFiles, collector.finish(), dataset, datasets, psmFilter);
+            }
+        } else {
+            //Read and parse all files in parallel, results are merged in the order of the files.
+            return mergeScanCollections(executor.parseFiles(peptideFiles,
+                    file -> new FileCollector(file, dataset, method, datasets, samplePattern, filterTable, psmFilter)),
+                    dataset, datasets, psmFilter);
+        }
+        if (psmFilter.keepsTopScores()) {
+            sortCandidates(scanFiles, dataset, datasets);
+        }
+        return scanFiles;
+    }
+
+    /**
+     * Parses the peptide data files of one or more datasets without merging them and passes the scan IDs of each file to
+     * a listener as soon as the file is parsed. The scan IDs of the files of a dataset are merged with
+     * mergeScanCollections, in the order of the files.
+     *
+     * @param peptideFiles a list of peptide data files.
+     * @param fileDatasets name of the dataset of each file.
+     * @param method name of the ms method that was used.
+     * @param datasets list of all dataset names.
+     * @param sampleList list of sample names
+     * @param scanFilter set of scan IDs to keep, rows with other scan IDs are skipped. (null keeps all rows)
+     * @param psmFilter score, decoy and candidate filter for each row.
+     * @param listener receives the scan IDs of each file with the index of the file.
+     * @throws IOException could not find/open the specified file.
+     */
+    public final void parseScanFiles(final ArrayList<String> peptideFiles, final ArrayList<String> fileDatasets,
+            final String method, final ArrayList<String> datasets, final ArrayList<String> sampleList, final Set<String> scanFilter,
+            final PsmFilter psmFilter, final IngestionExecutor.FileListener<HashMap<String, ArrayList<ScanID>>> listener)
+            throws IOException {
+        final Pattern samplePattern = Pattern.compile("^(" + sampleList.get(0).toLowerCase() + "|" + sampleList.get(1).toLowerCase()
+                + ")_?\\d{1,}$");
+        final ScanKeyTable<Boolean> filterTable = scanFilter == null ? null : ScanKeyTable.forKeys(scanFilter);
+        if (executor == null) {
+            for (int i = 0; i < peptideFiles.size(); i++) {
+                FileCollector collector = new FileCollector(peptideFiles.get(i), fileDatasets.get(i), method, datasets,
+                        samplePattern, filterTable, psmFilter);
+                try (LineChunkReader chunk = new LineChunkReader(peptideFiles.get(i), LineChunkReader.CHUNK_BYTES)) {
+                    while (chunk.next()) {
+                        collector.parse(chunk);
+                    }
+                }
+                listener.fileParsed(i, collector.finish());
+            }
+        } else {
+            //Files are found by their path, the same file is never part of two datasets.
+            final HashMap<String, String> datasetOfFile = new HashMap<>();
+            for (int i = 0; i < peptideFiles.size(); i++) {
+                datasetOfFile.put(peptideFiles.get(i), fileDatasets.get(i));
+            }
+            executor.parseFiles(peptideFiles, file -> new FileCollector(file, datasetOfFile.get(file), method, datasets,
+                    samplePattern, filterTable, psmFilter), listener);
+        }
+    }
+
+    /**
+     * Merges the scan IDs of the files of a dataset in the order of the files and sorts the candidates of the top-k heaps.
+     *
+     * @param fileScanList scan IDs of each file, in the order of the files.
+     * @param dataset name of the dataset.
+     * @param datasets list of all dataset names.
+     * @param psmFilter filter that limits the amount of candidate sequences.
+     * @return HashMap with the file number as key and a list of ScanIDs as value.
+     */
+    public final HashMap<String, ArrayList<ScanID>> mergeScanCollections(final List<HashMap<String, ArrayList<ScanID>>> fileScanList,
+            final String dataset, final ArrayList<String> datasets, final PsmFilter psmFilter) {
+        HashMap<String, ArrayList<ScanID>> scanFiles = new HashMap<>();
+        for (HashMap<String, ArrayList<ScanID>> fileScans : fileScanList) {
+            mergeScanCollection(scanFiles, fileScans, dataset, datasets, psmFilter);
+        }
+        if (psmFilter.keepsTopScores()) {
+            sortCandidates(scanFiles, dataset, datasets);
+        }
+        return scanFiles;
+    }
+
+    /**
+     * Sorts the candidate sequences of each scan ID on descending score after the score heaps are filled.
+     *
+     * @param scanFiles scan collection of the dataset.
+     * @param dataset name of the dataset.
+     * @param datasets list of all dataset names.
+     */
+    private void sortCandidates(final HashMap<String, ArrayList<ScanID>> scanFiles, final String dataset,
+            final ArrayList<String> datasets) {
+        for (ArrayList<ScanID> scanList : scanFiles.values()) {
+            for (ScanID scanObject : scanList) {
+                if (dataset.equals(datasets.get(0))) {
+                    ScoreHeap.sort(scanObject, scanObject.getUniprotSequences(), scanObject.getUniprotScores());
+                } else if (dataset.equals(datasets.get(1))) {
+                    ScoreHeap.sort(scanObject, scanObject.getCombinedSequences(), scanObject.getCombinedScores());
+                } else if (dataset.equals(datasets.get(2))) {
+                    ScoreHeap.sort(scanObject, scanObject.getIndividualSequences(), scanObject.getIndividualScores());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Provides the start index of a field of a csv line.
+     *
+     * @param lineStart start index of the line.
+     * @param fieldEnds end index of each field of the line.
+     * @param field column index of the field.
+     * @return start index of the field.
+     */
+    private int getFieldStart(final int lineStart, final int[] fieldEnds, final int field) {
+        if (field == 0) {
+            return lineStart;
+        }
+        return fieldEnds[field - 1] + 1;
+    }
+
+    /**
+     * Checks if the rest of a csv line only contains empty fields.
+     *
+     * @param content raw bytes of the file.
+     * @param from first index of the rest of the line.
+     * @param lineEnd end index of the line.
+     * @return true if the rest of the line only contains commas.
+     */
+    private boolean isEmptyTail(final byte[] content, final int from, final int lineEnd) {
+        for (int i = from; i < lineEnd; i++) {
+            if (content[i] != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Provides the file number of a scan ID and reuses the file number of earlier rows with the same number.
+     *
+     * @param fileNumbers file numbers of earlier rows by number.
+     * @param number parsed number of the file number. (1 for F1)
+     * @param content raw bytes of the file.
+     * @param scanStart start index of the scan ID. (F1:2048)
+     * @param colon index of the colon in the scan ID.
+     * @param charset charset of the file.
+     * @return file number. (F1)
+     */
+    private String getFileNumber(final String[] fileNumbers, final int number, final byte[] content, final int scanStart,
+            final int colon, final Charset charset) {
+        String fileNumber = fileNumbers[number];
+        if (fileNumber == null || !ScanKeyTable.matches(fileNumber, "", content, scanStart, colon)) {
+            fileNumber = new String(content, scanStart, colon - scanStart, charset);
+            fileNumbers[number] = fileNumber;
+        }
+        return fileNumber;
+    }
+
+    /**
+     * Checks if a row has an accession that is accepted by the filter. Empty accessions at the end of a list of accessions
+     * are skipped and a row that ends with an empty accession field has no accessions.
+     *
+     * @param scanner delimiter scanner of the raw bytes.
+     * @param accessionStart start index of the accessions.
+     * @param accessionEnd end index of the accessions. (exclusive)
+     * @param lineEnd end index of the line.
+     * @param psmFilter decoy filter for each accession.
+     * @return true if one of the accessions is accepted.
+     */
+    private boolean hasAcceptedAccession(final DelimiterScanner scanner, final int accessionStart, final int accessionEnd,
+            final int lineEnd, final PsmFilter psmFilter) {
+        byte[] content = scanner.getContent();
+        int end = accessionEnd;
+        //Splits the accession names if possible. (Analysis can provide empty accession ID's for some reason)
+        boolean multipleAccessions = scanner.indexOf((byte) ':', accessionStart, end) < end;
+        if (multipleAccessions) {
+            while (end > accessionStart && content[end - 1] == ':') {
+                end--;
+            }
+        } else if (accessionStart == end && isEmptyTail(content, end, lineEnd)) {
+            return false;
+        }
+        int tokenStart = accessionStart;
+        while (tokenStart <= end && !(multipleAccessions && tokenStart == end)) {
+            int tokenEnd = scanner.indexOf((byte) ':', tokenStart, end);
+            //Skip decoy sequences.
+            if (psmFilter.acceptAccession(content, tokenStart, tokenEnd)) {
+                return true;
+            }
+            tokenStart = tokenEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Provides the candidate sequences of a scan ID for a dataset.
+     *
+     * @param scanObject scan ID object.
+     * @param datasetIndex index of the dataset. (0 for uniprot, 1 for combined and 2 for individual)
+     * @return candidate sequences or null if the dataset is unknown.
+     */
+    private ArrayList<String> getCandidates(final ScanID scanObject, final int datasetIndex) {
+        switch (datasetIndex) {
+            case 0:
+                return scanObject.getUniprotSequences();
+            case 1:
+                return scanObject.getCombinedSequences();
+            case 2:
+                return scanObject.getIndividualSequences();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks if a sequence inside the raw bytes is one of the candidate sequences without creating a String.
+     *
+     * @param sequences candidate sequences. (null if the dataset is unknown)
+     * @param content raw bytes of the file.
+     * @param start start index of the sequence.
+     * @param end end index of the sequence. (exclusive)
+     * @return true if the sequence is present or can not be added, false if the sequence has to be compared as String.
+     */
+    private boolean containsSequence(final ArrayList<String> sequences, final byte[] content, final int start, final int end) {
+        if (sequences == null) {
+            return true;
+        }
+        for (int i = 0; i < sequences.size(); i++) {
+            if (ScanKeyTable.matches(sequences.get(i), "", content, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a set of all scan IDs inside a scan collection.
+     * This set can be used as scan filter to only collect scan IDs that are present in the given collection.
+     *
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @return set of scan IDs.
+     */
+    public final HashSet<String> createScanFilter(final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        HashSet<String> scanFilter = new HashSet<>();
+        for (ArrayList<ScanID> scanList : scanFiles.values()) {
+            for (ScanID scanObject : scanList) {
+                scanFilter.add(scanObject.getScanID());
+            }
+        }
+        return scanFilter;
+    }
+
+    /**
+     * Merges the scan IDs of a single file into the scan collection of the dataset.
+     *
+     * @param scanFiles scan collection of the dataset.
+     * @param fileScans scan collection of a single file.
+     * @param dataset name of the dataset.
+     * @param datasets list of all dataset names.
+     * @param psmFilter filter that limits the amount of candidate sequences.
+     */
+    private void mergeScanCollection(final HashMap<String, ArrayList<ScanID>> scanFiles, final HashMap<String, ArrayList<ScanID>> fileScans,
+            final String dataset, final ArrayList<String> datasets, final PsmFilter psmFilter) {
+        for (Map.Entry<String, ArrayList<ScanID>> entry : fileScans.entrySet()) {
+            ArrayList<ScanID> scanList = scanFiles.get(entry.getKey());
+            //New file numbers are added as a whole.
+            if (scanList == null) {
+                scanFiles.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            HashMap<String, ScanID> scanIndex = new HashMap<>();
+            for (ScanID scanObject : scanList) {
+                scanIndex.put(scanObject.getScanID(), scanObject);
+            }
+            for (ScanID fileScanObject : entry.getValue()) {
+                ScanID scanObject = scanIndex.get(fileScanObject.getScanID());
+                if (scanObject == null) {
+                    scanList.add(fileScanObject);
+                    scanIndex.put(fileScanObject.getScanID(), fileScanObject);
+                } else {
+                    //Add the sequences of a scan ID that was already found in another file.
+                    ArrayList<String> sequences = fileScanObject.getUniprotSequences();
+                    ArrayList<String> scores = fileScanObject.getUniprotScores();
+                    if (dataset.equals(datasets.get(1))) {
+                        sequences = fileScanObject.getCombinedSequences();
+                        scores = fileScanObject.getCombinedScores();
+                    } else if (dataset.equals(datasets.get(2))) {
+                        sequences = fileScanObject.getIndividualSequences();
+                        scores = fileScanObject.getIndividualScores();
+                    }
+                    for (int i = 0; i < sequences.size(); i++) {
+                        setScanObjectValues(scanObject, sequences.get(i), scores.get(i), dataset, datasets, psmFilter);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Edits the scan ID sequence and score values based on the dataset where the scan ID came from.
+     *
+     * @param scanObject current ScanID object.
+     * @param sequence new ScanID sequence.
+     * @param score new ScanID score.
+     * @param dataset name of the dataset.
+     * @param datasets list of all dataset names.
+     * @param psmFilter filter that limits the amount of candidate sequences.
+     * @return returns updated scanObject.
+     */
+    private ScanID setScanObjectValues(ScanID scanObject, final String sequence, final String score, final String dataset,
+            final ArrayList<String> datasets, final PsmFilter psmFilter) {
+        //If sequences are not present for the given scan object, then they are added to the scan object.
+        if (dataset.equals(datasets.get(0)) && !scanObject.getUniprotSequences().contains(sequence)) {
+            psmFilter.addCandidate(scanObject, scanObject.getUniprotSequences(), scanObject.getUniprotScores(), sequence, score);
+            //Add sequences to combined list.
+        } else if (dataset.equals(datasets.get(1)) && !scanObject.getCombinedSequences().contains(sequence)) {
+            psmFilter.addCandidate(scanObject, scanObject.getCombinedSequences(), scanObject.getCombinedScores(), sequence, score);
+            //Add sequences to individual list.
+        } else if (dataset.equals(datasets.get(2)) && !scanObject.getIndividualSequences().contains(sequence)) {
+            psmFilter.addCandidate(scanObject, scanObject.getIndividualSequences(), scanObject.getIndividualScores(), sequence, score);
+        }
+        return scanObject;
+    }
+
+    /**
+     * Collects the scan IDs of a single peptide data file from chunks of whole lines.
+     * The state of the file, such as the column indices and the scan IDs that were found, is kept between chunks.
+     */
+    private class FileCollector implements IngestionExecutor.FileParser<HashMap<String, ArrayList<ScanID>>> {
+
+        /**
+         * Path of the peptide data file.
+         */
+        private final String file;
+
+        /**
+         * Name of the dataset.
+         */
+        private final String dataset;
+
+        /**
+         * Name of the ms method that was used.
+         */
+        private final String method;
+
+        /**
+         * List of all dataset names.
+         */
+        private final ArrayList<String> datasets;
+
+        /**
+         * Scan IDs to keep, rows with other scan IDs are skipped. (null keeps all rows)
+         */
+        private final ScanKeyTable<Boolean> filterTable;
+
+        /**
+         * Score, decoy and candidate filter for each row.
+         */
+        private final PsmFilter psmFilter;
+
+        /**
+         * HashMap with the file number as key and a list of ScanIDs as value.
+         */
+        private final HashMap<String, ArrayList<ScanID>> scanFiles;
+
+        /**
+         * Name of the sample folder of the file.
+         */
+        private final String sample;
+
+        /**
+         * Sample name and colon, the file number of scan numbers without a file number.
+         */
+        private final String samplePrefix;
+
+        /**
+         * Accessions of this file, added to the shared index at the end of the file. (null if accessions are not indexed)
+         */
+        private final AccessionIndex fileIndex;
+
+        /**
+         * Peptides of this file, added to the shared matrix at the end of the file. (null if no matrix is built)
+         */
+        private final HashSet<String> filePeptides;
+
+        /**
+         * Column of the sample and dataset in the presence matrix. (-1 if no matrix is built)
+         */
+        private final int presenceColumn;
+
+        /**
+         * Index of the dataset in the list of all datasets.
+         */
+        private final int datasetIndex;
+
+        /**
+         * Charset of the fields that are converted to strings.
+         */
+        private final Charset charset;
+
+        /**
+         * Scan IDs of this file, rows of a scan ID that was already collected are matched on their bytes.
+         */
+        private final ScanKeyTable<ScanID> scanTable;
+
+        /**
+         * File numbers that are reused for each row with the same file number. (F1 is stored at index 1)
+         */
+        private String[] fileNumbers;
+
+        /**
+         * End index of each field of the current line. (null until the header was read)
+         */
+        private int[] fieldEnds;
+
+        /**
+         * Column index of the accessions.
+         */
+        private int accessionIndex;
+
+        /**
+         * Column index of the peptide sequence.
+         */
+        private int sequenceIndex;
+
+        /**
+         * Column index of the scan ID.
+         */
+        private int scanIndex;
+
+        /**
+         * Column index of the -10lgP score.
+         */
+        private int scoreIndex;
+
+        /**
+         * True until the header line was read.
+         */
+        private boolean firstLine;
+
+        /**
+         * Amount of rows that were read.
+         */
+        private int count;
+
+        /**
+         * Amount of rows outside the scan or file number filter.
+         */
+        private int skipped;
+
+        /**
+         * Amount of rows that were rejected by the score and decoy filter.
+         */
+        private int rejected;
+
+        /**
+         * Amount of rows with fewer fields than the header.
+         */
+        private int malformed;
+
+        /**
+         * Amount of rows without an accepted accession after empty accessions are removed.
+         */
+        private int withoutAccession;
+
+        /**
+         * Creates a collector for a single peptide data file.
+         *
+         * @param file path of the peptide data file.
+         * @param dataset name of the dataset.
+         * @param method name of the ms method that was used.
+         * @param datasets list of all dataset names.
+         * @param samplePattern pattern of the lower case sample folder names.
+         * @param filterTable scan IDs to keep, rows with other scan IDs are skipped. (null keeps all rows)
+         * @param psmFilter score, decoy and candidate filter for each row.
+         */
+        FileCollector(final String file, final String dataset, final String method, final ArrayList<String> datasets,
+                final Pattern samplePattern, final ScanKeyTable<Boolean> filterTable, final PsmFilter psmFilter) {
+            this.file = file;
+            this.dataset = dataset;
+            this.method = method;
+            this.datasets = datasets;
+            this.filterTable = filterTable;
+            this.psmFilter = psmFilter;
+            this.scanFiles = new HashMap<>();
+            String sampleFolder = "";
+            //Creates the dataset and sample names.
+            for (String folder : FOLDER_SEPARATOR.split(file)) {
+                //Match sample names.
+                if (samplePattern.matcher(folder.toLowerCase()).matches()) {
+                    sampleFolder = folder;
+                }
+            }
+            this.sample = sampleFolder;
+            this.samplePrefix = sample + ":";
+            System.out.println("Collecting peptides from " + sample + " " + method + " " + dataset + "...");
+            this.fileIndex = proteinIndex == null ? null : new AccessionIndex(datasets);
+            if (presenceMatrix == null) {
+                this.presenceColumn = -1;
+                this.filePeptides = null;
+            } else {
+                this.presenceColumn = presenceMatrix.getColumn(sample, dataset);
+                if (presenceColumn < 0) {
+                    //Peptides without a column would be missing from the matrix and every overlap count.
+                    throw new IllegalArgumentException("The presence matrix has no column for sample folder '" + sample + "' of "
+                            + dataset + ": " + file);
+                }
+                this.filePeptides = new HashSet<>();
+            }
+            this.datasetIndex = datasets.indexOf(dataset);
+            //Lines and fields are found in the raw bytes, only the fields that are stored are converted to strings.
+            this.charset = Charset.defaultCharset();
+            this.fileNumbers = new String[16];
+            this.scanTable = new ScanKeyTable<>(1024);
+            this.firstLine = true;
+        }
+
+        /**
+         * Collects the rows of the complete lines of a chunk.
+         *
+         * @param chunk chunk of whole lines of the file.
+         * @throws IOException could not parse the header of the file.
+         */
+        @Override
+        public void parse(final LineChunkReader chunk) throws IOException {
+            byte[] content = chunk.getContent();
+            DelimiterScanner scanner = chunk.getScanner();
+            int end = chunk.getLineEnd();
+            int lineStart = 0;
+            //Reads each line of the chunk.
+            while (lineStart < end) {
+                int lineEnd = scanner.indexOf((byte) '\n', lineStart, end);
+                int nextLine = lineEnd + 1;
+                if (lineEnd > lineStart && content[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (firstLine) {
+                    //The columns of files that passed the preflight check are not searched again.
+                    PsmSchema schema = schemas == null ? null : schemas.get(file);
+                    if (schema == null) {
+                        schema = PsmSchema.fromHeader(file, new String(content, lineStart, lineEnd - lineStart, charset));
+                    }
+                    sequenceIndex = schema.getSequenceIndex();
+                    accessionIndex = schema.getAccessionIndex();
+                    scanIndex = schema.getScanIndex();
+                    scoreIndex = schema.getScoreIndex();
+                    //Columns after the last used column are not scanned.
+                    fieldEnds = new int[schema.getLastColumn() + 1];
+                    firstLine = false;
+                    lineStart = nextLine;
+                    continue;
+                }
+                count++;
+                if (count % 1000 == 0) {
+                    System.out.println("Collected data from " + count + " scan IDs!");
+                }
+                int rowStart = lineStart;
+                lineStart = nextLine;
+                int fields = scanner.split((byte) ',', rowStart, lineEnd, fieldEnds);
+                int accessionStart = getFieldStart(rowStart, fieldEnds, accessionIndex);
+                int scoreStart = getFieldStart(rowStart, fieldEnds, scoreIndex);
+                if (fields < fieldEnds.length) {
+                    malformed++;
+                    continue;
+                }
+                //Skip rows below the score threshold or without accepted accessions before any data is created.
+                if (!psmFilter.acceptFields(scanner, scoreStart, fieldEnds[scoreIndex], accessionStart, fieldEnds[accessionIndex])) {
+                    rejected++;
+                    continue;
+                }
+                int scanStart = getFieldStart(rowStart, fieldEnds, scanIndex);
+                int scanEnd = fieldEnds[scanIndex];
+                int sequenceStart = getFieldStart(rowStart, fieldEnds, sequenceIndex);
+                int sequenceEnd = fieldEnds[sequenceIndex];
+                //Strings are only created for new scan IDs, new candidate sequences and the optional indexes.
+                String scan = null;
+                String sequence = null;
+                String fileNumber;
+                String scanPrefix = "";
+                int colon = scanner.indexOf((byte) ':', scanStart, scanEnd);
+                if (colon == scanEnd) {
+                    fileNumber = sample;
+                    scanPrefix = samplePrefix;
+                } else {
+                    //Scan IDs such as F1:2048 are parsed to numbers, so the file number string of F1 is only created once.
+                    long scanNumbers = scanner.parseScanID(scanStart, scanEnd);
+                    if (scanNumbers >= 0 && scanNumbers >>> 32 < MAXIMUM_FILE_NUMBER) {
+                        int number = (int) (scanNumbers >>> 32);
+                        if (number >= fileNumbers.length) {
+                            fileNumbers = Arrays.copyOf(fileNumbers, Math.max(number + 1, fileNumbers.length * 2));
+                        }
+                        fileNumber = getFileNumber(fileNumbers, number, content, scanStart, colon, charset);
+                    } else {
+                        fileNumber = new String(content, scanStart, colon - scanStart, charset);
+                    }
+                }
+                //Rows outside the scan filter are indexed too, so accessions and peptides that only one dataset supports can be found.
+                if (fileIndex != null && psmFilter.acceptFileNumber(fileNumber)) {
+                    scan = scanPrefix + new String(content, scanStart, scanEnd - scanStart, charset);
+                    int indexStart = accessionStart;
+                    while (indexStart <= fieldEnds[accessionIndex]) {
+                        int indexEnd = scanner.indexOf((byte) ':', indexStart, fieldEnds[accessionIndex]);
+                        if (indexEnd > indexStart && psmFilter.acceptAccession(content, indexStart, indexEnd)) {
+                            fileIndex.add(new String(content, indexStart, indexEnd - indexStart, charset), scan, datasetIndex);
+                        }
+                        indexStart = indexEnd + 1;
+                    }
+                }
+                if (filePeptides != null && psmFilter.acceptFileNumber(fileNumber)) {
+                    sequence = new String(content, sequenceStart, sequenceEnd - sequenceStart, charset);
+                    filePeptides.add(sequence);
+                }
+                //Skip file numbers that are not kept and scan IDs that are not present in the scan filter.
+                if (!psmFilter.acceptFileNumber(fileNumber)
+                        || filterTable != null && !filterTable.containsKey(scanPrefix, content, scanStart, scanEnd)) {
+                    skipped++;
+                    continue;
+                }
+                //Sequences keep modifications such as (+15.99), -ignoremods matches them on their canonical form.
+                //Each accepted accession adds the same sequence to the same scan ID, so one accepted accession is enough.
+                if (!hasAcceptedAccession(scanner, accessionStart, fieldEnds[accessionIndex], lineEnd, psmFilter)) {
+                    withoutAccession++;
+                    continue;
+                }
+                ScanID scanObject = scanTable.get(scanPrefix, content, scanStart, scanEnd);
+                if (scanObject == null) {
+                    //Create new scanID object.
+                    if (scan == null) {
+                        scan = scanPrefix + new String(content, scanStart, scanEnd - scanStart, charset);
+                    }
+                    if (sequence == null) {
+                        sequence = new String(content, sequenceStart, sequenceEnd - sequenceStart, charset);
+                    }
+                    String score = new String(content, scoreStart, fieldEnds[scoreIndex] - scoreStart, charset);
+                    scanObject = new ScanID(method, scan, sequence, score, sample, dataset, datasets);
+                    scanTable.put(scan, scanObject);
+                    ArrayList<ScanID> scanList = scanFiles.get(fileNumber);
+                    if (scanList == null) {
+                        scanList = new ArrayList<>();
+                        scanFiles.put(fileNumber, scanList);
+                    }
+                    scanList.add(scanObject);
+                } else if (!containsSequence(getCandidates(scanObject, datasetIndex), content, sequenceStart, sequenceEnd)) {
+                    //Add scan sequences to this scan ID.
+                    if (sequence == null) {
+                        sequence = new String(content, sequenceStart, sequenceEnd - sequenceStart, charset);
+                    }
+                    String score = new String(content, scoreStart, fieldEnds[scoreIndex] - scoreStart, charset);
+                    setScanObjectValues(scanObject, sequence, score, dataset, datasets, psmFilter);
+                }
+            }
+        }
+
+        /**
+         * Reports the counts of the file and adds its accessions and peptides to the shared index and matrix.
+         *
+         * @return HashMap with the file number as key and a list of ScanIDs as value.
+         */
+        @Override
+        public HashMap<String, ArrayList<ScanID>> finish() {
+            //Returns the collection of Scan ID objects.
+            System.out.println("Collected data from " + count + " scan IDs from "
+                    + sample + " " + method + " " + dataset + "!");
+            System.out.println("Rejected " + rejected + " scan IDs with the score and decoy filter.");
+            if (malformed > 0) {
+                System.out.println("Skipped " + malformed + " rows with fewer fields than the header.");
+            }
+            if (withoutAccession > 0) {
+                System.out.println("Skipped " + withoutAccession + " scan IDs without an accepted accession.");
+            }
+            if (skipped > 0) {
+                System.out.println("Skipped " + skipped + " scan IDs that are not present in the scan or file number filter.");
+            }
+            if (fileIndex != null) {
+                proteinIndex.addAll(fileIndex);
+            }
+            if (filePeptides != null) {
+                presenceMatrix.addAll(presenceColumn, filePeptides);
+            }
+            return scanFiles;
+        }
+    }
+}
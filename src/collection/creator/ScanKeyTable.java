@@ -0,0 +1,217 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+/**
+ * Hash table with scan IDs as keys that can be searched with the raw bytes of a psm file.
+ * A scan ID such as F1:2048 is found without creating a String, so rows of scan IDs that were already collected do not
+ * create new objects. The keys are Strings and use the hash code of String, so a key that was added as a String is found
+ * with the bytes of the same scan ID. Collisions are resolved by linear probing.
+ *
+ * @author vnijenhuis
+ * @param <V> type of the values.
+ */
+public class ScanKeyTable<V> {
+
+    /**
+     * Keys of each slot. (null if the slot is empty)
+     */
+    private String[] keys;
+
+    /**
+     * Values of each slot.
+     */
+    private Object[] values;
+
+    /**
+     * Amount of keys in the table.
+     */
+    private int size;
+
+    /**
+     * Charset that is used for keys with bytes outside of the ASCII range.
+     */
+    private final Charset charset;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param expectedSize expected amount of keys.
+     */
+    public ScanKeyTable(final int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Creates a table that contains the given keys.
+     *
+     * @param keys scan IDs.
+     * @return table with each key mapped to true.
+     */
+    public static ScanKeyTable<Boolean> forKeys(final Collection<String> keys) {
+        ScanKeyTable<Boolean> table = new ScanKeyTable<>(keys.size());
+        for (String key : keys) {
+            table.put(key, Boolean.TRUE);
+        }
+        return table;
+    }
+
+    /**
+     * Provides the value of a key.
+     *
+     * @param key scan ID.
+     * @return value of the key or null if the key is not present.
+     */
+    @SuppressWarnings("unchecked")
+    public final V get(final String key) {
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Provides the value of the key that consists of the prefix followed by a region of the raw bytes.
+     *
+     * @param prefix start of the key, such as the sample name and a colon. (empty if the key is only the region)
+     * @param content raw bytes of the psm file.
+     * @param start start index of the region.
+     * @param end end index of the region. (exclusive)
+     * @return value of the key or null if the key is not present.
+     */
+    @SuppressWarnings("unchecked")
+    public final V get(final String prefix, final byte[] content, final int start, final int end) {
+        int hash = prefix.hashCode();
+        for (int i = start; i < end; i++) {
+            if (content[i] < 0) {
+                //Multi-byte characters are decoded, the hash code of the bytes would not match the key.
+                return get(prefix + new String(content, start, end - start, charset));
+            }
+            hash = 31 * hash + content[i];
+        }
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        while (keys[slot] != null) {
+            if (matches(keys[slot], prefix, content, start, end)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the key that consists of the prefix followed by a region of the raw bytes is present.
+     *
+     * @param prefix start of the key. (empty if the key is only the region)
+     * @param content raw bytes of the psm file.
+     * @param start start index of the region.
+     * @param end end index of the region. (exclusive)
+     * @return true if the key is present.
+     */
+    public final boolean containsKey(final String prefix, final byte[] content, final int start, final int end) {
+        return get(prefix, content, start, end) != null;
+    }
+
+    /**
+     * Adds a key or replaces its value.
+     *
+     * @param key scan ID.
+     * @param value value of the key.
+     */
+    public final void put(final String key, final V value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Provides the amount of keys.
+     * @return amount of keys in the table.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Checks if a String equals the prefix followed by a region of ASCII bytes.
+     *
+     * @param key String to compare.
+     * @param prefix start of the compared value. (empty if the value is only the region)
+     * @param content raw bytes of the psm file.
+     * @param start start index of the region.
+     * @param end end index of the region. (exclusive)
+     * @return true if the key has the same characters, bytes outside of the ASCII range never match.
+     */
+    public static boolean matches(final String key, final String prefix, final byte[] content, final int start, final int end) {
+        int length = prefix.length();
+        if (key.length() != length + end - start || !key.startsWith(prefix)) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (key.charAt(length++) != content[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the amount of slots and adds all keys again.
+     */
+    private void resize() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = spread(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the high bits of a hash code over the low bits that select the slot.
+     *
+     * @param hash hash code of the key.
+     * @return spread hash code.
+     */
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collection.creator;
+
+import java.util.ArrayList;
+import objects.ScanID;
+
+/**
+ * Keeps the candidate sequences of a scan ID and dataset with the highest -10lgP scores.
+ * The parallel sequence and score lists of the scan ID are used as a binary min-heap with a fixed capacity: the lowest
+ * score is at the first index, so a new candidate is only compared with that score and replaces it if it scores higher.
+ * The parsed scores are kept in a double array next to the lists, so each score is parsed once when it is offered and the
+ * heap is ordered on primitive values. After collecting, the lists are sorted on descending score and the array is dropped.
+ *
+ * @author vnijenhuis
+ */
+public class ScoreHeap {
+
+    /**
+     * Offers a candidate sequence to the heap of a scan ID and dataset.
+     *
+     * @param scanObject ScanID object that keeps the parsed scores of the heap.
+     * @param sequences candidate sequences of the scan ID in heap order.
+     * @param scores scores of the candidate sequences in heap order.
+     * @param sequence new candidate sequence.
+     * @param score -10lgP score of the new candidate sequence.
+     * @param capacity maximum amount of candidate sequences.
+     * @return true if the candidate sequence was kept.
+     */
+    public static boolean offer(final ScanID scanObject, final ArrayList<String> sequences, final ArrayList<String> scores,
+            final String sequence, final String score, final int capacity) {
+        double[] values = scanObject.getCandidateScores();
+        if (values == null) {
+            //The first candidate was added when the scan ID was created, so it is parsed once here.
+            values = new double[Math.max(capacity, scores.size())];
+            for (int i = 0; i < scores.size(); i++) {
+                values[i] = parseScore(scores.get(i));
+            }
+            scanObject.setCandidateScores(values);
+        }
+        double value = parseScore(score);
+        int size = scores.size();
+        if (size < capacity) {
+            sequences.add(sequence);
+            scores.add(score);
+            values[size] = value;
+            siftUp(sequences, scores, values, size);
+            return true;
+        }
+        //Equal scores keep the candidate that was found first.
+        if (value <= values[0]) {
+            return false;
+        }
+        sequences.set(0, sequence);
+        scores.set(0, score);
+        values[0] = value;
+        siftDown(sequences, scores, values, 0, size);
+        return true;
+    }
+
+    /**
+     * Sorts the candidate sequences of a heap on descending score and drops the parsed scores.
+     *
+     * @param scanObject ScanID object that keeps the parsed scores of the heap.
+     * @param sequences candidate sequences of the scan ID in heap order.
+     * @param scores scores of the candidate sequences in heap order.
+     */
+    public static void sort(final ScanID scanObject, final ArrayList<String> sequences, final ArrayList<String> scores) {
+        double[] values = scanObject.getCandidateScores();
+        scanObject.setCandidateScores(null);
+        if (values == null) {
+            //Scan IDs with a single candidate never had a heap.
+            return;
+        }
+        //Insertion sort, heaps only hold a few candidates.
+        for (int i = 1; i < scores.size(); i++) {
+            double value = values[i];
+            String sequence = sequences.get(i);
+            String score = scores.get(i);
+            int j = i - 1;
+            while (j >= 0 && values[j] < value) {
+                values[j + 1] = values[j];
+                sequences.set(j + 1, sequences.get(j));
+                scores.set(j + 1, scores.get(j));
+                j--;
+            }
+            values[j + 1] = value;
+            sequences.set(j + 1, sequence);
+            scores.set(j + 1, score);
+        }
+    }
+
+    /**
+     * Moves a candidate towards the first index until its parent has a lower or equal score.
+     *
+     * @param sequences candidate sequences in heap order.
+     * @param scores scores in heap order.
+     * @param values parsed scores in heap order.
+     * @param index index of the candidate.
+     */
+    private static void siftUp(final ArrayList<String> sequences, final ArrayList<String> scores, final double[] values,
+            final int index) {
+        int child = index;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (values[parent] <= values[child]) {
+                break;
+            }
+            swap(sequences, scores, values, parent, child);
+            child = parent;
+        }
+    }
+
+    /**
+     * Moves a candidate away from the first index until both children have a higher or equal score.
+     *
+     * @param sequences candidate sequences in heap order.
+     * @param scores scores in heap order.
+     * @param values parsed scores in heap order.
+     * @param index index of the candidate.
+     * @param size amount of candidates in the heap.
+     */
+    private static void siftDown(final ArrayList<String> sequences, final ArrayList<String> scores, final double[] values,
+            final int index, final int size) {
+        int parent = index;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && values[child + 1] < values[child]) {
+                child++;
+            }
+            if (values[parent] <= values[child]) {
+                break;
+            }
+            swap(sequences, scores, values, parent, child);
+            parent = child;
+        }
+    }
+
+    /**
+     * Swaps two candidates of the parallel lists and scores.
+     *
+     * @param sequences candidate sequences.
+     * @param scores scores of the candidate sequences.
+     * @param values parsed scores of the candidate sequences.
+     * @param first index of the first candidate.
+     * @param second index of the second candidate.
+     */
+    private static void swap(final ArrayList<String> sequences, final ArrayList<String> scores, final double[] values,
+            final int first, final int second) {
+        sequences.set(first, sequences.set(second, sequences.get(first)));
+        scores.set(first, scores.set(second, scores.get(first)));
+        double value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+
+    /**
+     * Parses a -10lgP score.
+     *
+     * @param score score value.
+     * @return score or negative infinity if the score can not be read.
+     */
+    private static double parseScore(final String score) {
+        try {
+            return Double.parseDouble(score);
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Inverted index from protein accession to the scan IDs and datasets of the peptide spectrum matches that support it.
+ * Accessions and scan IDs are stored once and referred to by number. The posting list of each accession is a primitive
+ * int array with one value per scan ID and dataset: the scan ID number in the high bits and the dataset index in the
+ * lowest two bits. Numbers are given in the order the psm files are parsed, which differs between parallel runs, so the
+ * accessions and scan IDs are numbered again in sorted order before the index is written. The same input therefore always
+ * gives the same index file.
+ *
+ * @author vnijenhuis
+ */
+public class AccessionIndex {
+
+    /**
+     * Magic number at the start of each accession index file.
+     */
+    private static final int MAGIC = 0x50534149;
+
+    /**
+     * Version of the accession index format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Names of the datasets. (uniprot, combined and individual)
+     */
+    private final ArrayList<String> datasets;
+
+    /**
+     * Number of each accession.
+     */
+    private final HashMap<String, Integer> accessionIds;
+
+    /**
+     * Accession of each number.
+     */
+    private final ArrayList<String> accessions;
+
+    /**
+     * Number of each scan ID.
+     */
+    private final HashMap<String, Integer> scanIds;
+
+    /**
+     * Scan ID of each number.
+     */
+    private final ArrayList<String> scans;
+
+    /**
+     * Posting list of each accession.
+     */
+    private final ArrayList<int[]> postings;
+
+    /**
+     * Amount of values in each posting list.
+     */
+    private int[] postingSizes;
+
+    /**
+     * True if the posting list of an accession is sorted and has no duplicate values.
+     */
+    private boolean[] compacted;
+
+    /**
+     * Creates an empty accession index.
+     *
+     * @param datasets names of the datasets. (uniprot, combined and individual)
+     */
+    public AccessionIndex(final ArrayList<String> datasets) {
+        this.datasets = new ArrayList<>(datasets);
+        this.accessionIds = new HashMap<>();
+        this.accessions = new ArrayList<>();
+        this.scanIds = new HashMap<>();
+        this.scans = new ArrayList<>();
+        this.postings = new ArrayList<>();
+        this.postingSizes = new int[16];
+        this.compacted = new boolean[16];
+    }
+
+    /**
+     * Adds a scan ID that supports an accession in a dataset.
+     *
+     * @param accession protein accession.
+     * @param scanID scan ID (file:scan).
+     * @param dataset index of the dataset.
+     */
+    public final synchronized void add(final String accession, final String scanID, final int dataset) {
+        Integer scan = scanIds.get(scanID);
+        if (scan == null) {
+            scan = scans.size();
+            scanIds.put(scanID, scan);
+            scans.add(scanID);
+        }
+        addPosting(getAccessionId(accession), scan << 2 | dataset);
+    }
+
+    /**
+     * Adds all accessions and scan IDs of another index, such as the index of a single file or partition.
+     *
+     * @param index accession index to add.
+     */
+    public final synchronized void addAll(final AccessionIndex index) {
+        int[] scanMap = new int[index.scans.size()];
+        for (int i = 0; i < scanMap.length; i++) {
+            String scanID = index.scans.get(i);
+            Integer scan = scanIds.get(scanID);
+            if (scan == null) {
+                scan = scans.size();
+                scanIds.put(scanID, scan);
+                scans.add(scanID);
+            }
+            scanMap[i] = scan;
+        }
+        for (int i = 0; i < index.accessions.size(); i++) {
+            int accession = getAccessionId(index.accessions.get(i));
+            int[] values = index.postings.get(i);
+            for (int j = 0; j < index.postingSizes[i]; j++) {
+                addPosting(accession, scanMap[values[j] >>> 2] << 2 | values[j] & 3);
+            }
+        }
+    }
+
+    /**
+     * Provides the names of the datasets.
+     * @return list of dataset names.
+     */
+    public final ArrayList<String> getDatasets() {
+        return datasets;
+    }
+
+    /**
+     * Provides all accessions of the index.
+     * @return list of accessions.
+     */
+    public final ArrayList<String> getAccessions() {
+        return new ArrayList<>(accessions);
+    }
+
+    /**
+     * Provides the scan IDs that support an accession in a dataset.
+     *
+     * @param accession protein accession.
+     * @param dataset name of the dataset.
+     * @return list of scan IDs.
+     */
+    public final ArrayList<String> getScans(final String accession, final String dataset) {
+        return getScans(accession, dataset, null);
+    }
+
+    /**
+     * Provides the scan IDs that support an accession in a dataset but not in another dataset.
+     * For example the scan IDs that support P12345 in IndividualmRNASeq but not in Uniprot.
+     *
+     * @param accession protein accession.
+     * @param dataset name of the dataset that supports the accession.
+     * @param excludedDataset name of the dataset that does not support the accession. (null excludes no dataset)
+     * @return list of scan IDs.
+     */
+    public final synchronized ArrayList<String> getScans(final String accession, final String dataset, final String excludedDataset) {
+        ArrayList<String> scanList = new ArrayList<>();
+        Integer id = accessionIds.get(accession);
+        if (id == null) {
+            return scanList;
+        }
+        int included = getDatasetIndex(dataset);
+        int excluded = excludedDataset == null ? -1 : getDatasetIndex(excludedDataset);
+        compact(id);
+        int[] values = postings.get(id);
+        int size = postingSizes[id];
+        //Values of the same scan ID are next to each other.
+        int i = 0;
+        while (i < size) {
+            int scan = values[i] >>> 2;
+            boolean hasIncluded = false;
+            boolean hasExcluded = false;
+            while (i < size && values[i] >>> 2 == scan) {
+                hasIncluded |= (values[i] & 3) == included;
+                hasExcluded |= (values[i] & 3) == excluded;
+                i++;
+            }
+            if (hasIncluded && !hasExcluded) {
+                scanList.add(scans.get(scan));
+            }
+        }
+        return scanList;
+    }
+
+    /**
+     * Writes the index to a binary file.
+     *
+     * @param path path of the index file.
+     * @throws IOException could not write the file.
+     */
+    public final synchronized void write(final String path) throws IOException {
+        sortIds();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(datasets.size());
+            for (String dataset : datasets) {
+                output.writeUTF(dataset);
+            }
+            output.writeInt(scans.size());
+            for (String scanID : scans) {
+                output.writeUTF(scanID);
+            }
+            output.writeInt(accessions.size());
+            for (int i = 0; i < accessions.size(); i++) {
+                compact(i);
+                output.writeUTF(accessions.get(i));
+                output.writeInt(postingSizes[i]);
+                int[] values = postings.get(i);
+                for (int j = 0; j < postingSizes[i]; j++) {
+                    output.writeInt(values[j]);
+                }
+            }
+        }
+        System.out.println("Wrote " + accessions.size() + " accessions to " + path);
+    }
+
+    /**
+     * Reads an index from a binary file.
+     *
+     * @param path path of the index file.
+     * @return accession index.
+     * @throws IOException could not read the file or the file is not an accession index.
+     */
+    public static AccessionIndex read(final String path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not an accession index file: " + path);
+            }
+            ArrayList<String> datasets = new ArrayList<>();
+            int datasetCount = input.readInt();
+            for (int i = 0; i < datasetCount; i++) {
+                datasets.add(input.readUTF());
+            }
+            AccessionIndex index = new AccessionIndex(datasets);
+            int scanCount = input.readInt();
+            for (int i = 0; i < scanCount; i++) {
+                String scanID = input.readUTF();
+                index.scanIds.put(scanID, i);
+                index.scans.add(scanID);
+            }
+            int accessionCount = input.readInt();
+            for (int i = 0; i < accessionCount; i++) {
+                int id = index.getAccessionId(input.readUTF());
+                int size = input.readInt();
+                int[] values = new int[Math.max(size, 1)];
+                for (int j = 0; j < size; j++) {
+                    values[j] = input.readInt();
+                }
+                index.postings.set(id, values);
+                index.postingSizes[id] = size;
+                index.compacted[id] = true;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Numbers the scan IDs and accessions again in sorted order.
+     */
+    private void sortIds() {
+        ArrayList<String> sortedScans = new ArrayList<>(scans);
+        Collections.sort(sortedScans);
+        int[] scanMap = new int[scans.size()];
+        scanIds.clear();
+        for (int i = 0; i < sortedScans.size(); i++) {
+            scanIds.put(sortedScans.get(i), i);
+        }
+        for (int i = 0; i < scanMap.length; i++) {
+            scanMap[i] = scanIds.get(scans.get(i));
+        }
+        scans.clear();
+        scans.addAll(sortedScans);
+        ArrayList<String> sortedAccessions = new ArrayList<>(accessions);
+        Collections.sort(sortedAccessions);
+        ArrayList<int[]> sortedPostings = new ArrayList<>();
+        int[] sortedSizes = new int[postingSizes.length];
+        for (int i = 0; i < sortedAccessions.size(); i++) {
+            int id = accessionIds.get(sortedAccessions.get(i));
+            int[] values = postings.get(id);
+            for (int j = 0; j < postingSizes[id]; j++) {
+                values[j] = scanMap[values[j] >>> 2] << 2 | values[j] & 3;
+            }
+            sortedPostings.add(values);
+            sortedSizes[i] = postingSizes[id];
+            accessionIds.put(sortedAccessions.get(i), i);
+        }
+        accessions.clear();
+        accessions.addAll(sortedAccessions);
+        postings.clear();
+        postings.addAll(sortedPostings);
+        postingSizes = sortedSizes;
+        //New scan numbers change the order of the posting lists.
+        Arrays.fill(compacted, false);
+    }
+
+    /**
+     * Provides the number of an accession and adds the accession if it is new.
+     *
+     * @param accession protein accession.
+     * @return number of the accession.
+     */
+    private int getAccessionId(final String accession) {
+        Integer id = accessionIds.get(accession);
+        if (id == null) {
+            id = accessions.size();
+            accessionIds.put(accession, id);
+            accessions.add(accession);
+            postings.add(new int[4]);
+            if (id == postingSizes.length) {
+                postingSizes = Arrays.copyOf(postingSizes, id * 2);
+                compacted = Arrays.copyOf(compacted, id * 2);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Adds a value to the posting list of an accession.
+     *
+     * @param accession number of the accession.
+     * @param value scan ID number and dataset index.
+     */
+    private void addPosting(final int accession, final int value) {
+        int[] values = postings.get(accession);
+        int size = postingSizes[accession];
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            postings.set(accession, values);
+        }
+        values[size] = value;
+        postingSizes[accession] = size + 1;
+        compacted[accession] = false;
+    }
+
+    /**
+     * Sorts the posting list of an accession and removes duplicate values.
+     *
+     * @param accession number of the accession.
+     */
+    private void compact(final int accession) {
+        if (compacted[accession]) {
+            return;
+        }
+        int[] values = postings.get(accession);
+        int size = postingSizes[accession];
+        Arrays.sort(values, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        postingSizes[accession] = unique;
+        compacted[accession] = true;
+    }
+
+    /**
+     * Provides the index of a dataset.
+     *
+     * @param dataset name of the dataset.
+     * @return index of the dataset.
+     */
+    private int getDatasetIndex(final String dataset) {
+        int index = datasets.indexOf(dataset);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown dataset: " + dataset);
+        }
+        return index;
+    }
+}
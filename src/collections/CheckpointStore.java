@@ -0,0 +1,279 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import objects.ScanID;
+
+/**
+ * Stores checkpoints of a run, so a run that was stopped can be resumed.
+ * Parsed scan collections are written in a compact binary form after each dataset is collected, and a marker is written
+ * after each method is finished. Each checkpoint contains the key of its input files and settings and is only used if the
+ * key still matches. Files are written to a temporary file first and then renamed, so a stopped run never leaves a
+ * partial checkpoint behind.
+ *
+ * @author vnijenhuis
+ */
+public class CheckpointStore {
+
+    /**
+     * Magic number at the start of each checkpoint file.
+     */
+    private static final int MAGIC = 0x5053434B;
+
+    /**
+     * Version of the checkpoint format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Folder that contains the checkpoint files.
+     */
+    private final File folder;
+
+    /**
+     * Checkpoint files of the scan collections of each method.
+     */
+    private final HashMap<String, ArrayList<File>> methodFiles;
+
+    /**
+     * Creates a checkpoint store in the given folder.
+     *
+     * @param folder path of the checkpoints folder.
+     * @throws IOException could not create the checkpoints folder.
+     */
+    public CheckpointStore(final String folder) throws IOException {
+        this.folder = new File(folder);
+        this.methodFiles = new HashMap<>();
+        if (!this.folder.isDirectory() && !this.folder.mkdirs()) {
+            throw new IOException("Could not create checkpoint folder " + folder);
+        }
+    }
+
+    /**
+     * Loads a checkpointed scan collection.
+     *
+     * @param method name of the ms method.
+     * @param dataset name of the dataset.
+     * @param key key of the input files and settings of the scan collection.
+     * @return HashMap with the file number as key and a list of ScanIDs as value or null if there is no matching checkpoint.
+     * @throws IOException could not read the checkpoint file.
+     */
+    public final HashMap<String, ArrayList<ScanID>> loadScans(final String method, final String dataset, final String key)
+            throws IOException {
+        File file = getScanFile(method, dataset, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (!readKey(input, key)) {
+                return null;
+            }
+            int fileNumbers = input.readInt();
+            HashMap<String, ArrayList<ScanID>> scanFiles = new HashMap<>();
+            for (int i = 0; i < fileNumbers; i++) {
+                String fileNumber = input.readUTF();
+                int scans = input.readInt();
+                ArrayList<ScanID> scanList = new ArrayList<>(scans);
+                for (int j = 0; j < scans; j++) {
+                    ScanID scanObject = new ScanID(method, input.readUTF(), input.readUTF());
+                    int count = input.readInt();
+                    for (int k = 0; k < count; k++) {
+                        scanObject.addUniprotSequence(input.readUTF());
+                        scanObject.addUniprotScore(input.readUTF());
+                    }
+                    count = input.readInt();
+                    for (int k = 0; k < count; k++) {
+                        scanObject.addCombinedSequence(input.readUTF());
+                        scanObject.addCombinedScore(input.readUTF());
+                    }
+                    count = input.readInt();
+                    for (int k = 0; k < count; k++) {
+                        scanObject.addIndividualSequence(input.readUTF());
+                        scanObject.addIndividualScore(input.readUTF());
+                    }
+                    scanList.add(scanObject);
+                }
+                scanFiles.put(fileNumber, scanList);
+            }
+            addMethodFile(method, file);
+            System.out.println("Resumed " + method + " " + dataset + " from checkpoint " + file);
+            return scanFiles;
+        }
+    }
+
+    /**
+     * Writes a scan collection to a checkpoint file.
+     *
+     * @param method name of the ms method.
+     * @param dataset name of the dataset.
+     * @param key key of the input files and settings of the scan collection.
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @throws IOException could not write the checkpoint file.
+     */
+    public final void saveScans(final String method, final String dataset, final String key,
+            final HashMap<String, ArrayList<ScanID>> scanFiles) throws IOException {
+        File file = getScanFile(method, dataset, key);
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            writeKey(output, key);
+            output.writeInt(scanFiles.size());
+            for (Map.Entry<String, ArrayList<ScanID>> entry : scanFiles.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue().size());
+                for (ScanID scanObject : entry.getValue()) {
+                    output.writeUTF(scanObject.getScanID());
+                    output.writeUTF(scanObject.getSample());
+                    writeValues(output, scanObject.getUniprotSequences(), scanObject.getUniprotScores());
+                    writeValues(output, scanObject.getCombinedSequences(), scanObject.getCombinedScores());
+                    writeValues(output, scanObject.getIndividualSequences(), scanObject.getIndividualScores());
+                }
+            }
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        addMethodFile(method, file);
+    }
+
+    /**
+     * Checks if a method was finished with the same input files and settings.
+     *
+     * @param method name of the ms method.
+     * @param key key of the input files and settings of the method.
+     * @return true if the method was finished with the same key.
+     * @throws IOException could not read the method marker.
+     */
+    public final boolean isMethodFinished(final String method, final String key) throws IOException {
+        File file = getMethodFile(method);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readKey(input, key);
+        }
+    }
+
+    /**
+     * Writes the marker of a finished method and removes the scan collection checkpoints of the method.
+     *
+     * @param method name of the ms method.
+     * @param key key of the input files and settings of the method.
+     * @throws IOException could not write the method marker.
+     */
+    public final void markMethodFinished(final String method, final String key) throws IOException {
+        File file = getMethodFile(method);
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            writeKey(output, key);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        //The scan collections are not needed anymore once the output of the method is written.
+        ArrayList<File> scanFiles = methodFiles.remove(method);
+        if (scanFiles != null) {
+            for (File scanFile : scanFiles) {
+                scanFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the sequences and scores of a single dataset of a scan ID.
+     *
+     * @param output checkpoint output stream.
+     * @param sequences list of peptide sequences.
+     * @param scores list of score values.
+     * @throws IOException could not write to the checkpoint file.
+     */
+    private void writeValues(final DataOutputStream output, final ArrayList<String> sequences, final ArrayList<String> scores)
+            throws IOException {
+        output.writeInt(sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            output.writeUTF(sequences.get(i));
+            output.writeUTF(scores.get(i));
+        }
+    }
+
+    /**
+     * Writes the header and key of a checkpoint file.
+     *
+     * @param output checkpoint output stream.
+     * @param key key of the input files and settings.
+     * @throws IOException could not write to the checkpoint file.
+     */
+    private void writeKey(final DataOutputStream output, final String key) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        //Keys can be longer than writeUTF allows.
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+    }
+
+    /**
+     * Reads the header and key of a checkpoint file.
+     *
+     * @param input checkpoint input stream.
+     * @param key expected key of the input files and settings.
+     * @return true if the checkpoint has the expected format and key.
+     * @throws IOException could not read the checkpoint file.
+     */
+    private boolean readKey(final DataInputStream input, final String key) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            return false;
+        }
+        byte[] keyBytes = new byte[input.readInt()];
+        input.readFully(keyBytes);
+        return key.equals(new String(keyBytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Remembers the checkpoint files of a method, so they can be removed when the method is finished.
+     *
+     * @param method name of the ms method.
+     * @param file checkpoint file.
+     */
+    private void addMethodFile(final String method, final File file) {
+        ArrayList<File> files = methodFiles.get(method);
+        if (files == null) {
+            files = new ArrayList<>();
+            methodFiles.put(method, files);
+        }
+        files.add(file);
+    }
+
+    /**
+     * Provides the checkpoint file of a scan collection.
+     *
+     * @param method name of the ms method.
+     * @param dataset name of the dataset.
+     * @param key key of the input files and settings.
+     * @return checkpoint file.
+     */
+    private File getScanFile(final String method, final String dataset, final String key) {
+        return new File(folder, method + "_" + dataset + "_" + Integer.toHexString(key.hashCode()) + ".scans");
+    }
+
+    /**
+     * Provides the marker file of a method.
+     *
+     * @param method name of the ms method.
+     * @return marker file.
+     */
+    private File getMethodFile(final String method) {
+        return new File(folder, method + ".done");
+    }
+}
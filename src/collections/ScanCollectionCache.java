@@ -0,0 +1,178 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collections;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import objects.ScanID;
+
+/**
+ * Least recently used cache of parsed scan collections, bounded by the estimated memory size of the collections.
+ *
+ * @author vnijenhuis
+ */
+public class ScanCollectionCache {
+
+    /**
+     * Estimated size of a ScanID object with its six lists in bytes.
+     */
+    private static final long SCAN_ID_SIZE = 320;
+
+    /**
+     * Estimated size of a String object without its characters in bytes.
+     */
+    private static final long STRING_SIZE = 48;
+
+    /**
+     * Cached scan collections in least recently used order.
+     */
+    private final LinkedHashMap<String, HashMap<String, ArrayList<ScanID>>> collections;
+
+    /**
+     * Estimated size of each cached scan collection.
+     */
+    private final HashMap<String, Long> sizes;
+
+    /**
+     * Maximum estimated size of all cached scan collections in bytes.
+     */
+    private final long maximumSize;
+
+    /**
+     * Current estimated size of all cached scan collections in bytes.
+     */
+    private long currentSize;
+
+    /**
+     * Creates a scan collection cache.
+     *
+     * @param maximumSize maximum estimated size of all cached scan collections in bytes.
+     */
+    public ScanCollectionCache(final long maximumSize) {
+        this.collections = new LinkedHashMap<>(16, 0.75f, true);
+        this.sizes = new HashMap<>();
+        this.maximumSize = maximumSize;
+        this.currentSize = 0;
+    }
+
+    /**
+     * Creates a cache key for a list of files. The key changes if any of the files is modified.
+     *
+     * @param dataset name of the dataset.
+     * @param files list of peptide data files.
+     * @param settings other settings that change the content of the scan collection.
+     * @return cache key as String.
+     */
+    public static String createKey(final String dataset, final ArrayList<String> files, final String settings) {
+        StringBuilder key = new StringBuilder(dataset);
+        for (String file : files) {
+            File checkFile = new File(file);
+            key.append('|').append(file).append(':').append(checkFile.length()).append(':').append(checkFile.lastModified());
+        }
+        return key.append('|').append(settings).toString();
+    }
+
+    /**
+     * Returns a cached scan collection and marks it as most recently used.
+     *
+     * @param key cache key.
+     * @return scan collection or null if the key is not cached.
+     */
+    public final synchronized HashMap<String, ArrayList<ScanID>> get(final String key) {
+        return collections.get(key);
+    }
+
+    /**
+     * Adds a scan collection to the cache and removes the least recently used collections if the cache is full.
+     *
+     * @param key cache key.
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     */
+    public final synchronized void put(final String key, final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        long size = estimateSize(scanFiles);
+        //Collections that do not fit inside the cache are not stored.
+        if (size > maximumSize) {
+            return;
+        }
+        if (collections.containsKey(key)) {
+            currentSize -= sizes.remove(key);
+            collections.remove(key);
+        }
+        Iterator<Map.Entry<String, HashMap<String, ArrayList<ScanID>>>> iterator = collections.entrySet().iterator();
+        while (currentSize + size > maximumSize && iterator.hasNext()) {
+            String eldest = iterator.next().getKey();
+            iterator.remove();
+            currentSize -= sizes.remove(eldest);
+            System.out.println("Removed " + eldest.split("\\|")[0] + " scan collection from the cache.");
+        }
+        collections.put(key, scanFiles);
+        sizes.put(key, size);
+        currentSize += size;
+    }
+
+    /**
+     * Provides the current estimated size of all cached scan collections.
+     *
+     * @return size in bytes.
+     */
+    public final synchronized long getSize() {
+        return currentSize;
+    }
+
+    /**
+     * Creates a copy of a scan collection with new ScanID objects, so the cached collection is not modified by matching.
+     *
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @return copy of the scan collection.
+     */
+    public final HashMap<String, ArrayList<ScanID>> copy(final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        HashMap<String, ArrayList<ScanID>> copy = new HashMap<>();
+        for (Map.Entry<String, ArrayList<ScanID>> entry : scanFiles.entrySet()) {
+            ArrayList<ScanID> scanList = new ArrayList<>(entry.getValue().size());
+            for (ScanID scanObject : entry.getValue()) {
+                scanList.add(new ScanID(scanObject));
+            }
+            copy.put(entry.getKey(), scanList);
+        }
+        return copy;
+    }
+
+    /**
+     * Estimates the memory size of a scan collection.
+     *
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @return estimated size in bytes.
+     */
+    private long estimateSize(final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        long size = 0;
+        for (ArrayList<ScanID> scanList : scanFiles.values()) {
+            for (ScanID scanObject : scanList) {
+                size += SCAN_ID_SIZE + STRING_SIZE + scanObject.getScanID().length() * 2;
+                size += estimateSize(scanObject.getUniprotSequences()) + estimateSize(scanObject.getUniprotScores());
+                size += estimateSize(scanObject.getCombinedSequences()) + estimateSize(scanObject.getCombinedScores());
+                size += estimateSize(scanObject.getIndividualSequences()) + estimateSize(scanObject.getIndividualScores());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the memory size of a list of strings.
+     *
+     * @param values list of strings.
+     * @return estimated size in bytes.
+     */
+    private long estimateSize(final ArrayList<String> values) {
+        long size = 0;
+        for (String value : values) {
+            size += STRING_SIZE + value.length() * 2;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import objects.ScanID;
+
+/**
+ * Overlap counts and score histograms of the matched scan IDs of a method.
+ * Each sample has a fixed set of counters and each dataset has a fixed score histogram, so the summary uses the same
+ * amount of memory for any amount of scan IDs. Summaries of partitions can be added together.
+ *
+ * @author vnijenhuis
+ */
+public class ScanSummary {
+
+    /**
+     * Names of the counters of each sample.
+     */
+    public static final String[] COUNTS = {"Uniprot scans", "Combined scans", "Individual scans", "Combined and individual scans",
+        "Same peptide in combined", "Same peptide in individual", "Uniprot peptides", "Combined peptides", "Individual peptides"};
+
+    /**
+     * Width of a score histogram bin in -10lgP.
+     */
+    public static final int BIN_WIDTH = 10;
+
+    /**
+     * Amount of score histogram bins. The last bin contains all higher scores.
+     */
+    public static final int BINS = 21;
+
+    /**
+     * Magic number at the start of each summary file.
+     */
+    private static final int MAGIC = 0x5053534D;
+
+    /**
+     * Version of the summary format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Names of the datasets. (uniprot, combined and individual)
+     */
+    private final ArrayList<String> datasets;
+
+    /**
+     * Counters of each sample.
+     */
+    private final TreeMap<String, long[]> sampleCounts;
+
+    /**
+     * Score histogram of each dataset.
+     */
+    private final long[][] histograms;
+
+    /**
+     * Sum of the scores of each dataset.
+     */
+    private final double[] scoreSums;
+
+    /**
+     * Creates an empty summary.
+     *
+     * @param datasets names of the datasets. (uniprot, combined and individual)
+     */
+    public ScanSummary(final ArrayList<String> datasets) {
+        this.datasets = new ArrayList<>(datasets);
+        this.sampleCounts = new TreeMap<>();
+        this.histograms = new long[datasets.size()][BINS];
+        this.scoreSums = new double[datasets.size()];
+    }
+
+    /**
+     * Adds all matched scan IDs of a scan collection.
+     *
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     */
+    public final void addAll(final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        for (ArrayList<ScanID> scanList : scanFiles.values()) {
+            for (ScanID scanObject : scanList) {
+                add(scanObject);
+            }
+        }
+    }
+
+    /**
+     * Adds a single matched scan ID.
+     *
+     * @param scanObject scan ID with the sequences and scores of each dataset.
+     */
+    public final void add(final ScanID scanObject) {
+        long[] counts = sampleCounts.get(scanObject.getSample());
+        if (counts == null) {
+            counts = new long[COUNTS.length];
+            sampleCounts.put(scanObject.getSample(), counts);
+        }
+        boolean combined = !scanObject.getCombinedSequences().isEmpty();
+        boolean individual = !scanObject.getIndividualSequences().isEmpty();
+        counts[0]++;
+        if (combined) {
+            counts[1]++;
+        }
+        if (individual) {
+            counts[2]++;
+        }
+        if (combined && individual) {
+            counts[3]++;
+        }
+        if (sharesSequence(scanObject.getUniprotSequences(), scanObject.getCombinedSequences())) {
+            counts[4]++;
+        }
+        if (sharesSequence(scanObject.getUniprotSequences(), scanObject.getIndividualSequences())) {
+            counts[5]++;
+        }
+        counts[6] += scanObject.getUniprotSequences().size();
+        counts[7] += scanObject.getCombinedSequences().size();
+        counts[8] += scanObject.getIndividualSequences().size();
+        addScores(0, scanObject.getUniprotScores());
+        addScores(1, scanObject.getCombinedScores());
+        addScores(2, scanObject.getIndividualScores());
+    }
+
+    /**
+     * Adds the counts and histograms of another summary, such as the summary of a single partition.
+     *
+     * @param summary summary to add.
+     */
+    public final void addAll(final ScanSummary summary) {
+        for (Map.Entry<String, long[]> entry : summary.sampleCounts.entrySet()) {
+            long[] counts = sampleCounts.get(entry.getKey());
+            if (counts == null) {
+                sampleCounts.put(entry.getKey(), entry.getValue().clone());
+            } else {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += entry.getValue()[i];
+                }
+            }
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            for (int j = 0; j < BINS; j++) {
+                histograms[i][j] += summary.histograms[i][j];
+            }
+            scoreSums[i] += summary.scoreSums[i];
+        }
+    }
+
+    /**
+     * Provides the names of the datasets.
+     * @return list of dataset names.
+     */
+    public final ArrayList<String> getDatasets() {
+        return datasets;
+    }
+
+    /**
+     * Provides the names of the samples in sorted order.
+     * @return list of sample names.
+     */
+    public final ArrayList<String> getSamples() {
+        return new ArrayList<>(sampleCounts.keySet());
+    }
+
+    /**
+     * Provides the counters of a sample. (same order as COUNTS)
+     *
+     * @param sample sample name. (COPD1)
+     * @return copy of the counters.
+     */
+    public final long[] getCounts(final String sample) {
+        long[] counts = sampleCounts.get(sample);
+        if (counts == null) {
+            return new long[COUNTS.length];
+        }
+        return counts.clone();
+    }
+
+    /**
+     * Provides the score histogram of a dataset.
+     *
+     * @param dataset index of the dataset.
+     * @return copy of the amount of scores in each bin.
+     */
+    public final long[] getHistogram(final int dataset) {
+        return histograms[dataset].clone();
+    }
+
+    /**
+     * Provides the mean score of a dataset.
+     *
+     * @param dataset index of the dataset.
+     * @return mean -10lgP score or 0 if the dataset has no scores.
+     */
+    public final double getMeanScore(final int dataset) {
+        long scores = 0;
+        for (long count : histograms[dataset]) {
+            scores += count;
+        }
+        if (scores == 0) {
+            return 0;
+        }
+        return scoreSums[dataset] / scores;
+    }
+
+    /**
+     * Writes the summary to a binary file.
+     *
+     * @param path path of the summary file.
+     * @throws IOException could not write the file.
+     */
+    public final void write(final String path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(datasets.size());
+            for (int i = 0; i < datasets.size(); i++) {
+                output.writeUTF(datasets.get(i));
+                output.writeDouble(scoreSums[i]);
+                for (long count : histograms[i]) {
+                    output.writeLong(count);
+                }
+            }
+            output.writeInt(sampleCounts.size());
+            for (Map.Entry<String, long[]> entry : sampleCounts.entrySet()) {
+                output.writeUTF(entry.getKey());
+                for (long count : entry.getValue()) {
+                    output.writeLong(count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a summary from a binary file.
+     *
+     * @param path path of the summary file.
+     * @return scan summary.
+     * @throws IOException could not read the file or the file is not a summary.
+     */
+    public static ScanSummary read(final String path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a summary file: " + path);
+            }
+            int datasetCount = input.readInt();
+            ArrayList<String> datasets = new ArrayList<>();
+            double[] sums = new double[datasetCount];
+            long[][] bins = new long[datasetCount][BINS];
+            for (int i = 0; i < datasetCount; i++) {
+                datasets.add(input.readUTF());
+                sums[i] = input.readDouble();
+                for (int j = 0; j < BINS; j++) {
+                    bins[i][j] = input.readLong();
+                }
+            }
+            ScanSummary summary = new ScanSummary(datasets);
+            for (int i = 0; i < datasetCount; i++) {
+                summary.scoreSums[i] = sums[i];
+                summary.histograms[i] = bins[i];
+            }
+            int sampleCount = input.readInt();
+            for (int i = 0; i < sampleCount; i++) {
+                String sample = input.readUTF();
+                long[] counts = new long[COUNTS.length];
+                for (int j = 0; j < counts.length; j++) {
+                    counts[j] = input.readLong();
+                }
+                summary.sampleCounts.put(sample, counts);
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * Adds scores to the histogram of a dataset.
+     *
+     * @param dataset index of the dataset.
+     * @param scores list of -10lgP scores.
+     */
+    private void addScores(final int dataset, final ArrayList<String> scores) {
+        for (String score : scores) {
+            double value;
+            try {
+                value = Double.parseDouble(score);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            int bin = (int) Math.min(BINS - 1, Math.max(0, Math.floor(value / BIN_WIDTH)));
+            histograms[dataset][bin]++;
+            scoreSums[dataset] += value;
+        }
+    }
+
+    /**
+     * Checks if two lists of sequences have a sequence in common.
+     *
+     * @param first first list of sequences.
+     * @param second second list of sequences.
+     * @return true if a sequence is present in both lists.
+     */
+    private boolean sharesSequence(final ArrayList<String> first, final ArrayList<String> second) {
+        for (String sequence : first) {
+            if (second.contains(sequence)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
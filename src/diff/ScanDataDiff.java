@@ -0,0 +1,402 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package diff;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import objects.ScanIDOrder;
+
+/**
+ * Compares two scan data csv files of this tool, such as the output of a run with new databases and the output of a previous
+ * run, and writes the scans that were added, removed or changed.
+ * Both files are streamed: if both files are sorted on scan ID the rows are merged in a single pass, otherwise the rows are
+ * first divided over partition files on the hash of the scan ID and the partitions are compared one at a time. Memory use
+ * therefore does not depend on the size of the files.
+ *
+ * @author vnijenhuis
+ */
+public class ScanDataDiff {
+
+    /**
+     * Maximum amount of partition files that are written at the same time.
+     */
+    private static final int MAXIMUM_PARTITIONS = 256;
+
+    /**
+     * Orders scan IDs on file number and scan number.
+     */
+    private final ScanIDOrder scanOrder;
+
+    /**
+     * Maximum size in bytes of the rows of a single partition of the previous file.
+     */
+    private final long partitionSize;
+
+    /**
+     * Amount of scans that are only present in the new file.
+     */
+    private long added;
+
+    /**
+     * Amount of scans that are only present in the previous file.
+     */
+    private long removed;
+
+    /**
+     * Amount of scans with different sequences or scores.
+     */
+    private long changed;
+
+    /**
+     * Amount of scans without differences.
+     */
+    private long unchanged;
+
+    /**
+     * Creates a diff that uses an eighth of the maximum heap for a single partition.
+     */
+    public ScanDataDiff() {
+        this(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Creates a diff with the given partition size.
+     *
+     * @param partitionSize maximum size in bytes of the rows of a single partition of the previous file.
+     */
+    public ScanDataDiff(final long partitionSize) {
+        this.scanOrder = new ScanIDOrder();
+        this.partitionSize = Math.max(1, partitionSize);
+    }
+
+    /**
+     * Compares two scan data csv files and writes one row per changed column of each added, removed or changed scan.
+     *
+     * @param previousPath path of the scan data csv file of the previous run.
+     * @param newPath path of the scan data csv file of the new run.
+     * @param outputPath output path and file name.
+     * @throws IOException could not read the scan data files or write the output file.
+     */
+    public final void compare(final String previousPath, final String newPath, final String outputPath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        added = 0;
+        removed = 0;
+        changed = 0;
+        unchanged = 0;
+        String[] header = readHeader(previousPath);
+        String[] newHeader = readHeader(newPath);
+        if (header.length != newHeader.length) {
+            throw new IllegalArgumentException("Scan data files have a different amount of columns: " + previousPath
+                    + " and " + newPath);
+        }
+        System.out.println("Writing data to text file " + outputPath);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), 1 << 16)) {
+            writer.append("Scan ID,Status,Column,Removed,Added\n");
+            if (isSorted(previousPath) && isSorted(newPath)) {
+                System.out.println("Merging sorted scan data files.");
+                mergeSorted(previousPath, newPath, newHeader, writer);
+            } else {
+                int partitions = (int) Math.min(MAXIMUM_PARTITIONS, new File(previousPath).length() / partitionSize + 1);
+                System.out.println("Scan data files are not sorted, comparing " + partitions + " hash partitions.");
+                comparePartitioned(previousPath, newPath, newHeader, writer, partitions,
+                        new File(outputPath).getAbsoluteFile().getParentFile());
+            }
+        }
+        System.out.println("Added scans: " + added + ", removed scans: " + removed + ", changed scans: " + changed
+                + ", unchanged scans: " + unchanged);
+        System.out.println("Compared scan data files in " + (System.currentTimeMillis() - startTime) + " ms.");
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Provides the amount of scans that are only present in the new file.
+     * @return amount of added scans.
+     */
+    public final long getAdded() {
+        return added;
+    }
+
+    /**
+     * Provides the amount of scans that are only present in the previous file.
+     * @return amount of removed scans.
+     */
+    public final long getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Provides the amount of scans with different sequences or scores.
+     * @return amount of changed scans.
+     */
+    public final long getChanged() {
+        return changed;
+    }
+
+    /**
+     * Provides the amount of scans without differences.
+     * @return amount of unchanged scans.
+     */
+    public final long getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Checks if the rows of a scan data file are sorted on scan ID without duplicate scan IDs.
+     *
+     * @param path path of the scan data csv file.
+     * @return true if each scan ID comes after the scan ID of the previous row.
+     * @throws IOException could not read the file.
+     */
+    public final boolean isSorted(final String path) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(path), 1 << 16)) {
+            String line = reader.readLine();
+            String previousScan = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String scan = getScanID(line);
+                if (previousScan != null && scanOrder.compare(previousScan, scan) >= 0) {
+                    return false;
+                }
+                previousScan = scan;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares two sorted scan data files in a single pass.
+     *
+     * @param previousPath path of the previous scan data file.
+     * @param newPath path of the new scan data file.
+     * @param header column names of the new scan data file.
+     * @param writer diff writer.
+     * @throws IOException could not read the scan data files or write the output file.
+     */
+    private void mergeSorted(final String previousPath, final String newPath, final String[] header, final BufferedWriter writer)
+            throws IOException {
+        try (BufferedReader previousReader = new BufferedReader(new FileReader(previousPath), 1 << 16);
+                BufferedReader newReader = new BufferedReader(new FileReader(newPath), 1 << 16)) {
+            previousReader.readLine();
+            newReader.readLine();
+            String previousLine = readRow(previousReader);
+            String newLine = readRow(newReader);
+            while (previousLine != null || newLine != null) {
+                int order;
+                if (previousLine == null) {
+                    order = 1;
+                } else if (newLine == null) {
+                    order = -1;
+                } else {
+                    order = scanOrder.compare(getScanID(previousLine), getScanID(newLine));
+                }
+                if (order < 0) {
+                    compareRows(previousLine, null, header, writer);
+                    previousLine = readRow(previousReader);
+                } else if (order > 0) {
+                    compareRows(null, newLine, header, writer);
+                    newLine = readRow(newReader);
+                } else {
+                    compareRows(previousLine, newLine, header, writer);
+                    previousLine = readRow(previousReader);
+                    newLine = readRow(newReader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares two unsorted scan data files. Rows of both files are divided over partition files on the hash of the scan ID,
+     * so a scan ID is found in the same partition of both files. Only the rows of a single partition of the previous file are
+     * kept in memory.
+     *
+     * @param previousPath path of the previous scan data file.
+     * @param newPath path of the new scan data file.
+     * @param header column names of the new scan data file.
+     * @param writer diff writer.
+     * @param partitions amount of partitions.
+     * @param outputFolder folder that receives a temporary folder with the partition files.
+     * @throws IOException could not read the scan data files or write the output or partition files.
+     */
+    private void comparePartitioned(final String previousPath, final String newPath, final String[] header,
+            final BufferedWriter writer, final int partitions, final File outputFolder) throws IOException {
+        File folder = Files.createTempDirectory(outputFolder.toPath(), "diff").toFile();
+        try {
+            ArrayList<File> previousParts = writePartitions(previousPath, folder, "previous", partitions);
+            ArrayList<File> newParts = writePartitions(newPath, folder, "new", partitions);
+            for (int i = 0; i < partitions; i++) {
+                HashMap<String, String> previousRows = new HashMap<>();
+                try (BufferedReader reader = new BufferedReader(new FileReader(previousParts.get(i)), 1 << 16)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        previousRows.put(getScanID(line), line);
+                    }
+                }
+                try (BufferedReader reader = new BufferedReader(new FileReader(newParts.get(i)), 1 << 16)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        compareRows(previousRows.remove(getScanID(line)), line, header, writer);
+                    }
+                }
+                //Scan IDs that were not found in the new file.
+                for (String line : previousRows.values()) {
+                    compareRows(line, null, header, writer);
+                }
+                previousParts.get(i).delete();
+                newParts.get(i).delete();
+            }
+        } finally {
+            for (File file : folder.listFiles()) {
+                file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    /**
+     * Divides the rows of a scan data file over partition files on the hash of the scan ID.
+     *
+     * @param path path of the scan data file.
+     * @param folder folder of the partition files.
+     * @param name name of the partition files.
+     * @param partitions amount of partitions.
+     * @return list of partition files.
+     * @throws IOException could not read the scan data file or write the partition files.
+     */
+    private ArrayList<File> writePartitions(final String path, final File folder, final String name, final int partitions)
+            throws IOException {
+        ArrayList<File> files = new ArrayList<>();
+        BufferedWriter[] writers = new BufferedWriter[partitions];
+        try (BufferedReader reader = new BufferedReader(new FileReader(path), 1 << 16)) {
+            for (int i = 0; i < partitions; i++) {
+                File file = new File(folder, name + ".part" + i + ".csv");
+                files.add(file);
+                writers[i] = new BufferedWriter(new FileWriter(file));
+            }
+            reader.readLine();
+            String line;
+            while ((line = readRow(reader)) != null) {
+                writers[Math.floorMod(getScanID(line).hashCode(), partitions)].append(line).append('\n');
+            }
+        } finally {
+            for (BufferedWriter partitionWriter : writers) {
+                if (partitionWriter != null) {
+                    partitionWriter.close();
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Compares the rows of a single scan ID and writes a row for each column with removed or added values.
+     *
+     * @param previousLine row of the previous file. (null if the scan ID was added)
+     * @param newLine row of the new file. (null if the scan ID was removed)
+     * @param header column names of the new scan data file.
+     * @param writer diff writer.
+     * @throws IOException could not write to the output file.
+     */
+    private void compareRows(final String previousLine, final String newLine, final String[] header, final BufferedWriter writer)
+            throws IOException {
+        String status = previousLine == null ? "added" : newLine == null ? "removed" : "changed";
+        String[] previousValues = previousLine == null ? new String[0] : previousLine.split(",", -1);
+        String[] newValues = newLine == null ? new String[0] : newLine.split(",", -1);
+        String scan = newLine == null ? previousValues[0] : newValues[0];
+        boolean different = previousLine == null || newLine == null;
+        for (int i = 1; i < header.length; i++) {
+            //Sequences and scores are compared as sets, so the order of the candidates does not matter.
+            LinkedHashSet<String> removedValues = getValues(previousValues, i);
+            LinkedHashSet<String> addedValues = getValues(newValues, i);
+            LinkedHashSet<String> commonValues = new LinkedHashSet<>(removedValues);
+            commonValues.retainAll(addedValues);
+            removedValues.removeAll(commonValues);
+            addedValues.removeAll(commonValues);
+            if (!removedValues.isEmpty() || !addedValues.isEmpty()) {
+                different = true;
+                writer.append(scan).append(',').append(status).append(',').append(header[i]).append(',')
+                        .append(String.join("|", removedValues)).append(',').append(String.join("|", addedValues)).append('\n');
+            }
+        }
+        if (previousLine == null) {
+            added++;
+        } else if (newLine == null) {
+            removed++;
+        } else if (different) {
+            changed++;
+        } else {
+            unchanged++;
+        }
+    }
+
+    /**
+     * Provides the values of a column of a row.
+     *
+     * @param values columns of the row.
+     * @param column column index.
+     * @return set of the values, multiple values are separated by a |.
+     */
+    private LinkedHashSet<String> getValues(final String[] values, final int column) {
+        LinkedHashSet<String> columnValues = new LinkedHashSet<>();
+        if (column < values.length && !values[column].isEmpty()) {
+            for (String value : values[column].split("\\|")) {
+                columnValues.add(value);
+            }
+        }
+        return columnValues;
+    }
+
+    /**
+     * Reads the column names of a scan data file.
+     *
+     * @param path path of the scan data file.
+     * @return column names.
+     * @throws IOException could not read the file or the file is empty.
+     */
+    private String[] readHeader(final String path) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("Scan ID")) {
+                throw new IllegalArgumentException("Not a scan data file: " + path);
+            }
+            return line.split(",", -1);
+        }
+    }
+
+    /**
+     * Reads the next row with data.
+     *
+     * @param reader scan data reader.
+     * @return next row or null at the end of the file.
+     * @throws IOException could not read the file.
+     */
+    private String readRow(final BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while (line != null && line.isEmpty()) {
+            line = reader.readLine();
+        }
+        return line;
+    }
+
+    /**
+     * Provides the scan ID of a row.
+     *
+     * @param line row of a scan data file.
+     * @return scan ID. (F1:2048)
+     */
+    private String getScanID(final String line) {
+        int end = line.indexOf(',');
+        return end < 0 ? line : line.substring(0, end);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package fasta;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks in which sample databases peptides occur, with one FastaIndex per sample database.
+ *
+ * @author vnijenhuis
+ */
+public class DatabaseProvenanceChecker implements Closeable {
+
+    /**
+     * Sample names (such as COPD1) and the index of their database.
+     */
+    private final TreeMap<String, FastaIndex> databases;
+
+    /**
+     * Opens or builds the index of each sample database.
+     *
+     * @param databaseFiles fasta database files. (found with ValidFileChecker.getFastaDatabaseFiles)
+     * @param sampleList list of sample names without sample numbers.
+     * @param indexFolder folder that contains the index files.
+     * @throws IOException could not read a database or write an index file.
+     */
+    public DatabaseProvenanceChecker(final ArrayList<String> databaseFiles, final ArrayList<String> sampleList,
+            final String indexFolder) throws IOException {
+        this.databases = new TreeMap<>();
+        try {
+            for (String databaseFile : databaseFiles) {
+                String sample = getSampleName(databaseFile, sampleList);
+                if (databases.containsKey(sample)) {
+                    throw new IllegalArgumentException("Multiple databases found for sample " + sample + ": " + databaseFile);
+                }
+                databases.put(sample, new FastaIndex(databaseFile, indexFolder));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Provides the sample names of the databases in output order.
+     * @return list of sample names.
+     */
+    public final ArrayList<String> getSamples() {
+        return new ArrayList<>(databases.keySet());
+    }
+
+    /**
+     * Checks a list of peptides against all databases in parallel.
+     *
+     * @param peptides list of peptide sequences.
+     * @param threads amount of threads.
+     * @return presence of each peptide (second index) in each database (first index, same order as getSamples).
+     * @throws InterruptedException interrupted while checking the peptides.
+     * @throws ExecutionException could not check the peptides.
+     */
+    public final boolean[][] checkPeptides(final ArrayList<String> peptides, final int threads)
+            throws InterruptedException, ExecutionException {
+        final FastaIndex[] indexes = databases.values().toArray(new FastaIndex[databases.size()]);
+        final boolean[][] presence = new boolean[indexes.length][peptides.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            //Each thread checks its own range of peptides, so every value is written by a single thread.
+            int chunk = (peptides.size() + threads - 1) / threads;
+            for (int start = 0; start < peptides.size(); start += chunk) {
+                final int first = start;
+                final int last = Math.min(start + chunk, peptides.size());
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = first; i < last; i++) {
+                            byte[] peptide = FastaIndex.encodePeptide(peptides.get(i));
+                            for (int j = 0; j < indexes.length; j++) {
+                                presence[j][i] = indexes[j].contains(peptide);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return presence;
+    }
+
+    /**
+     * Closes all database indexes.
+     *
+     * @throws IOException could not close an index file.
+     */
+    @Override
+    public final void close() throws IOException {
+        for (Map.Entry<String, FastaIndex> entry : databases.entrySet()) {
+            entry.getValue().close();
+        }
+    }
+
+    /**
+     * Provides the sample name (sample and sample number, such as COPD1) of a database file.
+     *
+     * @param databaseFile path of the database file. (/home/name/COPD_1_database.fasta)
+     * @param sampleList list of sample names without sample numbers.
+     * @return sample name.
+     */
+    private String getSampleName(final String databaseFile, final ArrayList<String> sampleList) {
+        String fileName = new File(databaseFile).getName();
+        for (String sample : sampleList) {
+            Matcher matcher = Pattern.compile(Pattern.quote(sample) + "_?(\\d+)").matcher(fileName);
+            if (matcher.find()) {
+                return sample + Integer.parseInt(matcher.group(1));
+            }
+        }
+        throw new IllegalArgumentException("No sample name found in database file: " + databaseFile);
+    }
+}
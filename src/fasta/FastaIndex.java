@@ -0,0 +1,357 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package fasta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import objects.PeptideCanonicalizer;
+
+/**
+ * K-mer index over the protein sequences of a fasta database, used to check if a peptide occurs in the database.
+ *
+ * The index is built once and written to an index file. Later runs map the index file into memory as long as the fasta
+ * file did not change, so the index is not rebuilt and is not copied onto the heap. The index file contains the protein
+ * residues (one byte per residue, proteins are separated by 0) and a sorted array with one key per residue position:
+ * the k-mer that starts at the position in the high bits and the position in the low bits. Isoleucine and leucine have
+ * the same mass and are treated as the same residue.
+ *
+ * @author vnijenhuis
+ */
+public class FastaIndex implements Closeable {
+
+    /**
+     * Length of the indexed k-mers. Five bits per residue, so the k-mer fits above the 32 bit position.
+     */
+    public static final int K = 6;
+
+    /**
+     * Magic number at the start of each index file.
+     */
+    private static final int MAGIC = 0x46494458;
+
+    /**
+     * Version of the index format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the index file header in bytes.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+
+    /**
+     * Index file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Residue codes of all proteins.
+     */
+    private final ByteBuffer residues;
+
+    /**
+     * Sorted k-mer keys.
+     */
+    private final LongBuffer keys;
+
+    /**
+     * Amount of keys.
+     */
+    private final int keyCount;
+
+    /**
+     * Opens the index of a fasta file and builds the index file if it does not exist or the fasta file changed.
+     *
+     * @param fastaPath path of the fasta file. (.fa, .fasta or gzipped)
+     * @param indexFolder folder that contains the index files.
+     * @throws IOException could not read the fasta file or write the index file.
+     */
+    public FastaIndex(final String fastaPath, final String indexFolder) throws IOException {
+        File fasta = new File(fastaPath);
+        File folder = new File(indexFolder);
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create index folder " + folder);
+        }
+        File indexFile = new File(folder, fasta.getName() + ".idx");
+        if (!isCurrent(indexFile, fasta)) {
+            buildIndex(fasta, indexFile);
+        } else {
+            System.out.println("Using fasta index " + indexFile);
+        }
+        this.file = new RandomAccessFile(indexFile, "r");
+        try {
+            file.seek(HEADER_SIZE - 8);
+            long residueCount = file.readLong();
+            long fileKeys = (file.length() - HEADER_SIZE - residueCount) / 8;
+            this.keyCount = (int) fileKeys;
+            FileChannel channel = file.getChannel();
+            this.residues = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, residueCount);
+            this.keys = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + residueCount, fileKeys * 8).asLongBuffer();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a peptide sequence to residue codes. Modifications such as (+15.99) and other characters that are not
+     * residues are removed.
+     *
+     * @param peptide peptide sequence.
+     * @return residue codes.
+     */
+    public static byte[] encodePeptide(final String peptide) {
+        String residues = PeptideCanonicalizer.canonicalize(peptide);
+        byte[] codes = new byte[residues.length()];
+        for (int i = 0; i < residues.length(); i++) {
+            codes[i] = encodeResidue(residues.charAt(i));
+        }
+        return codes;
+    }
+
+    /**
+     * Checks if a peptide occurs in one of the proteins of the database.
+     *
+     * @param peptide residue codes of the peptide. (see encodePeptide)
+     * @return true if the peptide occurs in the database.
+     */
+    public final boolean contains(final byte[] peptide) {
+        if (peptide.length == 0) {
+            return false;
+        }
+        if (peptide.length <= K) {
+            //Short peptides are a prefix of the k-mers that start with them.
+            long prefix = encodeKmer(peptide, 0, peptide.length) << (5 * (K - peptide.length));
+            long last = prefix + (1L << (5 * (K - peptide.length)));
+            return findFirst(prefix) < findFirst(last);
+        }
+        //Uses the k-mer of the peptide with the fewest positions.
+        int bestOffset = 0;
+        int bestStart = 0;
+        int bestEnd = Integer.MAX_VALUE;
+        for (int offset = 0; offset + K <= peptide.length; offset++) {
+            long kmer = encodeKmer(peptide, offset, K);
+            int start = findFirst(kmer);
+            int end = findFirst(kmer + 1);
+            if (end - start < bestEnd - bestStart) {
+                bestOffset = offset;
+                bestStart = start;
+                bestEnd = end;
+                if (start == end) {
+                    return false;
+                }
+            }
+        }
+        for (int i = bestStart; i < bestEnd; i++) {
+            long position = (keys.get(i) & 0xFFFFFFFFL) - bestOffset;
+            if (position >= 0 && matches(peptide, (int) position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Provides the amount of indexed residue positions.
+     * @return amount of keys.
+     */
+    public final int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Closes the index file.
+     *
+     * @throws IOException could not close the file.
+     */
+    @Override
+    public final void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Compares the residues of a peptide with the residues at a position of the database.
+     *
+     * @param peptide residue codes of the peptide.
+     * @param position position in the database.
+     * @return true if all residues match.
+     */
+    private boolean matches(final byte[] peptide, final int position) {
+        if (position + peptide.length > residues.limit()) {
+            return false;
+        }
+        //Protein separators are 0 and never match a residue, so matches do not cross proteins.
+        for (int i = 0; i < peptide.length; i++) {
+            if (residues.get(position + i) != peptide[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first key with a k-mer that is equal to or larger than the given k-mer.
+     *
+     * @param kmer encoded k-mer.
+     * @return index of the first key or the amount of keys.
+     */
+    private int findFirst(final long kmer) {
+        long key = kmer << 32;
+        int low = 0;
+        int high = keyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys.get(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if an index file exists and was built from the current fasta file.
+     *
+     * @param indexFile index file.
+     * @param fasta fasta file.
+     * @return true if the index file can be used.
+     * @throws IOException could not read the index file.
+     */
+    private static boolean isCurrent(final File indexFile, final File fasta) throws IOException {
+        if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            return input.readInt() == MAGIC && input.readInt() == VERSION && input.readLong() == fasta.length()
+                    && input.readLong() == fasta.lastModified();
+        }
+    }
+
+    /**
+     * Reads all protein sequences of a fasta file and writes the index file.
+     *
+     * @param fasta fasta file.
+     * @param indexFile index file.
+     * @throws IOException could not read the fasta file or write the index file.
+     */
+    private static void buildIndex(final File fasta, final File indexFile) throws IOException {
+        System.out.println("Building fasta index of " + fasta);
+        ByteArrayOutputStream residueStream = new ByteArrayOutputStream(1 << 20);
+        InputStream input = new FileInputStream(fasta);
+        if (fasta.getName().endsWith(".gz")) {
+            input = new GZIPInputStream(input, 1 << 16);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(">")) {
+                    //Separates the proteins.
+                    if (residueStream.size() > 0) {
+                        residueStream.write(0);
+                    }
+                    continue;
+                }
+                for (int i = 0; i < line.length(); i++) {
+                    byte code = encodeResidue(line.charAt(i));
+                    if (code != 0) {
+                        residueStream.write(code);
+                    }
+                }
+            }
+        }
+        //Keys are mapped as a single buffer, which is limited to 2 GB.
+        if (residueStream.size() > Integer.MAX_VALUE / 8) {
+            throw new IOException("Fasta database is too large to index: " + fasta);
+        }
+        byte[] residueCodes = residueStream.toByteArray();
+        //One key for each residue, k-mers at the end of a protein are padded with 0.
+        long[] positionKeys = new long[residueCodes.length];
+        int count = 0;
+        for (int position = 0; position < residueCodes.length; position++) {
+            if (residueCodes[position] == 0) {
+                continue;
+            }
+            long kmer = 0;
+            boolean ended = false;
+            for (int i = 0; i < K; i++) {
+                int index = position + i;
+                ended = ended || index >= residueCodes.length || residueCodes[index] == 0;
+                kmer = kmer << 5 | (ended ? 0 : residueCodes[index]);
+            }
+            positionKeys[count++] = kmer << 32 | position;
+        }
+        positionKeys = Arrays.copyOf(positionKeys, count);
+        Arrays.parallelSort(positionKeys);
+        //Workers that share the output folder can build the same index at the same time.
+        File temporaryFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fasta.length());
+            output.writeLong(fasta.lastModified());
+            output.writeLong(residueCodes.length);
+            output.write(residueCodes);
+            for (long key : positionKeys) {
+                output.writeLong(key);
+            }
+        }
+        Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Indexed " + count + " residues of " + fasta);
+    }
+
+    /**
+     * Converts a residue letter to its code.
+     *
+     * @param residue residue letter.
+     * @return code from 1 to 26 or 0 if the character is not a residue.
+     */
+    private static byte encodeResidue(final char residue) {
+        char upper = Character.toUpperCase(residue);
+        if (upper < 'A' || upper > 'Z') {
+            return 0;
+        }
+        //Isoleucine and leucine can not be distinguished by mass.
+        if (upper == 'I') {
+            upper = 'L';
+        }
+        return (byte) (upper - 'A' + 1);
+    }
+
+    /**
+     * Encodes residue codes as k-mer with five bits per residue.
+     *
+     * @param codes residue codes.
+     * @param offset first residue.
+     * @param length amount of residues.
+     * @return encoded k-mer.
+     */
+    private static long encodeKmer(final byte[] codes, final int offset, final int length) {
+        long kmer = 0;
+        for (int i = 0; i < length; i++) {
+            kmer = kmer << 5 | codes[offset + i];
+        }
+        return kmer;
+    }
+}
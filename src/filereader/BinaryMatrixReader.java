@@ -0,0 +1,364 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filereader;
+
+import filewriter.BinaryMatrixWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import objects.ScanID;
+import objects.ScanIDOrder;
+
+/**
+ * Reads scan IDs from a binary matrix file that was written by BinaryMatrixWriter.
+ * Only the block index is kept in memory, scan IDs are read from disk for each lookup.
+ *
+ * @author vnijenhuis
+ */
+public class BinaryMatrixReader implements Closeable {
+
+    /**
+     * Binary matrix file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Name of the ms method.
+     */
+    private final String method;
+
+    /**
+     * List of dataset names.
+     */
+    private final ArrayList<String> datasets;
+
+    /**
+     * Amount of scan ID records in the file.
+     */
+    private final long records;
+
+    /**
+     * First scan ID of each block.
+     */
+    private final String[] blockKeys;
+
+    /**
+     * Position of each block in the file.
+     */
+    private final long[] blockOffsets;
+
+    /**
+     * Length of each block in bytes.
+     */
+    private final int[] blockLengths;
+
+    /**
+     * Amount of records in each block.
+     */
+    private final int[] blockRecords;
+
+    /**
+     * Order of the scan IDs in the file.
+     */
+    private final ScanIDOrder order;
+
+    /**
+     * Opens a binary matrix file and reads the block index.
+     *
+     * @param path path of the binary matrix file.
+     * @throws IOException could not read the file or the file is not a binary matrix file.
+     */
+    public BinaryMatrixReader(final String path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        this.order = new ScanIDOrder();
+        try {
+            if (file.readInt() != BinaryMatrixWriter.MAGIC) {
+                throw new IOException("Not a binary matrix file: " + path);
+            }
+            int version = file.readInt();
+            if (version != BinaryMatrixWriter.VERSION) {
+                throw new IOException("Unsupported binary matrix version " + version + ": " + path);
+            }
+            this.method = file.readUTF();
+            int datasetCount = file.readInt();
+            this.datasets = new ArrayList<>();
+            for (int i = 0; i < datasetCount; i++) {
+                datasets.add(file.readUTF());
+            }
+            file.readInt();
+            this.records = file.readLong();
+            long indexOffset = file.readLong();
+            //Reads the block index.
+            file.seek(indexOffset);
+            DataInputStream index = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+            int blocks = index.readInt();
+            this.blockKeys = new String[blocks];
+            this.blockOffsets = new long[blocks];
+            this.blockLengths = new int[blocks];
+            this.blockRecords = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                blockKeys[i] = index.readUTF();
+                blockOffsets[i] = index.readLong();
+                blockLengths[i] = index.readInt();
+                blockRecords[i] = index.readInt();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Provides the name of the mass spectrometry method.
+     * @return method name as String.
+     */
+    public final String getMethod() {
+        return method;
+    }
+
+    /**
+     * Provides the list of dataset names.
+     * @return list of dataset names.
+     */
+    public final ArrayList<String> getDatasets() {
+        return datasets;
+    }
+
+    /**
+     * Provides the amount of scan ID records in the file.
+     * @return amount of records.
+     */
+    public final long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Looks up a single scan ID.
+     *
+     * @param scanID scan ID (file:scan).
+     * @return ScanID object or null if the scan ID is not present.
+     * @throws IOException could not read the file.
+     */
+    public final ScanID getScan(final String scanID) throws IOException {
+        //Finds the last block that starts at or before the scan ID.
+        int low = 0;
+        int high = blockKeys.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(blockKeys[middle], scanID) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return null;
+        }
+        for (ScanID scanObject : readBlock(block)) {
+            if (scanObject.getScanID().equals(scanID)) {
+                return scanObject;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads all scan IDs of a single file number.
+     *
+     * @param fileNumber file number such as F1.
+     * @return iterator over the scan IDs in scan number order.
+     */
+    public final Iterator<ScanID> scanFile(final String fileNumber) {
+        return scanFiles(fileNumber, fileNumber);
+    }
+
+    /**
+     * Reads all scan IDs from the first up to and including the last file number.
+     *
+     * @param firstFile first file number.
+     * @param lastFile last file number.
+     * @return iterator over the scan IDs in file number and scan number order.
+     */
+    public final Iterator<ScanID> scanFiles(final String firstFile, final String lastFile) {
+        //Finds the first block that starts at or after the first file, the block before it can contain the start of the file.
+        int low = 0;
+        int high = blockKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compareFileNumbers(getFileNumber(blockKeys[middle]), firstFile) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return new FileRangeIterator(Math.max(0, low - 1), firstFile, lastFile);
+    }
+
+    /**
+     * Closes the binary matrix file.
+     *
+     * @throws IOException could not close the file.
+     */
+    @Override
+    public final void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Reads all records of a block.
+     *
+     * @param block index of the block.
+     * @return list of ScanID objects.
+     * @throws IOException could not read the block.
+     */
+    private ArrayList<ScanID> readBlock(final int block) throws IOException {
+        byte[] content = new byte[blockLengths[block]];
+        synchronized (file) {
+            file.seek(blockOffsets[block]);
+            file.readFully(content);
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+        ArrayList<ScanID> scans = new ArrayList<>(blockRecords[block]);
+        for (int i = 0; i < blockRecords[block]; i++) {
+            ScanID scanObject = new ScanID(method, input.readUTF());
+            int count = input.readUnsignedShort();
+            for (int j = 0; j < count; j++) {
+                scanObject.addUniprotSequence(input.readUTF());
+                scanObject.addUniprotScore(input.readUTF());
+            }
+            count = input.readUnsignedShort();
+            for (int j = 0; j < count; j++) {
+                scanObject.addCombinedSequence(input.readUTF());
+                scanObject.addCombinedScore(input.readUTF());
+            }
+            count = input.readUnsignedShort();
+            for (int j = 0; j < count; j++) {
+                scanObject.addIndividualSequence(input.readUTF());
+                scanObject.addIndividualScore(input.readUTF());
+            }
+            scans.add(scanObject);
+        }
+        return scans;
+    }
+
+    /**
+     * Provides the file number of a scan ID.
+     *
+     * @param scanID scan ID (file:scan).
+     * @return file number.
+     */
+    private String getFileNumber(final String scanID) {
+        int split = scanID.lastIndexOf(':');
+        return split < 0 ? "" : scanID.substring(0, split);
+    }
+
+    /**
+     * Iterates over the scan IDs of a range of file numbers, one block at a time.
+     */
+    private class FileRangeIterator implements Iterator<ScanID> {
+
+        /**
+         * First file number of the range.
+         */
+        private final String firstFile;
+
+        /**
+         * Last file number of the range.
+         */
+        private final String lastFile;
+
+        /**
+         * Index of the next block to read.
+         */
+        private int block;
+
+        /**
+         * Records of the current block.
+         */
+        private ArrayList<ScanID> current;
+
+        /**
+         * Position inside the current block.
+         */
+        private int position;
+
+        /**
+         * Next scan ID in the range. (null if the range is finished)
+         */
+        private ScanID next;
+
+        /**
+         * Creates an iterator that starts reading at the given block.
+         *
+         * @param block index of the first block.
+         * @param firstFile first file number.
+         * @param lastFile last file number.
+         */
+        FileRangeIterator(final int block, final String firstFile, final String lastFile) {
+            this.block = block;
+            this.firstFile = firstFile;
+            this.lastFile = lastFile;
+            this.current = new ArrayList<>();
+            this.position = 0;
+            this.next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ScanID next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ScanID scanObject = next;
+            next = advance();
+            return scanObject;
+        }
+
+        /**
+         * Finds the next scan ID inside the range of file numbers.
+         *
+         * @return next ScanID or null if the range is finished.
+         */
+        private ScanID advance() {
+            while (true) {
+                if (position >= current.size()) {
+                    if (block >= blockKeys.length) {
+                        return null;
+                    }
+                    try {
+                        current = readBlock(block++);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Could not read binary matrix block.", e);
+                    }
+                    position = 0;
+                    continue;
+                }
+                ScanID scanObject = current.get(position++);
+                String fileNumber = getFileNumber(scanObject.getScanID());
+                if (order.compareFileNumbers(fileNumber, lastFile) > 0) {
+                    block = blockKeys.length;
+                    current = new ArrayList<>();
+                    return null;
+                }
+                if (order.compareFileNumbers(fileNumber, firstFile) >= 0) {
+                    return scanObject;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filewriter;
+
+import collections.ScanIDCollection;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import objects.ScanID;
+import objects.ScanIDSorter;
+
+/**
+ * Writes peptide scan data to a binary file with a sorted scan ID index.
+ *
+ * The file starts with a header (magic number, version, method, dataset names, block size, record count and index offset),
+ * followed by blocks of records sorted on file number and scan number. Each record contains the scan ID and the sequences and
+ * scores of each dataset. The index at the end of the file contains the first scan ID, offset, length and record count of
+ * each block. Use BinaryMatrixReader to read the file.
+ *
+ * @author vnijenhuis
+ */
+public class BinaryMatrixWriter {
+
+    /**
+     * Magic number at the start of each binary matrix file.
+     */
+    public static final int MAGIC = 0x50534D31;
+
+    /**
+     * Version of the binary matrix format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Default amount of records per block.
+     */
+    public static final int BLOCK_SIZE = 256;
+
+    /**
+     * Generates the binary matrix file and writes data to this file.
+     *
+     * @param finalScans set of peptide arrays.
+     * @param outputPath output path and file name.
+     * @param method name of the ms method that was used.
+     * @param datasets list of dataset names.
+     * @throws IOException Could not write to the file: file not found or is
+     * used by another program.
+     */
+    public final void generateBinaryFile(final ScanIDCollection finalScans, final String outputPath, final String method,
+            final ArrayList<String> datasets) throws IOException {
+        System.out.println("Writing data to binary file " + outputPath);
+        //Records are sorted on file number and scan number so the index can be searched.
+        ArrayList<ScanID> scans = new ScanIDSorter().sort(finalScans.getScanIDs());
+        writeSortedScans(scans, outputPath, method, datasets);
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Writes scans that are already sorted on file number and scan number.
+     *
+     * @param scans sorted list of scan IDs.
+     * @param outputPath output path and file name.
+     * @param method name of the ms method that was used.
+     * @param datasets list of dataset names.
+     * @throws IOException could not write to the file.
+     */
+    public final void writeSortedScans(final ArrayList<ScanID> scans, final String outputPath, final String method,
+            final ArrayList<String> datasets) throws IOException {
+        ArrayList<String> blockKeys = new ArrayList<>();
+        ArrayList<Long> blockOffsets = new ArrayList<>();
+        ArrayList<Integer> blockLengths = new ArrayList<>();
+        ArrayList<Integer> blockRecords = new ArrayList<>();
+        long position;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 16))) {
+            //Header, the index offset is filled in after all blocks are written.
+            position = writeHeader(output, method, datasets, scans.size(), 0L);
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            for (int start = 0; start < scans.size(); start += BLOCK_SIZE) {
+                int end = Math.min(start + BLOCK_SIZE, scans.size());
+                blockBytes.reset();
+                for (int i = start; i < end; i++) {
+                    writeRecord(block, scans.get(i));
+                }
+                block.flush();
+                blockKeys.add(scans.get(start).getScanID());
+                blockOffsets.add(position);
+                blockLengths.add(blockBytes.size());
+                blockRecords.add(end - start);
+                blockBytes.writeTo(output);
+                position += blockBytes.size();
+            }
+            //Index with the first scan ID and position of each block.
+            output.writeInt(blockKeys.size());
+            for (int i = 0; i < blockKeys.size(); i++) {
+                output.writeUTF(blockKeys.get(i));
+                output.writeLong(blockOffsets.get(i));
+                output.writeInt(blockLengths.get(i));
+                output.writeInt(blockRecords.get(i));
+            }
+        }
+        //Rewrite the header with the index offset.
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(header), method, datasets, scans.size(), position);
+        try (RandomAccessFile file = new RandomAccessFile(outputPath, "rw")) {
+            file.write(header.toByteArray());
+        }
+    }
+
+    /**
+     * Writes a single scan ID record.
+     *
+     * @param block output of the current block.
+     * @param scanData scan ID object.
+     * @throws IOException could not write the record.
+     */
+    private void writeRecord(final DataOutputStream block, final ScanID scanData) throws IOException {
+        block.writeUTF(scanData.getScanID());
+        writeValues(block, scanData.getUniprotSequences(), scanData.getUniprotScores());
+        writeValues(block, scanData.getCombinedSequences(), scanData.getCombinedScores());
+        writeValues(block, scanData.getIndividualSequences(), scanData.getIndividualScores());
+    }
+
+    /**
+     * Writes the sequences and scores of a single dataset.
+     *
+     * @param block output of the current block.
+     * @param sequences list of sequences.
+     * @param scores list of scores.
+     * @throws IOException could not write the values.
+     */
+    private void writeValues(final DataOutputStream block, final ArrayList<String> sequences, final ArrayList<String> scores)
+            throws IOException {
+        block.writeShort(sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            block.writeUTF(sequences.get(i));
+            block.writeUTF(i < scores.size() ? scores.get(i) : "");
+        }
+    }
+
+    /**
+     * Writes the header of the binary matrix file.
+     *
+     * @param output output of the file.
+     * @param method name of the ms method that was used.
+     * @param datasets list of dataset names.
+     * @param records amount of scan ID records.
+     * @param indexOffset position of the index in the file.
+     * @return header size in bytes.
+     * @throws IOException could not write the header.
+     */
+    private long writeHeader(final DataOutputStream output, final String method, final ArrayList<String> datasets,
+            final long records, final long indexOffset) throws IOException {
+        int start = output.size();
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(method);
+        output.writeInt(datasets.size());
+        for (String dataset : datasets) {
+            output.writeUTF(dataset);
+        }
+        output.writeInt(BLOCK_SIZE);
+        output.writeLong(records);
+        output.writeLong(indexOffset);
+        output.flush();
+        return output.size() - start;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filewriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import matrix.PeptidePresenceMatrix;
+
+/**
+ * Writes the peptide presence matrix and the overlap counts of the samples and datasets to csv files.
+ *
+ * @author vnijenhuis
+ */
+public class PresenceMatrixCsvWriter {
+
+    /**
+     * Writes one row per peptide, sorted on peptide, with a 1 or 0 for each sample and dataset.
+     *
+     * @param matrix peptide presence matrix.
+     * @param outputPath output path and file name.
+     * @throws IOException could not write to the file.
+     */
+    public final void generateMatrixFile(final PeptidePresenceMatrix matrix, final String outputPath) throws IOException {
+        System.out.println("Writing data to text file " + outputPath);
+        ArrayList<String> columns = matrix.getColumns();
+        ArrayList<String> peptides = matrix.getPeptides();
+        Collections.sort(peptides);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), 1 << 16)) {
+            writer.append("Peptide");
+            for (String column : columns) {
+                writer.append(',').append(column);
+            }
+            writer.append('\n');
+            for (String peptide : peptides) {
+                long[] presence = matrix.getPresence(peptide);
+                writer.append(peptide);
+                for (int i = 0; i < columns.size(); i++) {
+                    writer.append(',').append((presence[i >>> 6] & 1L << i) != 0 ? '1' : '0');
+                }
+                writer.append('\n');
+            }
+        }
+        System.out.println("Finished writing " + peptides.size() + " peptides to " + outputPath);
+    }
+
+    /**
+     * Counts the peptides that samples and datasets share or that are unique to a sample or dataset.
+     * For each dataset: the peptides of each pair of samples (COPD and Control), the peptides of a single sample and all
+     * peptides. Over all datasets: the peptides that no other dataset contains and the peptides that all datasets share.
+     *
+     * @param matrix peptide presence matrix.
+     * @param outputPath output path and file name.
+     * @throws IOException could not write to the file.
+     */
+    public final void generateOverlapFile(final PeptidePresenceMatrix matrix, final String outputPath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ArrayList<String> datasets = matrix.getDatasets();
+        ArrayList<String> sampleList = matrix.getSampleNames();
+        //Mask without columns.
+        long[] none = matrix.invertMask(matrix.createMask(null, null));
+        StringBuilder overlaps = new StringBuilder("Overlap,Peptides\n");
+        for (String dataset : datasets) {
+            long[] datasetMask = matrix.createMask(null, dataset);
+            for (int i = 0; i < sampleList.size(); i++) {
+                for (int j = i + 1; j < sampleList.size(); j++) {
+                    long[][] required = {matrix.createMask(sampleList.get(i), dataset), matrix.createMask(sampleList.get(j), dataset)};
+                    addOverlap(overlaps, dataset + " shared by " + sampleList.get(i) + " and " + sampleList.get(j),
+                            matrix.count(required, none));
+                }
+            }
+            for (String sample : sampleList) {
+                long[] sampleMask = matrix.createMask(sample, dataset);
+                //Present in the sample but not in the other samples of the dataset.
+                long[] otherSamples = datasetMask.clone();
+                for (int i = 0; i < sampleMask.length; i++) {
+                    otherSamples[i] &= ~sampleMask[i];
+                }
+                addOverlap(overlaps, dataset + " only " + sample, matrix.count(new long[][]{sampleMask}, otherSamples));
+            }
+            addOverlap(overlaps, dataset + " all samples", matrix.count(new long[][]{datasetMask}, none));
+        }
+        long[][] allDatasets = new long[datasets.size()][];
+        for (int i = 0; i < datasets.size(); i++) {
+            long[] datasetMask = matrix.createMask(null, datasets.get(i));
+            allDatasets[i] = datasetMask;
+            addOverlap(overlaps, "Unique to " + datasets.get(i), matrix.count(new long[][]{datasetMask}, matrix.invertMask(datasetMask)));
+        }
+        addOverlap(overlaps, "Shared by all datasets", matrix.count(allDatasets, none));
+        System.out.println("Counted overlaps of " + matrix.getColumns().size() + " columns in "
+                + (System.currentTimeMillis() - startTime) + " ms.");
+        System.out.println("Writing data to text file " + outputPath);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
+            writer.append(overlaps);
+        }
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Adds a single overlap count to the csv content and prints it.
+     *
+     * @param overlaps csv content.
+     * @param description description of the overlap.
+     * @param count amount of peptides.
+     */
+    private void addOverlap(final StringBuilder overlaps, final String description, final long count) {
+        System.out.println(description + ": " + count + " peptides");
+        overlaps.append(description).append(',').append(count).append('\n');
+    }
+}
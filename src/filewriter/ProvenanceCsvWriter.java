@@ -0,0 +1,105 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filewriter;
+
+import fasta.DatabaseProvenanceChecker;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import objects.ScanID;
+
+/**
+ * Writes a csv file that shows for each peptide of each scan ID in which sample databases the peptide occurs.
+ *
+ * @author vnijenhuis
+ */
+public class ProvenanceCsvWriter {
+
+    /**
+     * Checks each distinct peptide against the databases and writes one row per scan ID, dataset and peptide.
+     *
+     * @param scans sorted list of scan IDs.
+     * @param datasets list of dataset names.
+     * @param checker checks the peptides against the sample databases.
+     * @param outputPath output path and file name.
+     * @param threads amount of threads used to check the peptides.
+     * @throws IOException could not write to the file.
+     * @throws InterruptedException interrupted while checking the peptides.
+     * @throws ExecutionException could not check the peptides.
+     */
+    public final void generateProvenanceFile(final List<ScanID> scans, final ArrayList<String> datasets,
+            final DatabaseProvenanceChecker checker, final String outputPath, final int threads)
+            throws IOException, InterruptedException, ExecutionException {
+        //Each distinct peptide is only checked once.
+        HashMap<String, Integer> peptideIds = new HashMap<>();
+        ArrayList<String> peptides = new ArrayList<>();
+        for (ScanID scanObject : scans) {
+            addPeptides(scanObject.getUniprotSequences(), peptideIds, peptides);
+            addPeptides(scanObject.getCombinedSequences(), peptideIds, peptides);
+            addPeptides(scanObject.getIndividualSequences(), peptideIds, peptides);
+        }
+        System.out.println("Checking " + peptides.size() + " peptides against " + checker.getSamples().size() + " databases.");
+        boolean[][] presence = checker.checkPeptides(peptides, threads);
+        System.out.println("Writing data to text file " + outputPath);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), 1 << 16)) {
+            writer.append("Scan ID,Dataset,Peptide");
+            for (String sample : checker.getSamples()) {
+                writer.append(',').append(sample).append(" database");
+            }
+            writer.append('\n');
+            for (ScanID scanObject : scans) {
+                writeRows(writer, scanObject.getScanID(), datasets.get(0), scanObject.getUniprotSequences(), peptideIds, presence);
+                writeRows(writer, scanObject.getScanID(), datasets.get(1), scanObject.getCombinedSequences(), peptideIds, presence);
+                writeRows(writer, scanObject.getScanID(), datasets.get(2), scanObject.getIndividualSequences(), peptideIds, presence);
+            }
+        }
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Adds new peptides to the list of distinct peptides.
+     *
+     * @param sequences peptide sequences of a scan ID.
+     * @param peptideIds index of each distinct peptide.
+     * @param peptides list of distinct peptides.
+     */
+    private void addPeptides(final ArrayList<String> sequences, final HashMap<String, Integer> peptideIds,
+            final ArrayList<String> peptides) {
+        for (String sequence : sequences) {
+            if (!peptideIds.containsKey(sequence)) {
+                peptideIds.put(sequence, peptides.size());
+                peptides.add(sequence);
+            }
+        }
+    }
+
+    /**
+     * Writes one row per peptide of a single dataset of a scan ID.
+     *
+     * @param writer csv writer.
+     * @param scanID scan ID.
+     * @param dataset name of the dataset.
+     * @param sequences peptide sequences of the dataset.
+     * @param peptideIds index of each distinct peptide.
+     * @param presence presence of each peptide in each database.
+     * @throws IOException could not write to the file.
+     */
+    private void writeRows(final BufferedWriter writer, final String scanID, final String dataset,
+            final ArrayList<String> sequences, final HashMap<String, Integer> peptideIds, final boolean[][] presence)
+            throws IOException {
+        for (String sequence : sequences) {
+            int peptide = peptideIds.get(sequence);
+            writer.append(scanID).append(',').append(dataset).append(',').append(sequence);
+            for (boolean[] database : presence) {
+                writer.append(',').append(database[peptide] ? '1' : '0');
+            }
+            writer.append('\n');
+        }
+    }
+}
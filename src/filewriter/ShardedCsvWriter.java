@@ -0,0 +1,133 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filewriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import objects.ScanID;
+import objects.ScanIDOrder;
+
+/**
+ * Writes peptide scan data to multiple csv files (shards) in parallel, one shard per group of file numbers.
+ * A manifest file lists the name, file numbers and amount of rows of each shard.
+ *
+ * @author vnijenhuis
+ */
+public class ShardedCsvWriter {
+
+    /**
+     * Writes the rows of each shard.
+     */
+    private final CsvWriter csvWriter;
+
+    /**
+     * Creates a sharded csv writer.
+     */
+    public ShardedCsvWriter() {
+        this.csvWriter = new CsvWriter();
+    }
+
+    /**
+     * Generates one csv file per group of file numbers and a manifest file.
+     *
+     * @param finalScans HashMap with the file number as key and a list of ScanIDs as value.
+     * @param outputPath output path and file name prefix. (/home/name/Output/1D25_scan_data)
+     * @param datasets list of dataset names.
+     * @param partitionsPerShard amount of file numbers in each shard.
+     * @param threads amount of shards that are written at the same time.
+     * @return path of the manifest file.
+     * @throws IOException Could not write to one of the files.
+     */
+    public final String generateShards(final HashMap<String, ArrayList<ScanID>> finalScans, final String outputPath,
+            final ArrayList<String> datasets, final int partitionsPerShard, final int threads) throws IOException {
+        //File numbers are sorted so shards always contain the same file numbers.
+        final ArrayList<String> fileNumbers = new ArrayList<>(finalScans.keySet());
+        final ScanIDOrder order = new ScanIDOrder();
+        Collections.sort(fileNumbers, (first, second) -> order.compareFileNumbers(first, second));
+        ArrayList<List<String>> shards = new ArrayList<>();
+        for (int start = 0; start < fileNumbers.size(); start += partitionsPerShard) {
+            shards.add(fileNumbers.subList(start, Math.min(start + partitionsPerShard, fileNumbers.size())));
+        }
+        System.out.println("Writing data to " + shards.size() + " shards with prefix " + outputPath);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            final String shardPath = getShardPath(outputPath, i);
+            final List<String> shardFiles = shards.get(i);
+            futures.add(pool.submit(() -> writeShard(finalScans, shardFiles, shardPath, datasets)));
+        }
+        //Manifest with one line per shard.
+        String manifestPath = outputPath + "_manifest.csv";
+        try (BufferedWriter manifest = new BufferedWriter(new FileWriter(manifestPath))) {
+            manifest.append("Shard,File numbers,Rows\n");
+            for (int i = 0; i < shards.size(); i++) {
+                int rows = futures.get(i).get();
+                String shardName = new File(getShardPath(outputPath, i)).getName();
+                manifest.append(shardName).append(',').append(String.join("|", shards.get(i))).append(',')
+                        .append(Integer.toString(rows)).append('\n');
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing shards.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not write shards.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Finished writing shards, manifest: " + manifestPath);
+        return manifestPath;
+    }
+
+    /**
+     * Writes a single shard.
+     *
+     * @param finalScans HashMap with the file number as key and a list of ScanIDs as value.
+     * @param fileNumbers file numbers of this shard.
+     * @param shardPath path of the shard file.
+     * @param datasets list of dataset names.
+     * @return amount of rows written.
+     * @throws IOException could not write to the shard file.
+     */
+    private int writeShard(final HashMap<String, ArrayList<ScanID>> finalScans, final List<String> fileNumbers,
+            final String shardPath, final ArrayList<String> datasets) throws IOException {
+        String delimiter = ",";
+        String lineEnding = "\n";
+        int rows = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(shardPath), 1 << 16)) {
+            writer.append(csvWriter.createCsvHeader(delimiter, lineEnding, datasets));
+            for (String fileNumber : fileNumbers) {
+                for (ScanID scanData : finalScans.get(fileNumber)) {
+                    writer.append(csvWriter.createPeptideRow(scanData, delimiter, lineEnding));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the path of a shard file.
+     *
+     * @param outputPath output path and file name prefix.
+     * @param shard index of the shard.
+     * @return path of the shard file.
+     */
+    private String getShardPath(final String outputPath, final int shard) {
+        return outputPath + "_shard" + String.format("%04d", shard) + ".csv";
+    }
+}
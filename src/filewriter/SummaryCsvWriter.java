@@ -0,0 +1,103 @@
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package filewriter;
+
+import collections.ScanSummary;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Writes the overlap counts of each sample and the score histogram of each dataset to csv files.
+ *
+ * @author vnijenhuis
+ */
+public class SummaryCsvWriter {
+
+    /**
+     * Writes one row per sample and a total row with the counters of the summary.
+     *
+     * @param summary scan summary of a method.
+     * @param outputPath output path and file name.
+     * @throws IOException could not write to the file.
+     */
+    public final void generateSummaryFile(final ScanSummary summary, final String outputPath) throws IOException {
+        System.out.println("Writing data to text file " + outputPath);
+        long[] total = new long[ScanSummary.COUNTS.length];
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
+            writer.append("Sample");
+            for (String count : ScanSummary.COUNTS) {
+                writer.append(',').append(count);
+            }
+            writer.append('\n');
+            for (String sample : summary.getSamples()) {
+                long[] counts = summary.getCounts(sample);
+                writeRow(writer, sample, counts);
+                for (int i = 0; i < counts.length; i++) {
+                    total[i] += counts[i];
+                }
+            }
+            writeRow(writer, "Total", total);
+        }
+        System.out.println("Uniprot scans: " + total[0] + ", found in combined: " + total[1] + ", found in individual: "
+                + total[2] + ", found in both: " + total[3]);
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Writes one row per score bin with the amount of scores of each dataset and a row with the mean scores.
+     *
+     * @param summary scan summary of a method.
+     * @param outputPath output path and file name.
+     * @throws IOException could not write to the file.
+     */
+    public final void generateHistogramFile(final ScanSummary summary, final String outputPath) throws IOException {
+        System.out.println("Writing data to text file " + outputPath);
+        ArrayList<String> datasets = summary.getDatasets();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
+            writer.append("-10lgP");
+            for (String dataset : datasets) {
+                writer.append(',').append(dataset);
+            }
+            writer.append('\n');
+            for (int bin = 0; bin < ScanSummary.BINS; bin++) {
+                int start = bin * ScanSummary.BIN_WIDTH;
+                if (bin == ScanSummary.BINS - 1) {
+                    writer.append(">=").append(Integer.toString(start));
+                } else {
+                    writer.append(Integer.toString(start)).append('-').append(Integer.toString(start + ScanSummary.BIN_WIDTH));
+                }
+                for (int i = 0; i < datasets.size(); i++) {
+                    writer.append(',').append(Long.toString(summary.getHistogram(i)[bin]));
+                }
+                writer.append('\n');
+            }
+            writer.append("Mean");
+            for (int i = 0; i < datasets.size(); i++) {
+                writer.append(',').append(String.format(Locale.ROOT, "%.2f", summary.getMeanScore(i)));
+            }
+            writer.append('\n');
+        }
+        System.out.println("Finished writing to " + outputPath);
+    }
+
+    /**
+     * Writes the counters of a single sample.
+     *
+     * @param writer csv writer.
+     * @param sample sample name.
+     * @param counts counters of the sample.
+     * @throws IOException could not write to the file.
+     */
+    private void writeRow(final BufferedWriter writer, final String sample, final long[] counts) throws IOException {
+        writer.append(sample);
+        for (long count : counts) {
+            writer.append(',').append(Long.toString(count));
+        }
+        writer.append('\n');
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package matrix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Presence matrix of peptides (rows) in each sample and dataset (columns), such as COPD1 Uniprot.
+ * Each row is a bitset with one bit per column, stored in a single long array with a fixed amount of words per row. The
+ * matrix is filled while the psm files are parsed and overlaps are counted with bitwise operations on column masks, so
+ * overlap counts do not depend on the scan collections.
+ *
+ * @author vnijenhuis
+ */
+public class PeptidePresenceMatrix {
+
+    /**
+     * Magic number at the start of each presence matrix file.
+     */
+    private static final int MAGIC = 0x50535050;
+
+    /**
+     * Version of the presence matrix format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Sample name (such as COPD1) of each column.
+     */
+    private final ArrayList<String> columnSamples;
+
+    /**
+     * Dataset name of each column.
+     */
+    private final ArrayList<String> columnDatasets;
+
+    /**
+     * Column number of each sample and dataset. (sample + " " + dataset)
+     */
+    private final HashMap<String, Integer> columnIds;
+
+    /**
+     * Amount of long words per row.
+     */
+    private final int words;
+
+    /**
+     * Row number of each peptide.
+     */
+    private final HashMap<String, Integer> peptideIds;
+
+    /**
+     * Peptide of each row.
+     */
+    private final ArrayList<String> peptides;
+
+    /**
+     * Bits of all rows, row after row.
+     */
+    private long[] bits;
+
+    /**
+     * Creates an empty matrix with a column for each sample folder of each dataset.
+     *
+     * @param datasets names of the datasets. (uniprot, combined and individual)
+     * @param sampleFolders sample folder names (such as COPD1) that were found for each dataset, in column order.
+     */
+    public PeptidePresenceMatrix(final ArrayList<String> datasets, final ArrayList<ArrayList<String>> sampleFolders) {
+        this(new ArrayList<String>(), new ArrayList<String>(), countColumns(sampleFolders), 0);
+        for (int i = 0; i < datasets.size(); i++) {
+            for (String sample : sampleFolders.get(i)) {
+                addColumn(sample, datasets.get(i));
+            }
+        }
+    }
+
+    /**
+     * Creates an empty matrix without columns.
+     *
+     * @param columnSamples empty list for the sample name of each column.
+     * @param columnDatasets empty list for the dataset name of each column.
+     * @param columnCount amount of columns that will be added.
+     * @param peptideCount expected amount of peptides.
+     */
+    private PeptidePresenceMatrix(final ArrayList<String> columnSamples, final ArrayList<String> columnDatasets,
+            final int columnCount, final int peptideCount) {
+        this.columnSamples = columnSamples;
+        this.columnDatasets = columnDatasets;
+        this.columnIds = new HashMap<>();
+        this.peptideIds = new HashMap<>();
+        this.peptides = new ArrayList<>();
+        this.words = Math.max(1, (columnCount + 63) / 64);
+        this.bits = new long[Math.max(16, peptideCount) * words];
+    }
+
+    /**
+     * Provides the column of a sample and dataset.
+     *
+     * @param sample sample name. (COPD1)
+     * @param dataset name of the dataset.
+     * @return column number or -1 if the matrix has no such column.
+     */
+    public final int getColumn(final String sample, final String dataset) {
+        Integer column = columnIds.get(sample + " " + dataset);
+        if (column == null) {
+            return -1;
+        }
+        return column;
+    }
+
+    /**
+     * Provides the name of each column.
+     * @return list of column names. (COPD1 Uniprot)
+     */
+    public final ArrayList<String> getColumns() {
+        ArrayList<String> columns = new ArrayList<>();
+        for (int i = 0; i < columnSamples.size(); i++) {
+            columns.add(columnSamples.get(i) + " " + columnDatasets.get(i));
+        }
+        return columns;
+    }
+
+    /**
+     * Provides the names of the datasets of the columns.
+     * @return list of dataset names in column order.
+     */
+    public final ArrayList<String> getDatasets() {
+        ArrayList<String> datasets = new ArrayList<>();
+        for (String dataset : columnDatasets) {
+            if (!datasets.contains(dataset)) {
+                datasets.add(dataset);
+            }
+        }
+        return datasets;
+    }
+
+    /**
+     * Provides the sample names without sample numbers of the columns.
+     * @return list of sample names in column order. (COPD, Control)
+     */
+    public final ArrayList<String> getSampleNames() {
+        ArrayList<String> sampleNames = new ArrayList<>();
+        for (String sample : columnSamples) {
+            String sampleName = getSampleName(sample);
+            if (!sampleNames.contains(sampleName)) {
+                sampleNames.add(sampleName);
+            }
+        }
+        return sampleNames;
+    }
+
+    /**
+     * Provides all peptides of the matrix.
+     * @return list of peptides in row order.
+     */
+    public final synchronized ArrayList<String> getPeptides() {
+        return new ArrayList<>(peptides);
+    }
+
+    /**
+     * Provides the bits of a peptide, bit i of the array is set if the peptide is present in column i.
+     *
+     * @param peptide peptide sequence.
+     * @return copy of the bits of the peptide. (all bits are 0 if the peptide is not present)
+     */
+    public final synchronized long[] getPresence(final String peptide) {
+        Integer row = peptideIds.get(peptide);
+        if (row == null) {
+            return new long[words];
+        }
+        return Arrays.copyOfRange(bits, row * words, row * words + words);
+    }
+
+    /**
+     * Marks peptides as present in a column, such as all peptides of a single psm file.
+     *
+     * @param column column number.
+     * @param sequences peptide sequences.
+     */
+    public final synchronized void addAll(final int column, final Collection<String> sequences) {
+        int word = column >>> 6;
+        long bit = 1L << column;
+        for (String sequence : sequences) {
+            //The row is added first, adding a row can replace the bits array.
+            int row = getRow(sequence);
+            bits[row * words + word] |= bit;
+        }
+    }
+
+    /**
+     * Adds all peptides of another matrix with the same columns, such as the matrix of a single partition.
+     *
+     * @param matrix presence matrix to add.
+     */
+    public final synchronized void addAll(final PeptidePresenceMatrix matrix) {
+        if (!columnSamples.equals(matrix.columnSamples) || !columnDatasets.equals(matrix.columnDatasets)) {
+            throw new IllegalArgumentException("Presence matrices have different columns: " + getColumns() + " and "
+                    + matrix.getColumns());
+        }
+        for (int i = 0; i < matrix.peptides.size(); i++) {
+            int row = getRow(matrix.peptides.get(i));
+            for (int j = 0; j < words; j++) {
+                bits[row * words + j] |= matrix.bits[i * words + j];
+            }
+        }
+    }
+
+    /**
+     * Creates a mask of the columns of a sample and dataset.
+     *
+     * @param sampleName sample name without sample number, such as COPD. (null matches all samples)
+     * @param dataset name of the dataset. (null matches all datasets)
+     * @return column mask.
+     */
+    public final long[] createMask(final String sampleName, final String dataset) {
+        long[] mask = new long[words];
+        for (int i = 0; i < columnSamples.size(); i++) {
+            if ((sampleName == null || getSampleName(columnSamples.get(i)).equals(sampleName))
+                    && (dataset == null || columnDatasets.get(i).equals(dataset))) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Creates a mask of all columns that are not part of the given mask.
+     *
+     * @param mask column mask.
+     * @return inverted column mask.
+     */
+    public final long[] invertMask(final long[] mask) {
+        long[] allColumns = createMask(null, null);
+        long[] inverted = new long[words];
+        for (int i = 0; i < words; i++) {
+            inverted[i] = ~mask[i] & allColumns[i];
+        }
+        return inverted;
+    }
+
+    /**
+     * Counts the peptides that are present in at least one column of each required mask and in none of the excluded columns.
+     * Rows are checked in parallel.
+     * Example: count([COPD Uniprot, Control Uniprot], empty mask) gives the peptides that COPD and Control share in Uniprot.
+     *
+     * @param required masks that each need a present column.
+     * @param excluded mask of columns that may not be present.
+     * @return amount of peptides.
+     */
+    public final synchronized long count(final long[][] required, final long[] excluded) {
+        final long[] rows = bits;
+        return IntStream.range(0, peptides.size()).parallel().filter(row -> matches(rows, row * words, required, excluded)).count();
+    }
+
+    /**
+     * Writes the matrix to a binary file.
+     *
+     * @param path path of the matrix file.
+     * @throws IOException could not write the file.
+     */
+    public final synchronized void write(final String path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(columnSamples.size());
+            for (int i = 0; i < columnSamples.size(); i++) {
+                output.writeUTF(columnSamples.get(i));
+                output.writeUTF(columnDatasets.get(i));
+            }
+            output.writeInt(peptides.size());
+            for (int i = 0; i < peptides.size(); i++) {
+                output.writeUTF(peptides.get(i));
+                for (int j = 0; j < words; j++) {
+                    output.writeLong(bits[i * words + j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a matrix from a binary file.
+     *
+     * @param path path of the matrix file.
+     * @return presence matrix.
+     * @throws IOException could not read the file or the file is not a presence matrix.
+     */
+    public static PeptidePresenceMatrix read(final String path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a presence matrix file: " + path);
+            }
+            int columnCount = input.readInt();
+            ArrayList<String> samples = new ArrayList<>();
+            ArrayList<String> datasets = new ArrayList<>();
+            for (int i = 0; i < columnCount; i++) {
+                samples.add(input.readUTF());
+                datasets.add(input.readUTF());
+            }
+            int peptideCount = input.readInt();
+            PeptidePresenceMatrix matrix = new PeptidePresenceMatrix(new ArrayList<String>(), new ArrayList<String>(), columnCount,
+                    peptideCount);
+            for (int i = 0; i < columnCount; i++) {
+                matrix.addColumn(samples.get(i), datasets.get(i));
+            }
+            for (int i = 0; i < peptideCount; i++) {
+                int row = matrix.getRow(input.readUTF());
+                for (int j = 0; j < matrix.words; j++) {
+                    matrix.bits[row * matrix.words + j] = input.readLong();
+                }
+            }
+            return matrix;
+        }
+    }
+
+    /**
+     * Removes the sample number at the end of a sample folder name, digits inside the sample name are kept.
+     *
+     * @param sample sample folder name. (COPD1, COPD_1 or H2O1)
+     * @return sample name without sample number. (COPD or H2O)
+     */
+    private static String getSampleName(final String sample) {
+        return sample.replaceAll("_?\\d+$", "");
+    }
+
+    /**
+     * Counts the sample folders of all datasets.
+     *
+     * @param sampleFolders sample folder names of each dataset.
+     * @return amount of columns.
+     */
+    private static int countColumns(final ArrayList<ArrayList<String>> sampleFolders) {
+        int columnCount = 0;
+        for (ArrayList<String> samples : sampleFolders) {
+            columnCount += samples.size();
+        }
+        return columnCount;
+    }
+
+    /**
+     * Adds a column to the matrix.
+     *
+     * @param sample sample name. (COPD1)
+     * @param dataset name of the dataset.
+     */
+    private void addColumn(final String sample, final String dataset) {
+        columnIds.put(sample + " " + dataset, columnSamples.size());
+        columnSamples.add(sample);
+        columnDatasets.add(dataset);
+    }
+
+    /**
+     * Provides the row of a peptide and adds the peptide if it is new.
+     *
+     * @param peptide peptide sequence.
+     * @return row number.
+     */
+    private int getRow(final String peptide) {
+        Integer row = peptideIds.get(peptide);
+        if (row == null) {
+            row = peptides.size();
+            peptideIds.put(peptide, row);
+            peptides.add(peptide);
+            if ((row + 1) * words > bits.length) {
+                bits = Arrays.copyOf(bits, bits.length * 2);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Checks a single row against the required and excluded masks.
+     *
+     * @param rows bits of all rows.
+     * @param offset position of the first word of the row.
+     * @param required masks that each need a present column.
+     * @param excluded mask of columns that may not be present.
+     * @return true if the row matches.
+     */
+    private boolean matches(final long[] rows, final int offset, final long[][] required, final long[] excluded) {
+        for (int i = 0; i < words; i++) {
+            if ((rows[offset + i] & excluded[i]) != 0) {
+                return false;
+            }
+        }
+        for (long[] mask : required) {
+            boolean present = false;
+            for (int i = 0; i < words && !present; i++) {
+                present = (rows[offset + i] & mask[i]) != 0;
+            }
+            if (!present) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
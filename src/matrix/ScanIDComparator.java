@@ -1,152 +1,269 @@
-/*
- *  @author Vikthor Nijenhuis
- *  @project peptide fragmentation control *
- */
-package matrix;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import objects.ScanID;
-
-/**
- * Compares Scan ID's between two peptide HashMaps.
- *
- * @author vnijenhuis
- */
-public class ScanIDComparator implements Callable {
-
-    /**
-     * HashMap of ScanID objects.
-     */
-    private final HashMap<String, ArrayList<ScanID>> uniprotScans;
-
-    /**
-     * HashMap of ScanID objects.
-     */
-    private final HashMap<String, ArrayList<ScanID>> sampleScans;
-
-    /**
-     * Name of the dataset.
-     */
-    private final String dataset;
-
-    /**
-     * List of all datasets.
-     */
-    private final ArrayList<String> datasets;
-
-    /**
-     * Multithreaded peptide HashMap matcher.
-     *
-     * @param uniprot first HashMap of peptide objects.
-     * @param collection second HashMap of peptide objects.
-     * @param dataset name of the dataset.
-     * @param datasets list of all datasets.
-     */
-    public ScanIDComparator(final HashMap<String, ArrayList<ScanID>> uniprot, final HashMap<String, ArrayList<ScanID>> collection, final String dataset,
-            final ArrayList<String> datasets) {
-        this.uniprotScans = uniprot;
-        this.sampleScans = collection;
-        this.dataset = dataset;
-        this.datasets = datasets;
-    }
-
-    /**
-     * Call function which matches two HashMaps with eachother.
-     *
-     * @return returns a HashMap with matched Scan IDs.
-     */
-    @Override
-    public final Object call() {
-        int count = 0;
-        //Compare scan IDs for each scan ID in both HashMaps.
-       for (Map.Entry<String, ArrayList<ScanID>> uniprotEntry : uniprotScans.entrySet()) {
-            for (ScanID uniprotScanObject : uniprotEntry.getValue()) {
-                count++;
-                for (Map.Entry<String, ArrayList<ScanID>> sampleEntry: sampleScans.entrySet()) {
-                    //If keys match, grab scan ID data.
-                    if (uniprotEntry.getKey().equals(sampleEntry.getKey())) {
-                        for (ScanID sampleScanObject: sampleEntry.getValue()) {
-                            //If scan IDs match get the score and sequence data for that scan ID.
-                            if (uniprotScanObject.getScanID().equals(sampleScanObject.getScanID())) {
-                                ArrayList<String> matchedSequences = new ArrayList<>();
-                                ArrayList<String> matchedScores = new ArrayList<>();
-                                //Gather uniprot sequences for each scan ID.
-                                ArrayList<String> targetSequences = uniprotScanObject.getUniprotSequences();
-                                //Match dataset names to put scan data in the right variables.
-                                if (dataset.equals(datasets.get(1))) {
-                                    ArrayList<String> sequences = sampleScanObject.getCombinedSequences();
-                                    ArrayList<String> scores = sampleScanObject.getCombinedScores();
-                                    sampleScanObject.getCombinedScores();
-                                    for (int i = 0; i < sequences.size(); i++) {
-                                        //Add matched sequences and scores to a new list.
-                                        if (targetSequences.contains(sequences.get(i))) {
-                                            matchedSequences.add(sequences.get(i));
-                                            matchedScores.add(scores.get(i));
-                                        }
-                                    }
-                                    //Add matched sequences and scores to the uniprotScan object.
-                                    uniprotScanObject.addAllCombinedSequences(matchedSequences);
-                                    uniprotScanObject.addAllCombinedScores(matchedScores);
-                                } else if (dataset.equals(datasets.get(2))) {
-                                    ArrayList<String> sequences = sampleScanObject.getIndividualSequences();
-                                    ArrayList<String> scores = sampleScanObject.getIndividualScores();
-                                    sampleScanObject.getIndividualScores();
-                                    for (int i = 0; i < sequences.size(); i++) {
-                                        //Add matched sequences and scores to a new list.
-                                        if (targetSequences.contains(sequences.get(i))) {
-                                            matchedSequences.add(sequences.get(i));
-                                            matchedScores.add(scores.get(i));
-                                        }
-                                    }
-                                    //Add matched sequences and scores to the uniprotScan object.
-                                    uniprotScanObject.addAllIndividualSequences(matchedSequences);
-                                    uniprotScanObject.addAllIndividualScores(matchedScores);
-                                }
-                            }
-                        }
-                    }
-                }
-                //Report the count for every 5000 scan IDs that were matched.
-                if (count % 5000 == 0) {
-                    System.out.println("Compared " + count + " scan IDs.");
-                }
-            }
-        }
-        System.out.println("Finished comparing " + count + " scan IDs!");
-        //Returns the uniprot ScanID collection.
-        return uniprotScans;
-    }
-
-    /**
-     * Matched two HashMaps with peptide Objects against each other to gather combined data of those HashMaps.
-     * @param collection1 HashMap one.
-     * @param collection2 HashMap two.
-     * @param threads amount of threads allocated to the threadpool.
-     * @param name name of the current dataset.
-     * @param datasets list of all dataset names.
-     * @return Matched HashMap with combined data of both HashMaps.
-     * @throws InterruptedException program was interrupted by another process.
-     * @throws ExecutionException  error encountered in the execution of the program.
-     */
-    public final HashMap<String, ArrayList<ScanID>> matchPeptideScanIDs(final HashMap<String, ArrayList<ScanID>> collection1,
-            final HashMap<String, ArrayList<ScanID>> collection2, final Integer threads, final String name, final ArrayList<String> datasets)
-            throws InterruptedException, ExecutionException {
-        ExecutorService pool = Executors.newFixedThreadPool(threads);
-        //Executes the call function of MultiThreadDatabaseMatcher.
-        Callable<HashMap<String, ArrayList<ScanID>>> callable = new ScanIDComparator(collection1, collection2, name, datasets);
-        //Collects the output from the call function
-        Future<HashMap<String, ArrayList<ScanID>>> future = pool.submit(callable);
-        //Retrieves the returned data from call();
-        HashMap<String, ArrayList<ScanID>> finalScans = future.get();
-        //Shutdown for the threadpool: prevents endless looping.
-        pool.shutdown();
-        return finalScans;
-    }
-}
+/*
+ *  @author Vikthor Nijenhuis
+ *  @project peptide fragmentation control *
+ */
+package matrix;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import objects.PeptideCanonicalizer;
+import objects.ScanID;
+
+/**
+ * Compares Scan ID's between two peptide HashMaps.
+ *
+ * @author vnijenhuis
+ */
+public class ScanIDComparator {
+
+    /**
+     * Amount of uniprot scan IDs that are matched by a single task.
+     */
+    private static final int CHUNK_SIZE = 2048;
+
+    /**
+     * HashMap of ScanID objects.
+     */
+    private final HashMap<String, ArrayList<ScanID>> uniprotScans;
+
+    /**
+     * HashMap of ScanID objects.
+     */
+    private final HashMap<String, ArrayList<ScanID>> sampleScans;
+
+    /**
+     * Name of the dataset.
+     */
+    private final String dataset;
+
+    /**
+     * List of all datasets.
+     */
+    private final ArrayList<String> datasets;
+
+    /**
+     * Matches sequences on their canonical form without modifications. (null matches the sequences as they are)
+     */
+    private PeptideCanonicalizer canonicalizer;
+
+    /**
+     * Multithreaded peptide HashMap matcher.
+     *
+     * @param uniprot first HashMap of peptide objects.
+     * @param collection second HashMap of peptide objects.
+     * @param dataset name of the dataset.
+     * @param datasets list of all datasets.
+     */
+    public ScanIDComparator(final HashMap<String, ArrayList<ScanID>> uniprot, final HashMap<String, ArrayList<ScanID>> collection, final String dataset,
+            final ArrayList<String> datasets) {
+        this.uniprotScans = uniprot;
+        this.sampleScans = collection;
+        this.dataset = dataset;
+        this.datasets = datasets;
+    }
+
+    /**
+     * Matches sequences regardless of their modifications, such as M(+15.99)PEPTIDE and MPEPTIDE.
+     *
+     * @param canonicalizer canonical form table of the sequences. (null matches the sequences as they are)
+     */
+    public final void setCanonicalizer(final PeptideCanonicalizer canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Matches the scan IDs on a work stealing pool. The scan IDs of each file number are divided into chunks and each chunk
+     * is a separate task, idle threads take over the chunks of busy threads.
+     *
+     * @param pool fork/join pool of compute threads.
+     * @return returns a HashMap with matched Scan IDs.
+     */
+    public final HashMap<String, ArrayList<ScanID>> matchScanIDs(final ForkJoinPool pool) {
+        long startTime = System.currentTimeMillis();
+        ArrayList<RecursiveAction> tasks = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<String, ArrayList<ScanID>> uniprotEntry : uniprotScans.entrySet()) {
+            ArrayList<ScanID> sampleList = sampleScans.get(uniprotEntry.getKey());
+            //File numbers without sample scan IDs have nothing to match.
+            if (sampleList != null) {
+                tasks.add(new ChunkMatcher(uniprotEntry.getValue(), createIndex(sampleList), 0, uniprotEntry.getValue().size()));
+            }
+            count += uniprotEntry.getValue().size();
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        System.out.println("Finished comparing " + count + " scan IDs in " + (System.currentTimeMillis() - startTime) + " ms!");
+        return uniprotScans;
+    }
+
+    /**
+     * Adds the sequences and scores of a sample scan ID that are also found in the uniprot scan ID to the uniprot scan ID.
+     *
+     * @param uniprotScanObject uniprot ScanID object.
+     * @param sampleScanObject ScanID object of the dataset with the same scan ID.
+     */
+    public final void matchScan(final ScanID uniprotScanObject, final ScanID sampleScanObject) {
+        ArrayList<String> matchedSequences = new ArrayList<>();
+        ArrayList<String> matchedScores = new ArrayList<>();
+        //Gather uniprot sequences for each scan ID.
+        ArrayList<String> targetSequences = uniprotScanObject.getUniprotSequences();
+        //Match dataset names to put scan data in the right variables.
+        if (dataset.equals(datasets.get(1))) {
+            ArrayList<String> sequences = sampleScanObject.getCombinedSequences();
+            ArrayList<String> scores = sampleScanObject.getCombinedScores();
+            sampleScanObject.getCombinedScores();
+            for (int i = 0; i < sequences.size(); i++) {
+                //Add matched sequences and scores to a new list.
+                if (isTargetSequence(targetSequences, sequences.get(i))) {
+                    matchedSequences.add(sequences.get(i));
+                    matchedScores.add(scores.get(i));
+                }
+            }
+            //Add matched sequences and scores to the uniprotScan object.
+            uniprotScanObject.addAllCombinedSequences(matchedSequences);
+            uniprotScanObject.addAllCombinedScores(matchedScores);
+        } else if (dataset.equals(datasets.get(2))) {
+            ArrayList<String> sequences = sampleScanObject.getIndividualSequences();
+            ArrayList<String> scores = sampleScanObject.getIndividualScores();
+            sampleScanObject.getIndividualScores();
+            for (int i = 0; i < sequences.size(); i++) {
+                //Add matched sequences and scores to a new list.
+                if (isTargetSequence(targetSequences, sequences.get(i))) {
+                    matchedSequences.add(sequences.get(i));
+                    matchedScores.add(scores.get(i));
+                }
+            }
+            //Add matched sequences and scores to the uniprotScan object.
+            uniprotScanObject.addAllIndividualSequences(matchedSequences);
+            uniprotScanObject.addAllIndividualScores(matchedScores);
+        }
+    }
+
+    /**
+     * Checks if a sample sequence is one of the uniprot sequences of the scan ID.
+     *
+     * @param targetSequences uniprot sequences of the scan ID.
+     * @param sequence sample sequence.
+     * @return true if the sequence, or its canonical form if modifications are ignored, is a uniprot sequence.
+     */
+    private boolean isTargetSequence(final ArrayList<String> targetSequences, final String sequence) {
+        if (targetSequences.contains(sequence)) {
+            return true;
+        }
+        if (canonicalizer != null) {
+            int canonicalID = canonicalizer.getCanonicalID(sequence);
+            for (String targetSequence : targetSequences) {
+                if (canonicalizer.getCanonicalID(targetSequence) == canonicalID) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a uniprot scan ID with the sample scan IDs that have the same scan ID.
+     *
+     * @param uniprotScanObject uniprot ScanID object.
+     * @param sampleIndex sample ScanID objects of the same file number with the scan ID as key.
+     */
+    private void matchScanID(final ScanID uniprotScanObject, final HashMap<String, ArrayList<ScanID>> sampleIndex) {
+        ArrayList<ScanID> sampleScanObjects = sampleIndex.get(uniprotScanObject.getScanID());
+        if (sampleScanObjects != null) {
+            for (ScanID sampleScanObject : sampleScanObjects) {
+                matchScan(uniprotScanObject, sampleScanObject);
+            }
+        }
+    }
+
+    /**
+     * Creates an index of the sample scan IDs of a single file number.
+     *
+     * @param sampleList sample ScanID objects of a file number. (null if the file number has no sample scan IDs)
+     * @return HashMap with the scan ID as key and the ScanID objects in their original order as value.
+     */
+    private HashMap<String, ArrayList<ScanID>> createIndex(final ArrayList<ScanID> sampleList) {
+        HashMap<String, ArrayList<ScanID>> sampleIndex = new HashMap<>();
+        if (sampleList != null) {
+            for (ScanID sampleScanObject : sampleList) {
+                ArrayList<ScanID> scanObjects = sampleIndex.get(sampleScanObject.getScanID());
+                if (scanObjects == null) {
+                    scanObjects = new ArrayList<>(1);
+                    sampleIndex.put(sampleScanObject.getScanID(), scanObjects);
+                }
+                scanObjects.add(sampleScanObject);
+            }
+        }
+        return sampleIndex;
+    }
+
+    /**
+     * Matches a chunk of the uniprot scan IDs of a single file number. Large chunks are split in two tasks.
+     */
+    private class ChunkMatcher extends RecursiveAction {
+
+        /**
+         * Version of the serialized form, tasks are never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Uniprot ScanID objects of the file number.
+         */
+        private final ArrayList<ScanID> uniprotList;
+
+        /**
+         * Sample ScanID objects of the file number with the scan ID as key.
+         */
+        private final HashMap<String, ArrayList<ScanID>> sampleIndex;
+
+        /**
+         * First index of the chunk.
+         */
+        private final int start;
+
+        /**
+         * End index of the chunk. (exclusive)
+         */
+        private final int end;
+
+        /**
+         * Creates a task for a chunk of uniprot scan IDs.
+         *
+         * @param uniprotList uniprot ScanID objects of the file number.
+         * @param sampleIndex sample ScanID objects of the file number with the scan ID as key.
+         * @param start first index of the chunk.
+         * @param end end index of the chunk. (exclusive)
+         */
+        ChunkMatcher(final ArrayList<ScanID> uniprotList, final HashMap<String, ArrayList<ScanID>> sampleIndex, final int start,
+                final int end) {
+            this.uniprotList = uniprotList;
+            this.sampleIndex = sampleIndex;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Matches the chunk or splits it in two tasks.
+         */
+        @Override
+        protected void compute() {
+            if (end - start > CHUNK_SIZE) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ChunkMatcher(uniprotList, sampleIndex, start, middle),
+                        new ChunkMatcher(uniprotList, sampleIndex, middle, end));
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                matchScanID(uniprotList.get(i), sampleIndex);
+            }
+        }
+    }
+}
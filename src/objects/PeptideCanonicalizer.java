@@ -0,0 +1,123 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts peptide sequences to their canonical form without modifications, such as M(+15.99)PEPTIDE to MPEPTIDE, so
+ * sequences can be matched regardless of their modifications.
+ * The canonical form is found by a single scan over the characters instead of a regular expression. Each distinct sequence
+ * is converted once: the canonical forms are interned in a table that gives every canonical form a number, so matching
+ * compares two numbers.
+ *
+ * @author vnijenhuis
+ */
+public class PeptideCanonicalizer {
+
+    /**
+     * Canonical form number of each sequence that was seen.
+     */
+    private final ConcurrentHashMap<String, Integer> sequenceIDs;
+
+    /**
+     * Number of each canonical form.
+     */
+    private final ConcurrentHashMap<String, Integer> canonicalIDs;
+
+    /**
+     * Number of the next new canonical form.
+     */
+    private final AtomicInteger nextID;
+
+    /**
+     * Creates an empty canonical form table.
+     */
+    public PeptideCanonicalizer() {
+        this.sequenceIDs = new ConcurrentHashMap<>();
+        this.canonicalIDs = new ConcurrentHashMap<>();
+        this.nextID = new AtomicInteger();
+    }
+
+    /**
+     * Provides the number of the canonical form of a sequence. Sequences with the same residues have the same number.
+     *
+     * @param sequence peptide sequence with or without modifications.
+     * @return number of the canonical form.
+     */
+    public final int getCanonicalID(final String sequence) {
+        Integer id = sequenceIDs.get(sequence);
+        if (id == null) {
+            id = canonicalIDs.computeIfAbsent(canonicalize(sequence), canonical -> nextID.getAndIncrement());
+            sequenceIDs.putIfAbsent(sequence, id);
+        }
+        return id;
+    }
+
+    /**
+     * Checks if two sequences have the same canonical form.
+     *
+     * @param first first peptide sequence.
+     * @param second second peptide sequence.
+     * @return true if both sequences have the same residues.
+     */
+    public final boolean matches(final String first, final String second) {
+        return first.equals(second) || getCanonicalID(first) == getCanonicalID(second);
+    }
+
+    /**
+     * Provides the amount of distinct sequences that were converted.
+     * @return amount of sequences in the table.
+     */
+    public final int getSequenceCount() {
+        return sequenceIDs.size();
+    }
+
+    /**
+     * Provides the amount of distinct canonical forms.
+     * @return amount of canonical forms in the table.
+     */
+    public final int getCanonicalCount() {
+        return canonicalIDs.size();
+    }
+
+    /**
+     * Removes modifications between brackets, such as (+15.99) or [Oxidation], and all other characters that are not
+     * residue letters from a peptide sequence. Residue letters are upper case in the canonical form.
+     *
+     * @param sequence peptide sequence.
+     * @return canonical form, the same String if the sequence only contains upper case letters.
+     */
+    public static String canonicalize(final String sequence) {
+        int length = sequence.length();
+        int i = 0;
+        while (i < length && sequence.charAt(i) >= 'A' && sequence.charAt(i) <= 'Z') {
+            i++;
+        }
+        if (i == length) {
+            return sequence;
+        }
+        char[] residues = new char[length];
+        sequence.getChars(0, i, residues, 0);
+        int count = i;
+        int depth = 0;
+        for (; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth = Math.max(0, depth - 1);
+            } else if (depth == 0) {
+                if (c >= 'A' && c <= 'Z') {
+                    residues[count++] = c;
+                } else if (c >= 'a' && c <= 'z') {
+                    residues[count++] = (char) (c - 'a' + 'A');
+                }
+            }
+        }
+        return new String(residues, 0, count);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package objects;
+
+import java.util.Comparator;
+
+/**
+ * Orders scan IDs (file:scan) on file number and then on the numeric scan number.
+ *
+ * @author vnijenhuis
+ */
+public class ScanIDOrder implements Comparator<String> {
+
+    /**
+     * Compares two scan IDs.
+     *
+     * @param first first scan ID.
+     * @param second second scan ID.
+     * @return negative if the first scan ID comes first, positive if the second scan ID comes first.
+     */
+    @Override
+    public final int compare(final String first, final String second) {
+        int firstSplit = first.lastIndexOf(':');
+        int secondSplit = second.lastIndexOf(':');
+        String firstFile = firstSplit < 0 ? "" : first.substring(0, firstSplit);
+        String secondFile = secondSplit < 0 ? "" : second.substring(0, secondSplit);
+        int order = compareFileNumbers(firstFile, secondFile);
+        if (order != 0) {
+            return order;
+        }
+        return compareNumbers(first.substring(firstSplit + 1), second.substring(secondSplit + 1));
+    }
+
+    /**
+     * Compares two file numbers such as F2 and F10 on their name and then on their number.
+     *
+     * @param first first file number.
+     * @param second second file number.
+     * @return negative if the first file number comes first, positive if the second file number comes first.
+     */
+    public final int compareFileNumbers(final String first, final String second) {
+        int firstDigits = digitStart(first);
+        int secondDigits = digitStart(second);
+        int order = first.substring(0, firstDigits).compareTo(second.substring(0, secondDigits));
+        if (order != 0) {
+            return order;
+        }
+        return compareNumbers(first.substring(firstDigits), second.substring(secondDigits));
+    }
+
+    /**
+     * Compares two numbers that are written as text. Text that is not a number is compared as text after all numbers.
+     *
+     * @param first first number.
+     * @param second second number.
+     * @return negative if the first number comes first, positive if the second number comes first.
+     */
+    private int compareNumbers(final String first, final String second) {
+        long firstNumber = parseNumber(first);
+        long secondNumber = parseNumber(second);
+        if (firstNumber != secondNumber) {
+            return firstNumber < secondNumber ? -1 : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    /**
+     * Finds the index of the trailing digits of a file number.
+     *
+     * @param fileNumber file number.
+     * @return index of the first trailing digit or the length of the file number if there are no trailing digits.
+     */
+    private int digitStart(final String fileNumber) {
+        int index = fileNumber.length();
+        while (index > 0 && Character.isDigit(fileNumber.charAt(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Parses a positive number.
+     *
+     * @param number number as text.
+     * @return number value or Long.MAX_VALUE if the text is not a number.
+     */
+    private long parseNumber(final String number) {
+        if (number.isEmpty() || number.length() > 18) {
+            return Long.MAX_VALUE;
+        }
+        long value = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MAX_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts ScanID objects on file number and then on the numeric scan number, so output files have the same order in
+ * every run. File numbers are sorted once, the scan IDs of each file number are sorted as a primitive key array
+ * (scan number and list position packed into a long) with a parallel sort. Scan numbers that are not plain numbers
+ * fall back to a comparator sort with ScanIDOrder.
+ *
+ * @author vnijenhuis
+ */
+public class ScanIDSorter {
+
+    /**
+     * Largest scan number that fits in the key array.
+     */
+    private static final long MAXIMUM_SCAN = Integer.MAX_VALUE;
+
+    /**
+     * Order of file numbers and scan IDs.
+     */
+    private final ScanIDOrder order;
+
+    /**
+     * Creates a scan ID sorter.
+     */
+    public ScanIDSorter() {
+        this.order = new ScanIDOrder();
+    }
+
+    /**
+     * Sorts the scan IDs of a scan collection. The list of each file number is sorted in place.
+     *
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @return list of all scan IDs sorted on file number and scan number.
+     */
+    public final ArrayList<ScanID> sort(final Map<String, ArrayList<ScanID>> scanFiles) {
+        ArrayList<String> fileNumbers = new ArrayList<>(scanFiles.keySet());
+        Collections.sort(fileNumbers, new Comparator<String>() {
+            @Override
+            public int compare(final String first, final String second) {
+                return order.compareFileNumbers(first, second);
+            }
+        });
+        int size = 0;
+        for (ArrayList<ScanID> scans : scanFiles.values()) {
+            size += scans.size();
+        }
+        ArrayList<ScanID> sortedScans = new ArrayList<>(size);
+        for (String fileNumber : fileNumbers) {
+            ArrayList<ScanID> scans = scanFiles.get(fileNumber);
+            sortFileNumber(scans);
+            sortedScans.addAll(scans);
+        }
+        return sortedScans;
+    }
+
+    /**
+     * Sorts a list of scan IDs of any file numbers.
+     *
+     * @param scans list of scan IDs.
+     * @return new list of the scan IDs sorted on file number and scan number.
+     */
+    public final ArrayList<ScanID> sort(final List<ScanID> scans) {
+        HashMap<String, ArrayList<ScanID>> scanFiles = new HashMap<>();
+        for (ScanID scanObject : scans) {
+            String scanID = scanObject.getScanID();
+            int split = scanID.lastIndexOf(':');
+            String fileNumber = split < 0 ? "" : scanID.substring(0, split);
+            ArrayList<ScanID> fileScans = scanFiles.get(fileNumber);
+            if (fileScans == null) {
+                fileScans = new ArrayList<>();
+                scanFiles.put(fileNumber, fileScans);
+            }
+            fileScans.add(scanObject);
+        }
+        return sort(scanFiles);
+    }
+
+    /**
+     * Sorts the scan IDs of a single file number in place on their scan number.
+     *
+     * @param scans list of scan IDs with the same file number.
+     */
+    public final void sortFileNumber(final ArrayList<ScanID> scans) {
+        long[] keys = new long[scans.size()];
+        for (int i = 0; i < keys.length; i++) {
+            long scan = parseScan(scans.get(i).getScanID());
+            if (scan < 0) {
+                //Scan numbers that are not plain numbers are sorted with the comparator.
+                Collections.sort(scans, new Comparator<ScanID>() {
+                    @Override
+                    public int compare(final ScanID first, final ScanID second) {
+                        return order.compare(first.getScanID(), second.getScanID());
+                    }
+                });
+                return;
+            }
+            //Scan number in the high bits, list position in the low bits.
+            keys[i] = scan << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+        ScanID[] sortedScans = new ScanID[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sortedScans[i] = scans.get((int) (keys[i] & 0xFFFFFFFFL));
+        }
+        for (int i = 0; i < sortedScans.length; i++) {
+            scans.set(i, sortedScans[i]);
+        }
+    }
+
+    /**
+     * Parses the scan number of a scan ID (file:scan).
+     *
+     * @param scanID scan ID.
+     * @return scan number or -1 if the scan number is not a plain number that fits in the key array.
+     */
+    private long parseScan(final String scanID) {
+        int start = scanID.lastIndexOf(':') + 1;
+        int length = scanID.length() - start;
+        //Leading zeros are ordered as text by ScanIDOrder.
+        if (length == 0 || length > 10 || length > 1 && scanID.charAt(start) == '0') {
+            return -1;
+        }
+        long scan = 0;
+        for (int i = start; i < scanID.length(); i++) {
+            char c = scanID.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            scan = scan * 10 + (c - '0');
+        }
+        return scan > MAXIMUM_SCAN ? -1 : scan;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package peptide.scan.collector;
+
+import collections.ScanCollectionCache;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Executes the comparison jobs of a job file one after another in the same process, so the start up of the Java virtual
+ * machine and the loading of classes are paid once for all jobs.
+ * Each line of the job file contains the uniprot, combined and individual folder of a method separated by tabs and
+ * optionally the output folder of the job. Empty lines and lines starting with # are skipped. All other command line
+ * arguments are used for every job.
+ *
+ * @author vnijenhuis
+ */
+public class JobFileRunner {
+
+    /**
+     * Path of the job file.
+     */
+    private final String jobFile;
+
+    /**
+     * Command line arguments that are used for every job.
+     */
+    private final ArrayList<String> arguments;
+
+    /**
+     * Cache of parsed scan collections that is shared between jobs.
+     */
+    private final ScanCollectionCache cache;
+
+    /**
+     * Creates a job file runner.
+     *
+     * @param jobFile path of the job file.
+     * @param arguments command line arguments without the job file that are used for every job.
+     * @param cache cache of parsed scan collections.
+     */
+    public JobFileRunner(final String jobFile, final ArrayList<String> arguments, final ScanCollectionCache cache) {
+        this.jobFile = jobFile;
+        this.arguments = arguments;
+        this.cache = cache;
+    }
+
+    /**
+     * Reads the job file and executes all jobs. A failed job is reported and does not stop the other jobs.
+     *
+     * @param startupMillis milliseconds between the start of the Java virtual machine and the start of the first job.
+     * @throws IOException could not read the job file.
+     * @throws IllegalStateException one or more jobs failed.
+     */
+    public final void run(final long startupMillis) throws IOException {
+        ArrayList<String[]> jobs = readJobs();
+        long runStart = System.currentTimeMillis();
+        long setupMillis = 0;
+        int failed = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            String[] job = jobs.get(i);
+            ArrayList<String> jobArguments = new ArrayList<>(arguments);
+            jobArguments.addAll(Arrays.asList("-uniprot", job[0], "-combined", job[1], "-individual", job[2]));
+            if (job.length > 3) {
+                //The output folder of the job replaces the shared output folder.
+                int index = jobArguments.indexOf("-out");
+                if (index >= 0) {
+                    jobArguments.remove(index + 1);
+                    jobArguments.remove(index);
+                }
+                jobArguments.add("-out");
+                jobArguments.add(job[3]);
+            }
+            System.out.println("Starting job " + (i + 1) + "/" + jobs.size() + ": " + job[0]);
+            long startTime = System.currentTimeMillis();
+            try {
+                PeptideScanCollector collector = new PeptideScanCollector(cache);
+                collector.start(jobArguments.toArray(new String[jobArguments.size()]));
+                setupMillis += collector.getSetupMillis();
+                System.out.println("Finished job " + (i + 1) + "/" + jobs.size() + " in " + (System.currentTimeMillis() - startTime)
+                        + " ms, setup took " + collector.getSetupMillis() + " ms.");
+            } catch (Exception e) {
+                //Failed jobs are reported and do not stop the other jobs.
+                e.printStackTrace();
+                System.out.println("Failed job " + (i + 1) + "/" + jobs.size() + ": " + e);
+                failed++;
+            }
+        }
+        long runMillis = System.currentTimeMillis() - runStart;
+        int finished = jobs.size() - failed;
+        System.out.println("Ran " + jobs.size() + " jobs in " + runMillis + " ms after a start up of " + startupMillis + " ms, "
+                + (jobs.isEmpty() ? 0 : runMillis / jobs.size()) + " ms per job, "
+                + (finished == 0 ? 0 : setupMillis / finished) + " ms setup per job.");
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + jobs.size() + " jobs in " + jobFile + " failed.");
+        }
+    }
+
+    /**
+     * Reads the jobs of the job file.
+     *
+     * @return folders of each job.
+     * @throws IOException could not read the job file.
+     * @throws IllegalArgumentException a line does not contain three or four folders.
+     */
+    private ArrayList<String[]> readJobs() throws IOException {
+        ArrayList<String[]> jobs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(jobFile), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] folders = line.split("\t");
+                if (folders.length < 3 || folders.length > 4) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of " + jobFile
+                            + " should contain the uniprot, combined and individual folder and optionally the output folder"
+                            + " separated by tabs: " + line);
+                }
+                for (int i = 0; i < folders.length; i++) {
+                    folders[i] = folders[i].trim();
+                }
+                jobs.add(folders);
+            }
+        }
+        return jobs;
+    }
+}
@@ -1,271 +1,1411 @@
-/*
- * @author Vikthor Nijenhuis
- * @project peptide fragmentation control
- */
-package peptide.scan.collector;
-
-import collections.ScanIDCollection;
-import java.io.IOException;
-import java.util.ArrayList;
-import org.apache.commons.cli.BasicParser;
-import org.apache.commons.cli.CommandLine;
-import org.apache.commons.cli.CommandLineParser;
-import org.apache.commons.cli.HelpFormatter;
-import org.apache.commons.cli.Option;
-import org.apache.commons.cli.Options;
-import org.apache.commons.cli.ParseException;
-import collection.creator.ScanIDCollectionCreator;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Arrays;
-import java.util.concurrent.ExecutionException;
-import java.util.regex.Pattern;
-import matrix.ScanIDComparator;
-import filewriter.CsvWriter;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import objects.ScanID;
-import tools.SampleSizeGenerator;
-import tools.ValidFileChecker;
-
-/**
- * Gathers peptide fragmentation data such as file number and scan ID.
- *
- * @author vnijenhuis
- */
-public class PeptideScanCollector {
-
-    /**
-     * @param args the command line arguments contains values for each commandline argument.
-     * @throws org.apache.commons.cli.ParseException Error encountered during parsing, parameter(s) missing etc.
-     * @throws java.io.IOException could not find or open file, file is being used by another program.
-     * @throws java.lang.InterruptedException program was interrupted.
-     * @throws java.util.concurrent.ExecutionException error in execution of the program.
-     */
-    public static void main(String[] args) throws ParseException, IOException, InterruptedException, ExecutionException {
-        PeptideScanCollector peptideFragmentation = new PeptideScanCollector();
-        peptideFragmentation.start(args);
-    }
-    /**
-     * Options for the commandline.
-     */
-    private final Options options;
-
-    /**
-     * Checks if given files exist.
-     */
-    private final ValidFileChecker fileChecker;
-
-    /**
-     * Creates a collection of peptide objects.
-     */
-    private final ScanIDCollectionCreator scanCollection;
-
-    /**
-     * Csv file writer.
-     */
-    private final CsvWriter csvWriter;
-
-    /**
-     * list of sample names.
-     */
-    private ArrayList<String> sampleList;
-
-    /**
-     * Amount of threads used.
-     */
-    private Integer threads;
-
-    /**
-     * Matches scan ID's to each other.
-     */
-    private ScanIDComparator scanMatcher;
-    /**
-     * List of individual PSM files.
-     */
-    private ArrayList<String> individualPSMList;
-    /**
-     * List of combined PSM files.
-     */
-    private ArrayList<String> combinedPSMList;
-    /**
-     * List of uniprot PSM files.
-     */
-    private ArrayList<String> uniprotPSMList;
-
-    /**
-     * Private constructor.
-     */
-    private PeptideScanCollector() {
-        //Create new options.
-        options = new Options();
-        //Creates a help parameter.
-        Option help = Option.builder("h")
-                .longOpt("help")
-                .hasArg(false)
-                .desc("Help function to display all commandline options.")
-                .optionalArg(true)
-                .build();
-        options.addOption(help);
-        //Path to the uniprot mRNASeq data.
-        Option uniprot = Option.builder("uniprot")
-                .hasArgs()
-                .desc("Path to the dataset. (/home/name/1D25/Uniprot/).")
-                .build();
-        options.addOption(uniprot);
-        //Path to the combined mRNASeq data.
-        Option combined = Option.builder("combined")
-                .hasArgs()
-                .desc("Path to the combined database folder (/home/name/1D25/CombinedmRNASeq/)")
-                .build();
-        options.addOption(combined);
-        //Path to the individual mRNASeq data.
-        Option individual = Option.builder("individual")
-                .hasArgs()
-                .desc("Path to the combined database folder (/home/name/1D25/IndividualmRNASeq/)")
-                .build();
-        options.addOption(individual);
-        //Psm file parameter for the psm file name.
-        Option psm = Option.builder("psm")
-                .hasArg()
-                .desc("Name of the psm file. Use double quotes if name contains a space. (DB seach psm.csv).")
-                .build();
-        options.addOption(psm);
-        //Path and name of the output file.
-        Option output = Option.builder("out")
-                .hasArg()
-                .desc("Path to write output file to.  (/home/name/Combined/Matrix/).")
-                .build();
-        options.addOption(output);
-        Option thread = Option.builder("threads")
-                .hasArg()
-                .optionalArg(true)
-                .desc("Amount of threads to use for this execution. (DEFAULTL: 2 threads)")
-                .build();
-        options.addOption(thread);
-        //Checks the input files.
-        fileChecker = new ValidFileChecker();
-        //Creates peptide object collections.
-        scanCollection = new ScanIDCollectionCreator();
-        //Writes data to a csv file.
-        csvWriter = new CsvWriter();
-    }
-
-    /**
-     * Starts checking the input and starts the fragmentation control.
-     *
-     * @param args command line arguments.
-     * @throws FileNotFoundException file was not found/does not exist.
-     * @throws IOException couldn't open/find the specified file. Usually
-     * appears when a file is already opened by another program.
-     */
-    private void start(final String[] args) throws ParseException, IOException, InterruptedException, ExecutionException {
-        long startTime = System.currentTimeMillis() / 1000;
-        CommandLineParser parser = new BasicParser();
-        CommandLine cmd = parser.parse(options, args);
-        sampleList = new ArrayList<>();
-        //Help function.
-        if (Arrays.toString(args).toLowerCase().contains("help")) {
-            HelpFormatter formatter = new HelpFormatter();
-            formatter.printHelp("Peptide scan collector", options);
-            System.exit(0);
-        } else {
-            //Allocate command line input to variables.
-            String[] uniprotPSM = cmd.getOptionValues("uniprot");
-            String[] combinedPSM = cmd.getOptionValues("combined");
-            String[] individualPSM = cmd.getOptionValues("individual");
-            String psmFile = cmd.getOptionValue("psm");
-            String output = cmd.getOptionValue("out");
-            //Set the amount of threads to be used.
-            if (cmd.hasOption("threads")) {
-                threads = Integer.parseInt(cmd.getOptionValue("threads"));
-            } else {
-                threads = 2;
-            }
-            //Check file and folder validity.
-            fileChecker.isCsv(psmFile);
-            fileChecker.isDirectory(output);
-            //Control is added first.
-            int sampleSize = 0;
-            //Detect sample size and add all files to a list.
-            for (int i = 0; i < uniprotPSM.length; i++) {
-                uniprotPSMList = new ArrayList<>();
-                combinedPSMList = new ArrayList<>();
-                individualPSMList = new ArrayList<>();
-                //Check if given path is a directory.
-                fileChecker.isDirectory(uniprotPSM[i]);
-                fileChecker.isDirectory(combinedPSM[i]);
-                fileChecker.isDirectory(individualPSM[i]);
-                //Creates a list of peptide psm files from each directory.
-                uniprotPSMList.addAll(fileChecker.checkFileValidity(uniprotPSM[i], psmFile));
-                combinedPSMList.addAll(fileChecker.checkFileValidity(combinedPSM[i], psmFile));
-                individualPSMList.addAll(fileChecker.checkFileValidity(individualPSM[i], psmFile));
-                for (String file: uniprotPSMList) {
-                    String[] folders = file.split("\\\\");
-                    String sample = folders[folders.length-2];
-                    int newSize = (Integer.parseInt(sample.replaceAll("[A-Za-z]*", "")));
-                    if (sampleSize < newSize) {
-                        sampleSize = newSize;
-                    }
-                    sample = sample.replaceAll("\\d", "");
-                    if (!sampleList.contains(sample)) {
-                        sampleList.add(sample);
-                    }
-                }
-                fragmentationControl(output, sampleSize);
-            }
-        }
-        long endTime = System.currentTimeMillis() / 1000;
-        System.out.println("Process took " + (endTime - startTime) + " seconds.");
-    }
-
-    /**
-     * Gathers matching data from all psm files.
-     *
-     * @throws IOException couldn't open/find the specified file. Usually
-     * appears when a file is already opened by another program.
-     */
-    private void fragmentationControl(final String output, final Integer sampleSize)
-            throws IOException, InterruptedException, ExecutionException {
-        //File separator for the given path.
-        String separator = Pattern.quote(File.separator);
-        //Split on the separator to get each folder name.
-        String[] uniprotFolders = uniprotPSMList.get(0).split(separator);
-        String[] combinedFolders = combinedPSMList.get(0).split(separator);
-        String[] individualFolders = individualPSMList.get(0).split(separator);
-        //Use folder name to get dataset and method name.
-        String uniprot = uniprotFolders[uniprotFolders.length - 3];
-        String combined = combinedFolders[combinedFolders.length - 3];
-        String individual = individualFolders[individualFolders.length - 3];
-        String method = uniprotFolders[uniprotFolders.length - 4];
-        //Create a list with all dataset names.
-        ArrayList<String> datasets = new ArrayList<>();
-        datasets.add(uniprot);
-        datasets.add(combined);
-        datasets.add(individual);
-        //Gathers all uniprot scan ids.
-        HashMap<String, ArrayList<ScanID>> uniprotScans = scanCollection.createScanCollection(uniprotPSMList, uniprot, method, datasets, sampleList);
-        //Gathers all combined scn ids.
-        HashMap<String, ArrayList<ScanID>> combinedScans = scanCollection.createScanCollection(combinedPSMList, combined, method, datasets, sampleList);
-        //Gathers all individual scan ids.
-        HashMap<String, ArrayList<ScanID>> individualScans = scanCollection.createScanCollection(individualPSMList, individual, method, datasets, sampleList);
-        //Matches uniprot scan ids with the combined dataset. Matched combined scan id sequences are added to the uniprot dataset.
-        scanMatcher = new ScanIDComparator(uniprotScans, combinedScans, combined, datasets);
-        HashMap<String, ArrayList<ScanID>> matchedScans = scanMatcher.matchPeptideScanIDs(uniprotScans, combinedScans, threads, combined, datasets);
-        //Matches uniprot scan ids with the individual dataset. Matched individual scan id sequences are added to the uniprot dataset.
-        scanMatcher = new ScanIDComparator(matchedScans, individualScans, individual, datasets);
-        HashMap<String, ArrayList<ScanID>> finalScans = scanMatcher.matchPeptideScanIDs(uniprotScans, individualScans, threads, individual, datasets);
-        ScanIDCollection finalScanCollection = new ScanIDCollection();
-        //Add all scan IDs to a final scan collection.
-        for (Map.Entry<String, ArrayList<ScanID>> entry : finalScans.entrySet()) {
-            for (ScanID scanEntry: entry.getValue()) {
-                finalScanCollection.addScanID(scanEntry);
-            }
-        }
-        //Create output file in the given output path
-        String outputPath = output + method + "_scan_data.csv";
-        //Write data to the output path.
-        csvWriter.generateCsvFile(finalScanCollection, outputPath, datasets);
-    }
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package peptide.scan.collector;
+
+import collections.AccessionIndex;
+import collections.CheckpointStore;
+import collections.ScanCollectionCache;
+import collections.ScanIDCollection;
+import collections.ScanSummary;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import collection.creator.IngestionExecutor;
+import collection.creator.PsmFilter;
+import collection.creator.PsmPreflight;
+import collection.creator.PsmSchema;
+import collection.creator.ScanIDCollectionCreator;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import matrix.PeptidePresenceMatrix;
+import matrix.ScanIDComparator;
+import filewriter.BinaryMatrixWriter;
+import diff.ScanDataDiff;
+import fasta.DatabaseProvenanceChecker;
+import filewriter.CsvWriter;
+import filewriter.PresenceMatrixCsvWriter;
+import filewriter.ProvenanceCsvWriter;
+import filewriter.ShardedCsvWriter;
+import filewriter.SummaryCsvWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import objects.PeptideCanonicalizer;
+import objects.ScanID;
+import objects.ScanIDSorter;
+import planner.ExecutionPlan;
+import planner.ExecutionPlanner;
+import tools.SampleSizeGenerator;
+import tools.ValidFileChecker;
+
+/**
+ * Gathers peptide fragmentation data such as file number and scan ID.
+ *
+ * @author vnijenhuis
+ */
+public class PeptideScanCollector {
+
+    /**
+     * @param args the command line arguments contains values for each commandline argument.
+     * @throws org.apache.commons.cli.ParseException Error encountered during parsing, parameter(s) missing etc.
+     * @throws java.io.IOException could not find or open file, file is being used by another program.
+     * @throws java.lang.InterruptedException program was interrupted.
+     * @throws java.util.concurrent.ExecutionException error in execution of the program.
+     */
+    public static void main(String[] args) throws ParseException, IOException, InterruptedException, ExecutionException {
+        PeptideScanCollector peptideFragmentation = new PeptideScanCollector();
+        //Time from the start of the virtual machine until the options are created, includes loading the classes.
+        String archive = getSharedArchive();
+        System.out.println("Started in " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms, class data sharing archive: "
+                + (archive == null ? "none" : archive));
+        peptideFragmentation.start(args);
+    }
+
+    /**
+     * Provides the class data sharing archive of the application classes that was given to the virtual machine.
+     *
+     * @return path of the archive or null if no archive is used.
+     */
+    private static String getSharedArchive() {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                return argument.substring("-XX:SharedArchiveFile=".length());
+            }
+        }
+        return null;
+    }
+    /**
+     * Name of the database provenance csv file after the method name.
+     */
+    private static final String PROVENANCE = "database_provenance";
+
+    /**
+     * Options for the commandline.
+     */
+    private final Options options;
+
+    /**
+     * Checks if given files exist.
+     */
+    private final ValidFileChecker fileChecker;
+
+    /**
+     * Gathers sample names and sizes.
+     */
+    private final SampleSizeGenerator sampleSizeGenerator;
+
+    /**
+     * Creates a collection of peptide objects.
+     */
+    private ScanIDCollectionCreator scanCollection;
+
+    /**
+     * Csv file writer.
+     */
+    private final CsvWriter csvWriter;
+
+    /**
+     * Binary matrix file writer.
+     */
+    private final BinaryMatrixWriter binaryWriter;
+
+    /**
+     * Writes csv shards in parallel.
+     */
+    private final ShardedCsvWriter shardedWriter;
+
+    /**
+     * Amount of file numbers per csv shard. (0 writes a single csv file)
+     */
+    private int partitionsPerShard;
+
+    /**
+     * Amount of file number groups whose rows are appended to the csv output as soon as they are matched. (0 writes all
+     * rows at the end)
+     */
+    private int emitPartitions;
+
+    /**
+     * True while the rows of each file number group or partition are appended to the csv output.
+     */
+    private boolean emitRows;
+
+    /**
+     * Writes and merges the partial csv files of file number partitions. (null if the output is written at once)
+     */
+    private WorkerCoordinator partitionCoordinator;
+
+    /**
+     * Index of the file number partition that is written as partial csv file. (-1 if the output is written at once)
+     */
+    private int partition;
+
+    /**
+     * Stores checkpoints of finished datasets and methods. (null if the run can not be resumed)
+     */
+    private CheckpointStore checkpointStore;
+
+    /**
+     * Folder with the fasta databases of each sample. (null if peptides are not checked against the databases)
+     */
+    private String fastaFolder;
+
+    /**
+     * Checks peptides against the fasta database of each sample. (null until the databases are indexed)
+     */
+    private DatabaseProvenanceChecker provenanceChecker;
+
+    /**
+     * Writes the database provenance csv file.
+     */
+    private final ProvenanceCsvWriter provenanceWriter;
+
+    /**
+     * True if an inverted index from accession to scan IDs is written for each method.
+     */
+    private boolean indexAccessions;
+
+    /**
+     * True if a presence matrix of peptides in each sample and dataset is written for each method.
+     */
+    private boolean buildPresenceMatrix;
+
+    /**
+     * Writes the presence matrix and overlap csv files.
+     */
+    private final PresenceMatrixCsvWriter presenceMatrixWriter;
+
+    /**
+     * True if only the summary of each method is written instead of the scan data.
+     */
+    private boolean summaryOnly;
+
+    /**
+     * Milliseconds from the start of the run until the psm files were found and checked.
+     */
+    private long setupMillis;
+
+    /**
+     * Writes the summary and score histogram csv files.
+     */
+    private final SummaryCsvWriter summaryWriter;
+
+    /**
+     * Sorts the final scan IDs on file number and scan number.
+     */
+    private final ScanIDSorter scanSorter;
+
+    /**
+     * Chooses the strategy and thread count of each method.
+     */
+    private final ExecutionPlanner executionPlanner;
+
+    /**
+     * Output format: csv or binary.
+     */
+    private String outputFormat;
+
+    /**
+     * list of sample names.
+     */
+    private ArrayList<String> sampleList;
+
+    /**
+     * Amount of threads used.
+     */
+    private Integer threads;
+
+    /**
+     * Reads psm files on the I/O threads and parses and matches on the compute threads.
+     */
+    private IngestionExecutor ingestionExecutor;
+
+    /**
+     * Filters peptide spectrum matches on score, decoys and candidate sequences.
+     */
+    private PsmFilter psmFilter;
+
+    /**
+     * Matches scan ID's to each other.
+     */
+    private ScanIDComparator scanMatcher;
+
+    /**
+     * Canonical forms of the sequences if modifications are ignored while matching. (null matches the sequences as they are)
+     */
+    private PeptideCanonicalizer canonicalizer;
+    /**
+     * List of individual PSM files.
+     */
+    private ArrayList<String> individualPSMList;
+    /**
+     * List of combined PSM files.
+     */
+    private ArrayList<String> combinedPSMList;
+    /**
+     * List of uniprot PSM files.
+     */
+    private ArrayList<String> uniprotPSMList;
+
+    /**
+     * Cache of parsed scan collections. (null if scan collections are not cached)
+     */
+    private final ScanCollectionCache cache;
+
+    /**
+     * Private constructor.
+     */
+    private PeptideScanCollector() {
+        this(null);
+    }
+
+    /**
+     * Creates a peptide scan collector that uses the given cache for parsed scan collections.
+     *
+     * @param cache cache of parsed scan collections. (null if scan collections are not cached)
+     */
+    PeptideScanCollector(final ScanCollectionCache cache) {
+        this.cache = cache;
+        //Create new options.
+        options = new Options();
+        //Creates a help parameter.
+        Option help = Option.builder("h")
+                .longOpt("help")
+                .hasArg(false)
+                .desc("Help function to display all commandline options.")
+                .optionalArg(true)
+                .build();
+        options.addOption(help);
+        //Path to the uniprot mRNASeq data.
+        Option uniprot = Option.builder("uniprot")
+                .hasArgs()
+                .desc("Path to the dataset. (/home/name/1D25/Uniprot/).")
+                .build();
+        options.addOption(uniprot);
+        //Path to the combined mRNASeq data.
+        Option combined = Option.builder("combined")
+                .hasArgs()
+                .desc("Path to the combined database folder (/home/name/1D25/CombinedmRNASeq/)")
+                .build();
+        options.addOption(combined);
+        //Path to the individual mRNASeq data.
+        Option individual = Option.builder("individual")
+                .hasArgs()
+                .desc("Path to the combined database folder (/home/name/1D25/IndividualmRNASeq/)")
+                .build();
+        options.addOption(individual);
+        //Psm file parameter for the psm file name.
+        Option psm = Option.builder("psm")
+                .hasArg()
+                .desc("Name of the psm file. Use double quotes if name contains a space. (DB seach psm.csv).")
+                .build();
+        options.addOption(psm);
+        //Path and name of the output file.
+        Option output = Option.builder("out")
+                .hasArg()
+                .desc("Path to write output file to.  (/home/name/Combined/Matrix/).")
+                .build();
+        options.addOption(output);
+        //Format of the output file.
+        Option format = Option.builder("format")
+                .hasArg()
+                .desc("Format of the output file: csv or binary. The binary format has a scan ID index for fast lookups. (DEFAULT: csv)")
+                .build();
+        options.addOption(format);
+        //Writes one csv file per group of file numbers.
+        Option shards = Option.builder("shards")
+                .hasArg()
+                .desc("Write one csv file per given amount of file numbers in parallel, with a manifest of all shards. (example: 1)")
+                .build();
+        options.addOption(shards);
+        //Writes the rows of each group of file numbers as soon as the group is matched.
+        Option emit = Option.builder("emit")
+                .hasArg()
+                .desc("Compare the file numbers in the given amount of groups and append the rows of each group to "
+                        + "the csv output as soon as it is matched. (example: 8)")
+                .build();
+        options.addOption(emit);
+        //Divides the comparison over worker processes.
+        Option workers = Option.builder("workers")
+                .hasArg()
+                .desc("Divide the file numbers over the given amount of worker processes and merge their output. (example: 4)")
+                .build();
+        options.addOption(workers);
+        //Index of the worker partition.
+        Option workerIndex = Option.builder("worker")
+                .hasArg()
+                .desc("Run as worker for the given partition (0 to workers - 1) and write a partial csv file. Use together with -workers.")
+                .build();
+        options.addOption(workerIndex);
+        //Workers are started elsewhere.
+        Option remoteWorkers = Option.builder("remoteworkers")
+                .hasArg(false)
+                .desc("Do not start local workers, wait for workers that write to the same output folder and merge their output.")
+                .build();
+        options.addOption(remoteWorkers);
+        //Only prints the execution plan.
+        Option dryRun = Option.builder("dryrun")
+                .hasArg(false)
+                .desc("Estimate the input size, print the execution plan of each method and write it to execution_plan.txt"
+                        + " in the output folder without running the comparison.")
+                .build();
+        options.addOption(dryRun);
+        //Resumes a stopped run.
+        Option resume = Option.builder("resume")
+                .hasArg(false)
+                .desc("Write checkpoints to the checkpoints folder of the output folder and skip methods and datasets of a previous"
+                        + " run whose psm files and parameters did not change.")
+                .build();
+        options.addOption(resume);
+        //Folder with the sample databases.
+        Option fasta = Option.builder("fasta")
+                .hasArg()
+                .desc("Folder with the fasta database of each sample (COPD1_database.fasta). Writes <method>_database_provenance.csv"
+                        + " with the sample databases that contain each peptide. (/home/name/Databases/)")
+                .build();
+        options.addOption(fasta);
+        //Writes the accession index.
+        Option accessionIndex = Option.builder("accessionindex")
+                .hasArg(false)
+                .desc("Write <method>_accession_index.bin, an index from protein accession to the scan IDs and datasets that"
+                        + " support it. Cached and checkpointed datasets are parsed again to fill the index.")
+                .build();
+        options.addOption(accessionIndex);
+        //Writes the peptide presence matrix.
+        Option presenceMatrix = Option.builder("presencematrix")
+                .hasArg(false)
+                .desc("Write <method>_peptide_presence.csv with the samples and datasets that contain each peptide and"
+                        + " <method>_peptide_overlap.csv with the peptides that samples and datasets share or that are unique to them.")
+                .build();
+        options.addOption(presenceMatrix);
+        //Writes the summary instead of the scan data.
+        Option summary = Option.builder("summary")
+                .hasArg(false)
+                .desc("Write <method>_summary.csv with the scan ID counts of each sample and <method>_score_histogram.csv with the"
+                        + " scores of each dataset instead of the scan data.")
+                .build();
+        options.addOption(summary);
+        Option thread = Option.builder("threads")
+                .hasArg()
+                .optionalArg(true)
+                .desc("Amount of compute threads that parse psm files and match scan IDs on a work stealing pool. "
+                        + "(DEFAULT: chosen by the execution planner)")
+                .build();
+        options.addOption(thread);
+        Option ioThread = Option.builder("iothreads")
+                .hasArg()
+                .desc("Amount of I/O threads: maximum amount of psm files that are read at the same time. (DEFAULT: 4 files)")
+                .build();
+        options.addOption(ioThread);
+        //Minimum -10lgP score of a peptide spectrum match.
+        Option minScore = Option.builder("minscore")
+                .hasArg()
+                .desc("Minimum -10lgP score of a peptide spectrum match. (DEFAULT: no minimum)")
+                .build();
+        options.addOption(minScore);
+        //Maximum amount of candidate sequences per scan ID.
+        Option maxCandidates = Option.builder("maxcandidates")
+                .hasArg()
+                .desc("Maximum amount of candidate sequences per scan ID and dataset. (DEFAULT: all candidates)")
+                .build();
+        options.addOption(maxCandidates);
+        //Keeps the candidate sequences with the highest scores per scan ID.
+        Option topCandidates = Option.builder("topk")
+                .hasArg()
+                .desc("Keep only the candidate sequences with the k highest -10lgP scores per scan ID and dataset. "
+                        + "Overrides -maxcandidates. (DEFAULT: all candidates)")
+                .build();
+        options.addOption(topCandidates);
+        //Keeps decoy accessions.
+        Option keepDecoys = Option.builder("keepdecoys")
+                .hasArg(false)
+                .desc("Keep peptide spectrum matches with decoy accessions.")
+                .build();
+        options.addOption(keepDecoys);
+        //Matches sequences regardless of their modifications.
+        Option ignoreModifications = Option.builder("ignoremods")
+                .hasArg(false)
+                .desc("Match sequences regardless of modifications such as (+15.99), so M(+15.99)PEPTIDE matches MPEPTIDE.")
+                .build();
+        options.addOption(ignoreModifications);
+        //Starts a local server that executes comparison jobs.
+        Option server = Option.builder("server")
+                .hasArg()
+                .desc("Start a local server on the given port that keeps running and executes comparison jobs. (example: 5000)")
+                .build();
+        options.addOption(server);
+        //Maximum memory of the scan collection cache of the server.
+        Option cacheSize = Option.builder("cachesize")
+                .hasArg()
+                .desc("Maximum memory in MB used to cache parsed datasets in server and job file mode. (DEFAULT: half of the maximum heap)")
+                .build();
+        options.addOption(cacheSize);
+        //Sends a comparison job to a local server.
+        Option connect = Option.builder("connect")
+                .hasArg()
+                .desc("Send the other parameters as comparison job to the local server on the given port. (example: 5000)")
+                .build();
+        options.addOption(connect);
+        //Stops the local server.
+        Option shutdown = Option.builder("shutdown")
+                .hasArg(false)
+                .desc("Stop the local server. Use together with -connect.")
+                .build();
+        options.addOption(shutdown);
+        //Compares two scan data files.
+        Option diff = Option.builder("diff")
+                .numberOfArgs(2)
+                .desc("Compare a previous and a new scan data csv file and write the added, removed and changed scans "
+                        + "to the -out folder. (example: old/1D25_scan_data.csv new/1D25_scan_data.csv)")
+                .build();
+        options.addOption(diff);
+        //Runs the jobs of a job file in the same process.
+        Option jobs = Option.builder("jobs")
+                .hasArg()
+                .desc("Run each line of the given tab separated job file as a job in the same process: the uniprot, combined "
+                        + "and individual folder and optionally the output folder. Other parameters are used for every job.")
+                .build();
+        options.addOption(jobs);
+        //Checks the input files.
+        fileChecker = new ValidFileChecker();
+        //Gathers sample names.
+        sampleSizeGenerator = new SampleSizeGenerator();
+        //Writes data to a csv file.
+        csvWriter = new CsvWriter();
+        //Writes data to a binary matrix file.
+        executionPlanner = new ExecutionPlanner();
+        scanSorter = new ScanIDSorter();
+        provenanceWriter = new ProvenanceCsvWriter();
+        presenceMatrixWriter = new PresenceMatrixCsvWriter();
+        summaryWriter = new SummaryCsvWriter();
+        binaryWriter = new BinaryMatrixWriter();
+        //Writes data to csv shards.
+        shardedWriter = new ShardedCsvWriter();
+    }
+
+    /**
+     * Provides the time that the last run needed to find and check the psm files before the first method was collected.
+     *
+     * @return setup time in milliseconds.
+     */
+    final long getSetupMillis() {
+        return setupMillis;
+    }
+
+    /**
+     * Starts checking the input and starts the fragmentation control.
+     *
+     * @param args command line arguments.
+     * @throws FileNotFoundException file was not found/does not exist.
+     * @throws IOException couldn't open/find the specified file. Usually
+     * appears when a file is already opened by another program.
+     */
+    final void start(final String[] args) throws ParseException, IOException, InterruptedException, ExecutionException {
+        long setupStart = System.currentTimeMillis();
+        long startTime = setupStart / 1000;
+        CommandLineParser parser = new BasicParser();
+        CommandLine cmd = parser.parse(options, args);
+        sampleList = new ArrayList<>();
+        //Help function.
+        if (Arrays.toString(args).toLowerCase().contains("help")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("Peptide scan collector", options);
+        } else if (cmd.hasOption("server")) {
+            //Keeps running and executes comparison jobs with a shared scan collection cache.
+            long maximumCacheSize = Runtime.getRuntime().maxMemory() / 2;
+            if (cmd.hasOption("cachesize")) {
+                maximumCacheSize = Long.parseLong(cmd.getOptionValue("cachesize")) * 1024 * 1024;
+            }
+            ScanCollectorServer scanServer = new ScanCollectorServer(Integer.parseInt(cmd.getOptionValue("server")),
+                    new ScanCollectionCache(maximumCacheSize));
+            scanServer.run();
+        } else if (cmd.hasOption("diff")) {
+            //Streams two scan data files of previous runs.
+            String[] scanDataFiles = cmd.getOptionValues("diff");
+            String output = cmd.getOptionValue("out");
+            fileChecker.isCsv(scanDataFiles[0]);
+            fileChecker.isCsv(scanDataFiles[1]);
+            fileChecker.isDirectory(output);
+            String name = new File(scanDataFiles[1]).getName();
+            new ScanDataDiff().compare(scanDataFiles[0], scanDataFiles[1],
+                    output + name.substring(0, name.length() - ".csv".length()) + "_diff.csv");
+        } else if (cmd.hasOption("jobs")) {
+            //Executes all jobs with the other parameters and a shared scan collection cache.
+            ArrayList<String> arguments = new ArrayList<>(Arrays.asList(args));
+            int index = arguments.indexOf("-jobs");
+            arguments.remove(index + 1);
+            arguments.remove(index);
+            long maximumCacheSize = Runtime.getRuntime().maxMemory() / 2;
+            if (cmd.hasOption("cachesize")) {
+                maximumCacheSize = Long.parseLong(cmd.getOptionValue("cachesize")) * 1024 * 1024;
+            }
+            new JobFileRunner(cmd.getOptionValue("jobs"), arguments, new ScanCollectionCache(maximumCacheSize))
+                    .run(ManagementFactory.getRuntimeMXBean().getUptime());
+        } else if (cmd.hasOption("connect")) {
+            //Sends all other parameters to the local server.
+            ArrayList<String> arguments = new ArrayList<>(Arrays.asList(args));
+            int index = arguments.indexOf("-connect");
+            arguments.remove(index + 1);
+            arguments.remove(index);
+            ScanCollectorServer.submit(Integer.parseInt(cmd.getOptionValue("connect")), arguments);
+        } else {
+            //Allocate command line input to variables.
+            String[] uniprotPSM = cmd.getOptionValues("uniprot");
+            String[] combinedPSM = cmd.getOptionValues("combined");
+            String[] individualPSM = cmd.getOptionValues("individual");
+            String psmFile = cmd.getOptionValue("psm");
+            String output = cmd.getOptionValue("out");
+            outputFormat = cmd.getOptionValue("format", "csv").toLowerCase();
+            partitionsPerShard = 0;
+            if (cmd.hasOption("shards")) {
+                partitionsPerShard = Integer.parseInt(cmd.getOptionValue("shards"));
+            }
+            emitPartitions = 0;
+            if (cmd.hasOption("emit")) {
+                emitPartitions = Integer.parseInt(cmd.getOptionValue("emit"));
+            }
+            if (!outputFormat.equals("csv") && !outputFormat.equals("binary")) {
+                throw new IllegalArgumentException("Invalid output format found: " + outputFormat);
+            }
+            //Set the amount of threads to be used. (0 lets the execution planner choose)
+            int requestedThreads = 0;
+            if (cmd.hasOption("threads")) {
+                requestedThreads = Integer.parseInt(cmd.getOptionValue("threads"));
+            }
+            //Set the peptide spectrum match filters.
+            double minimumScore = Double.NEGATIVE_INFINITY;
+            if (cmd.hasOption("minscore")) {
+                minimumScore = Double.parseDouble(cmd.getOptionValue("minscore"));
+            }
+            int maximumCandidates = 0;
+            if (cmd.hasOption("maxcandidates")) {
+                maximumCandidates = Integer.parseInt(cmd.getOptionValue("maxcandidates"));
+            }
+            psmFilter = new PsmFilter(minimumScore, maximumCandidates, !cmd.hasOption("keepdecoys"));
+            if (cmd.hasOption("topk")) {
+                psmFilter = psmFilter.forTopScores(Integer.parseInt(cmd.getOptionValue("topk")));
+            }
+            //Check file and folder validity.
+            fileChecker.isCsv(psmFile);
+            fileChecker.isDirectory(output);
+            fastaFolder = cmd.getOptionValue("fasta");
+            indexAccessions = cmd.hasOption("accessionindex");
+            buildPresenceMatrix = cmd.hasOption("presencematrix");
+            summaryOnly = cmd.hasOption("summary");
+            canonicalizer = null;
+            if (cmd.hasOption("ignoremods")) {
+                canonicalizer = new PeptideCanonicalizer();
+            }
+            if (fastaFolder != null) {
+                fileChecker.isDirectory(fastaFolder);
+            }
+            //Psm files are read on their own threads and parsed on a pool with the given amount of threads.
+            int ioThreads = 4;
+            if (cmd.hasOption("iothreads")) {
+                ioThreads = Integer.parseInt(cmd.getOptionValue("iothreads"));
+            }
+            //Finds the psm files of all methods once and checks all headers before any file is collected.
+            ArrayList<ArrayList<String>> uniprotFiles = new ArrayList<>();
+            ArrayList<ArrayList<String>> combinedFiles = new ArrayList<>();
+            ArrayList<ArrayList<String>> individualFiles = new ArrayList<>();
+            ArrayList<String> allFiles = new ArrayList<>();
+            for (int i = 0; i < uniprotPSM.length; i++) {
+                //Check if given path is a directory.
+                fileChecker.isDirectory(uniprotPSM[i]);
+                fileChecker.isDirectory(combinedPSM[i]);
+                fileChecker.isDirectory(individualPSM[i]);
+                //Creates a list of peptide psm files from each directory.
+                uniprotFiles.add(fileChecker.checkFileValidity(uniprotPSM[i], psmFile));
+                combinedFiles.add(fileChecker.checkFileValidity(combinedPSM[i], psmFile));
+                individualFiles.add(fileChecker.checkFileValidity(individualPSM[i], psmFile));
+                allFiles.addAll(uniprotFiles.get(i));
+                allFiles.addAll(combinedFiles.get(i));
+                allFiles.addAll(individualFiles.get(i));
+            }
+            HashMap<String, PsmSchema> schemas = new PsmPreflight().check(allFiles, ioThreads);
+            setupMillis = System.currentTimeMillis() - setupStart;
+            //Worker processes only handle the file numbers of their own partition.
+            int workerCount = 1;
+            if (cmd.hasOption("workers")) {
+                workerCount = Integer.parseInt(cmd.getOptionValue("workers"));
+            }
+            partition = -1;
+            if (cmd.hasOption("worker")) {
+                partition = Integer.parseInt(cmd.getOptionValue("worker"));
+            }
+            if (workerCount > 1 && !cmd.hasOption("dryrun")) {
+                partitionCoordinator = new WorkerCoordinator(workerCount);
+                if (partition >= 0) {
+                    psmFilter = psmFilter.forPartition(partition, workerCount);
+                } else {
+                    coordinateWorkers(args, uniprotPSM, output, cmd.hasOption("remoteworkers"));
+                    long endTime = System.currentTimeMillis() / 1000;
+                    System.out.println("Process took " + (endTime - startTime) + " seconds.");
+                    return;
+                }
+            }
+            StringBuilder plans = new StringBuilder();
+            //Checkpoints of workers are kept apart because workers share the output folder.
+            checkpointStore = null;
+            if (cmd.hasOption("resume") && !cmd.hasOption("dryrun")) {
+                String checkpointFolder = output + "checkpoints";
+                if (partition >= 0) {
+                    checkpointFolder += File.separator + "worker" + partition;
+                }
+                checkpointStore = new CheckpointStore(checkpointFolder);
+            }
+            //Control is added first.
+            int sampleSize = 0;
+            //Detect sample size and add all files to a list.
+            try {
+                for (int i = 0; i < uniprotPSM.length; i++) {
+                    uniprotPSMList = new ArrayList<>(uniprotFiles.get(i));
+                    combinedPSMList = new ArrayList<>(combinedFiles.get(i));
+                    individualPSMList = new ArrayList<>(individualFiles.get(i));
+                    sampleSize = Math.max(sampleSize, sampleSizeGenerator.addSampleNames(uniprotPSMList, sampleList));
+                    String method = new File(uniprotPSM[i]).getAbsoluteFile().getParentFile().getName();
+                    //Skips methods that were finished by a previous run with the same input.
+                    String methodKey = null;
+                    if (checkpointStore != null) {
+                        ArrayList<String> methodFiles = new ArrayList<>(uniprotPSMList);
+                        methodFiles.addAll(combinedPSMList);
+                        methodFiles.addAll(individualPSMList);
+                        //The sample databases change the provenance file, so their files are part of the key.
+                        if (fastaFolder != null) {
+                            methodFiles.addAll(fileChecker.getFastaDatabaseFiles(fastaFolder, new ArrayList<String>(), sampleList));
+                        }
+                        ArrayList<String> outputPaths = getOutputPaths(output, method);
+                        methodKey = ScanCollectionCache.createKey(method, methodFiles, psmFilter + "|" + sampleList + "|" + outputPaths
+                                + (canonicalizer != null ? "|ignoremods" : ""));
+                        if (checkpointStore.isMethodFinished(method, methodKey) && allFilesExist(outputPaths)) {
+                            System.out.println("Skipping " + method + ", the output of a previous run is up to date: " + outputPaths);
+                            continue;
+                        }
+                    }
+                    //Estimates the input size and chooses the strategy before any psm file is parsed.
+                    ExecutionPlan plan = executionPlanner.createPlan(method, uniprotPSMList, combinedPSMList, individualPSMList,
+                            requestedThreads, ioThreads);
+                    System.out.println(plan);
+                    plans.append(plan.describe());
+                    if (cmd.hasOption("dryrun")) {
+                        System.out.print(plan.describe());
+                        continue;
+                    }
+                    threads = plan.getThreads();
+                    //Sample databases are indexed once, the sample names are known after the first method.
+                    if (fastaFolder != null && provenanceChecker == null) {
+                        openDatabases(output);
+                    }
+                    ingestionExecutor = new IngestionExecutor(ioThreads, threads);
+                    //Creates peptide object collections.
+                    scanCollection = new ScanIDCollectionCreator(ingestionExecutor);
+                    scanCollection.setSchemas(schemas);
+                    try {
+                        executePlan(plan, output, sampleSize);
+                    } finally {
+                        ingestionExecutor.shutdown();
+                        ingestionExecutor = null;
+                    }
+                    if (checkpointStore != null) {
+                        checkpointStore.markMethodFinished(method, methodKey);
+                    }
+                }
+            } finally {
+                //Unmaps the database indexes.
+                if (provenanceChecker != null) {
+                    provenanceChecker.close();
+                    provenanceChecker = null;
+                }
+            }
+            if (cmd.hasOption("dryrun")) {
+                String planPath = output + "execution_plan.txt";
+                try (BufferedWriter planWriter = new BufferedWriter(new FileWriter(planPath))) {
+                    planWriter.append(plans);
+                }
+                System.out.println("Wrote execution plan to " + planPath);
+            }
+        }
+        long endTime = System.currentTimeMillis() / 1000;
+        System.out.println("Process took " + (endTime - startTime) + " seconds.");
+    }
+
+    /**
+     * Gathers matching data from all psm files.
+     *
+     * @throws IOException couldn't open/find the specified file. Usually
+     * appears when a file is already opened by another program.
+     */
+    private void fragmentationControl(final String output, final Integer sampleSize)
+            throws IOException, InterruptedException, ExecutionException {
+        //File separator for the given path.
+        String separator = Pattern.quote(File.separator);
+        //Split on the separator to get each folder name.
+        String[] uniprotFolders = uniprotPSMList.get(0).split(separator);
+        String[] combinedFolders = combinedPSMList.get(0).split(separator);
+        String[] individualFolders = individualPSMList.get(0).split(separator);
+        //Use folder name to get dataset and method name.
+        String uniprot = uniprotFolders[uniprotFolders.length - 3];
+        String combined = combinedFolders[combinedFolders.length - 3];
+        String individual = individualFolders[individualFolders.length - 3];
+        String method = uniprotFolders[uniprotFolders.length - 4];
+        if (partition >= 0) {
+            partitionCoordinator.clearFinished(output, method, partition);
+        }
+        //Create a list with all dataset names.
+        ArrayList<String> datasets = new ArrayList<>();
+        datasets.add(uniprot);
+        datasets.add(combined);
+        datasets.add(individual);
+        //Accessions of all datasets are indexed while the psm files are parsed.
+        AccessionIndex accessionIndex = null;
+        if (indexAccessions) {
+            accessionIndex = new AccessionIndex(datasets);
+        }
+        scanCollection.setAccessionIndex(accessionIndex);
+        //Peptides of all samples and datasets are added to the presence matrix while the psm files are parsed.
+        PeptidePresenceMatrix presenceMatrix = null;
+        if (buildPresenceMatrix) {
+            //Columns are the sample folders that were found, so folders such as COPD_1 and missing sample numbers are handled.
+            ArrayList<ArrayList<String>> sampleFolders = new ArrayList<>();
+            sampleFolders.add(sampleSizeGenerator.getSampleFolders(uniprotPSMList, sampleList));
+            sampleFolders.add(sampleSizeGenerator.getSampleFolders(combinedPSMList, sampleList));
+            sampleFolders.add(sampleSizeGenerator.getSampleFolders(individualPSMList, sampleList));
+            presenceMatrix = new PeptidePresenceMatrix(datasets, sampleFolders);
+        }
+        scanCollection.setPresenceMatrix(presenceMatrix);
+        //Cache keys of each dataset. Combined and individual collections depend on the uniprot scan ids.
+        String uniprotKey = null;
+        String combinedKey = null;
+        String individualKey = null;
+        if (cache != null || checkpointStore != null) {
+            uniprotKey = ScanCollectionCache.createKey(uniprot, uniprotPSMList, psmFilter + "|" + sampleList);
+            combinedKey = ScanCollectionCache.createKey(combined, combinedPSMList, uniprotKey);
+            individualKey = ScanCollectionCache.createKey(individual, individualPSMList, uniprotKey);
+        }
+        ingestionExecutor.resetStatistics();
+        //Emitted rows are matched and appended for each group of file numbers while the psm files are parsed.
+        boolean emitGroups = emitRows && partition < 0;
+        //Sample folders of the uniprot psm files that contain each file number, groups of file numbers only wait for their samples.
+        HashMap<String, HashSet<String>> fileNumberSamples = new HashMap<>();
+        //Gathers all uniprot scan ids.
+        HashMap<String, ArrayList<ScanID>> uniprotScans;
+        if (emitGroups) {
+            uniprotScans = collectSampleScans(uniprotPSMList, uniprot, method, datasets, uniprotKey, fileNumberSamples);
+        } else {
+            uniprotScans = collectScans(uniprotPSMList, uniprot, method, datasets, null, uniprotKey);
+        }
+        //Only uniprot scan ids are enriched, so combined and individual scan ids that are not present in uniprot are skipped.
+        HashSet<String> uniprotScanIDs = scanCollection.createScanFilter(uniprotScans);
+        //Matching adds data to the uniprot scan ids, so the cached uniprot collection is copied.
+        if (cache != null) {
+            uniprotScans = cache.copy(uniprotScans);
+        }
+        HashMap<String, ArrayList<ScanID>> finalScans = uniprotScans;
+        ScanIDCollection emittedScans = null;
+        if (emitGroups) {
+            emittedScans = emitScans(uniprotScans, fileNumberSamples, uniprotScanIDs, datasets, method,
+                    output + method + "_scan_data.csv", combinedKey, individualKey);
+            System.out.println(ingestionExecutor.getStatistics());
+        } else {
+            //Gathers all combined scn ids.
+            HashMap<String, ArrayList<ScanID>> combinedScans = collectScans(combinedPSMList, combined, method, datasets, uniprotScanIDs,
+                    combinedKey);
+            //Gathers all individual scan ids.
+            HashMap<String, ArrayList<ScanID>> individualScans = collectScans(individualPSMList, individual, method, datasets,
+                    uniprotScanIDs, individualKey);
+            System.out.println(ingestionExecutor.getStatistics());
+            finalScans = matchScans(uniprotScans, combinedScans, individualScans, datasets);
+        }
+        if (accessionIndex != null) {
+            accessionIndex.write(getAccessionIndexPath(output, method, partition));
+        }
+        if (presenceMatrix != null) {
+            if (partition >= 0) {
+                presenceMatrix.write(getPresenceMatrixPath(output, method, partition));
+            } else {
+                writePresenceMatrix(presenceMatrix, output, method);
+            }
+        }
+        if (summaryOnly) {
+            //Counts all matched scan IDs in a single pass, so the scan IDs do not have to be sorted.
+            ScanSummary scanSummary = new ScanSummary(datasets);
+            scanSummary.addAll(finalScans);
+            if (partition >= 0) {
+                scanSummary.write(getSummaryPath(output, method, partition));
+            } else {
+                writeSummary(scanSummary, output, method);
+            }
+        }
+        ScanIDCollection finalScanCollection = new ScanIDCollection();
+        if (emitGroups) {
+            //The rows were already appended, the scan IDs are only kept for the provenance file.
+            finalScanCollection = emittedScans;
+        } else if (!summaryOnly || provenanceChecker != null) {
+            //Add all scan IDs to a final scan collection, sorted on file number and scan number.
+            for (ScanID scanEntry : scanSorter.sort(finalScans)) {
+                finalScanCollection.addScanID(scanEntry);
+            }
+        }
+        if (provenanceChecker != null) {
+            //Annotates each peptide with the sample databases that contain it.
+            String provenancePath = output + method + "_" + PROVENANCE + ".csv";
+            if (partition >= 0) {
+                provenancePath = partitionCoordinator.getPartitionPath(output, method, PROVENANCE, partition);
+            }
+            provenanceWriter.generateProvenanceFile(finalScanCollection.getScanIDs(), datasets, provenanceChecker, provenancePath,
+                    threads);
+        }
+        if (partition >= 0) {
+            if (emitRows) {
+                //Appends the rows of this partition to the output file, the first partition starts a new file.
+                csvWriter.appendCsvRows(finalScanCollection, output + method + "_scan_data.csv", datasets, partition == 0);
+            } else if (!summaryOnly) {
+                //Write the partial csv file of this partition to the shared output path.
+                csvWriter.generateCsvFile(finalScanCollection, partitionCoordinator.getPartitionPath(output, method, partition),
+                        datasets);
+            }
+            partitionCoordinator.markFinished(output, method, partition);
+        } else if (emitGroups) {
+            System.out.println("Appended all rows of " + method + " to " + output + method + "_scan_data.csv");
+        } else if (summaryOnly) {
+            System.out.println("Skipped writing the scan data of " + method + ", only the summary is written.");
+        } else if (partitionsPerShard > 0) {
+            //Write data to csv shards in the given output path.
+            shardedWriter.generateShards(finalScans, output + method + "_scan_data", datasets, partitionsPerShard, threads);
+        } else if (outputFormat.equals("binary")) {
+            //Write data to an indexed binary file in the given output path.
+            binaryWriter.generateBinaryFile(finalScanCollection, output + method + "_scan_data.bin", method, datasets);
+        } else {
+            //Create output file in the given output path
+            String outputPath = output + method + "_scan_data.csv";
+            //Write data to the output path.
+            csvWriter.generateCsvFile(finalScanCollection, outputPath, datasets);
+        }
+    }
+
+    /**
+     * Provides the path of the output file of a method for the chosen output format.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @return path of the csv file, binary file, shard manifest, summary or partial output file of a worker.
+     */
+    private String getOutputPath(final String output, final String method) {
+        if (summaryOnly) {
+            if (partition >= 0) {
+                return getSummaryPath(output, method, partition);
+            }
+            return output + method + "_summary.csv";
+        } else if (partition >= 0) {
+            return partitionCoordinator.getPartitionPath(output, method, partition);
+        } else if (partitionsPerShard > 0) {
+            return output + method + "_scan_data_manifest.csv";
+        } else if (outputFormat.equals("binary")) {
+            return output + method + "_scan_data.bin";
+        }
+        return output + method + "_scan_data.csv";
+    }
+
+    /**
+     * Matches the uniprot scan IDs with the combined and individual datasets.
+     *
+     * @param uniprotScans uniprot scan IDs of each file number.
+     * @param combinedScans combined scan IDs of each file number.
+     * @param individualScans individual scan IDs of each file number.
+     * @param datasets list of all datasets.
+     * @return uniprot scan IDs with the matched sequences of the combined and individual datasets.
+     */
+    private HashMap<String, ArrayList<ScanID>> matchScans(final HashMap<String, ArrayList<ScanID>> uniprotScans,
+            final HashMap<String, ArrayList<ScanID>> combinedScans, final HashMap<String, ArrayList<ScanID>> individualScans,
+            final ArrayList<String> datasets) {
+        //Matches uniprot scan ids with the combined dataset. Matched combined scan id sequences are added to the uniprot dataset.
+        scanMatcher = new ScanIDComparator(uniprotScans, combinedScans, datasets.get(1), datasets);
+        scanMatcher.setCanonicalizer(canonicalizer);
+        HashMap<String, ArrayList<ScanID>> matchedScans = scanMatcher.matchScanIDs(ingestionExecutor.getComputePool());
+        //Matches uniprot scan ids with the individual dataset. Matched individual scan id sequences are added to the uniprot dataset.
+        scanMatcher = new ScanIDComparator(matchedScans, individualScans, datasets.get(2), datasets);
+        scanMatcher.setCanonicalizer(canonicalizer);
+        return scanMatcher.matchScanIDs(ingestionExecutor.getComputePool());
+    }
+
+    /**
+     * Parses the combined and individual psm files once and appends the rows of each group of file numbers as soon as the
+     * files of its samples are parsed, so the first rows are written while the other files are still parsed.
+     * Datasets that are cached or checkpointed are not parsed again.
+     *
+     * @param uniprotScans uniprot scan IDs of each file number.
+     * @param fileNumberSamples sample folders of the uniprot psm files that contain each file number. (empty if not known)
+     * @param uniprotScanIDs scan IDs of the uniprot dataset, rows of other scan IDs are skipped.
+     * @param datasets list of all datasets.
+     * @param method name of the ms method.
+     * @param outputPath path of the csv file.
+     * @param combinedKey cache and checkpoint key of the combined scan collection.
+     * @param individualKey cache and checkpoint key of the individual scan collection.
+     * @return all sorted scan IDs if the provenance file is written, otherwise an empty collection.
+     * @throws IOException could not read a psm file or write the csv file.
+     */
+    private ScanIDCollection emitScans(final HashMap<String, ArrayList<ScanID>> uniprotScans,
+            final HashMap<String, HashSet<String>> fileNumberSamples, final HashSet<String> uniprotScanIDs,
+            final ArrayList<String> datasets, final String method, final String outputPath, final String combinedKey,
+            final String individualKey) throws IOException {
+        ScanGroupEmitter groupEmitter = new ScanGroupEmitter(uniprotScans, fileNumberSamples, emitPartitions, datasets,
+                scanCollection, psmFilter, canonicalizer, ingestionExecutor.getComputePool(), csvWriter, outputPath,
+                provenanceChecker != null);
+        ArrayList<ArrayList<String>> psmLists = new ArrayList<>();
+        psmLists.add(combinedPSMList);
+        psmLists.add(individualPSMList);
+        String[] keys = {combinedKey, individualKey};
+        ArrayList<String> parsedDatasets = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            String dataset = datasets.get(i + 1);
+            HashMap<String, ArrayList<ScanID>> storedScans = getStoredScans(dataset, method, keys[i]);
+            if (storedScans != null) {
+                groupEmitter.addStoredScans(storedScans, dataset);
+            } else {
+                groupEmitter.addFiles(psmLists.get(i), dataset);
+                parsedDatasets.add(dataset);
+            }
+        }
+        scanCollection.parseScanFiles(groupEmitter.getFiles(), groupEmitter.getFileDatasets(), method, datasets, sampleList,
+                uniprotScanIDs, psmFilter, groupEmitter);
+        ScanIDCollection emittedScans = groupEmitter.finish();
+        for (int i = 0; i < keys.length; i++) {
+            String dataset = datasets.get(i + 1);
+            if (parsedDatasets.contains(dataset)) {
+                storeScans(dataset, method, keys[i], groupEmitter.getScans(dataset));
+            }
+        }
+        return emittedScans;
+    }
+
+    /**
+     * Provides the paths of all output files of a method: the scan data output and the files of -fasta, -accessionindex
+     * and -presencematrix.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @return paths of the output files.
+     */
+    private ArrayList<String> getOutputPaths(final String output, final String method) {
+        ArrayList<String> outputPaths = new ArrayList<>();
+        outputPaths.add(getOutputPath(output, method));
+        if (fastaFolder != null) {
+            if (partition >= 0) {
+                outputPaths.add(partitionCoordinator.getPartitionPath(output, method, PROVENANCE, partition));
+            } else {
+                outputPaths.add(output + method + "_" + PROVENANCE + ".csv");
+            }
+        }
+        if (indexAccessions) {
+            outputPaths.add(getAccessionIndexPath(output, method, partition));
+        }
+        if (buildPresenceMatrix) {
+            if (partition >= 0) {
+                outputPaths.add(getPresenceMatrixPath(output, method, partition));
+            } else {
+                outputPaths.add(output + method + "_peptide_presence.csv");
+                outputPaths.add(output + method + "_peptide_overlap.csv");
+            }
+        }
+        return outputPaths;
+    }
+
+    /**
+     * Checks if all files exist.
+     *
+     * @param paths paths of the files.
+     * @return true if every file exists.
+     */
+    private static boolean allFilesExist(final ArrayList<String> paths) {
+        for (String path : paths) {
+            if (!new File(path).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a method with the strategy of the execution plan.
+     * Partitioned plans compare the file number partitions one after another and merge the partial csv files. With -emit the
+     * psm files are parsed once and the rows of each group of file numbers are appended to the csv output as soon as the
+     * group is matched. Partitioned plans that emit rows append the rows of each partition instead, sorted within the
+     * partition.
+     *
+     * @param plan execution plan of the method.
+     * @param output path of the output folder.
+     * @param sampleSize amount of samples.
+     * @throws IOException could not read a psm file or write the output.
+     * @throws InterruptedException interrupted while comparing the scan IDs.
+     * @throws ExecutionException error while comparing the scan IDs.
+     */
+    private void executePlan(final ExecutionPlan plan, final String output, final Integer sampleSize)
+            throws IOException, InterruptedException, ExecutionException {
+        int partitions = plan.getPartitions();
+        boolean singleCsv = partition < 0 && partitionsPerShard <= 0 && outputFormat.equals("csv");
+        boolean emit = emitPartitions > 0;
+        if (emit && (!singleCsv || summaryOnly)) {
+            System.out.println("Warning: only the csv output of a single process can be emitted per partition, " + plan.getMethod()
+                    + " is written at the end.");
+            emit = false;
+        }
+        if (partitions <= 1 && emit) {
+            emitRows = true;
+            try {
+                fragmentationControl(output, sampleSize);
+            } finally {
+                emitRows = false;
+            }
+        } else if (partitions <= 1) {
+            fragmentationControl(output, sampleSize);
+        } else if (!singleCsv) {
+            System.out.println("Warning: only csv output of a single process can be partitioned, " + plan.getMethod()
+                    + " is compared in memory.");
+            fragmentationControl(output, sampleSize);
+        } else {
+            PsmFilter methodFilter = psmFilter;
+            partitionCoordinator = new WorkerCoordinator(partitions);
+            //Partitions that are needed for the heap read the psm files again, so their rows are appended per partition.
+            emitRows = emit;
+            try {
+                for (partition = 0; partition < partitions; partition++) {
+                    System.out.println("Comparing partition " + (partition + 1) + " of " + partitions + "...");
+                    psmFilter = methodFilter.forPartition(partition, partitions);
+                    fragmentationControl(output, sampleSize);
+                }
+            } finally {
+                psmFilter = methodFilter;
+                partition = -1;
+                emitRows = false;
+            }
+            if (fastaFolder != null) {
+                partitionCoordinator.mergePartitions(output, plan.getMethod(), PROVENANCE);
+            }
+            if (indexAccessions) {
+                mergeAccessionIndexes(output, plan.getMethod(), partitions);
+            }
+            if (buildPresenceMatrix) {
+                mergePresenceMatrices(output, plan.getMethod(), partitions);
+            }
+            if (emit) {
+                //The rows of all partitions were already appended to the output file.
+                partitionCoordinator.clearFinished(output, plan.getMethod());
+            } else {
+                mergeMethodOutput(output, plan.getMethod(), partitions);
+            }
+            partitionCoordinator = null;
+        }
+    }
+
+    /**
+     * Starts the worker processes (or waits for remote workers) and merges the output of all workers for each method.
+     *
+     * @param args command line arguments.
+     * @param uniprotPSM paths to the uniprot datasets of each method.
+     * @param output path of the shared output folder.
+     * @param remoteWorkers true if workers are started elsewhere.
+     * @throws IOException could not start a worker or merge the worker output.
+     * @throws InterruptedException interrupted while waiting for the workers.
+     */
+    private void coordinateWorkers(final String[] args, final String[] uniprotPSM, final String output, final boolean remoteWorkers)
+            throws IOException, InterruptedException {
+        if (!remoteWorkers) {
+            partitionCoordinator.runLocalWorkers(args);
+        }
+        for (String uniprotPath : uniprotPSM) {
+            //The method folder contains the dataset folders.
+            String method = new File(uniprotPath).getAbsoluteFile().getParentFile().getName();
+            if (remoteWorkers) {
+                partitionCoordinator.waitForWorkers(output, method);
+            }
+            if (fastaFolder != null) {
+                partitionCoordinator.mergePartitions(output, method, PROVENANCE);
+            }
+            if (indexAccessions) {
+                mergeAccessionIndexes(output, method, partitionCoordinator.getWorkers());
+            }
+            if (buildPresenceMatrix) {
+                mergePresenceMatrices(output, method, partitionCoordinator.getWorkers());
+            }
+            mergeMethodOutput(output, method, partitionCoordinator.getWorkers());
+        }
+    }
+
+    /**
+     * Provides the path of the accession index of a method or of a single partition.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param indexPartition index of the partition. (-1 for the index of the complete method)
+     * @return path of the accession index file.
+     */
+    private String getAccessionIndexPath(final String output, final String method, final int indexPartition) {
+        if (indexPartition >= 0) {
+            return output + method + "_accession_index.part" + indexPartition + ".bin";
+        }
+        return output + method + "_accession_index.bin";
+    }
+
+    /**
+     * Merges the accession indexes of all partitions of a method and removes the partial indexes.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param partitions amount of partitions.
+     * @throws IOException could not read a partial index or write the merged index.
+     */
+    private void mergeAccessionIndexes(final String output, final String method, final int partitions) throws IOException {
+        AccessionIndex mergedIndex = null;
+        for (int i = 0; i < partitions; i++) {
+            AccessionIndex partitionIndex = AccessionIndex.read(getAccessionIndexPath(output, method, i));
+            if (mergedIndex == null) {
+                mergedIndex = new AccessionIndex(partitionIndex.getDatasets());
+            }
+            mergedIndex.addAll(partitionIndex);
+        }
+        mergedIndex.write(getAccessionIndexPath(output, method, -1));
+        for (int i = 0; i < partitions; i++) {
+            new File(getAccessionIndexPath(output, method, i)).delete();
+        }
+    }
+
+    /**
+     * Merges the partial scan data csv files or the partial summaries of all partitions of a method.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param partitions amount of partitions.
+     * @throws IOException could not read a partial file or write the merged file.
+     */
+    private void mergeMethodOutput(final String output, final String method, final int partitions) throws IOException {
+        if (!summaryOnly) {
+            partitionCoordinator.mergePartitions(output, method);
+            return;
+        }
+        ScanSummary mergedSummary = ScanSummary.read(getSummaryPath(output, method, 0));
+        for (int i = 1; i < partitions; i++) {
+            mergedSummary.addAll(ScanSummary.read(getSummaryPath(output, method, i)));
+        }
+        writeSummary(mergedSummary, output, method);
+        for (int i = 0; i < partitions; i++) {
+            new File(getSummaryPath(output, method, i)).delete();
+        }
+        partitionCoordinator.clearFinished(output, method);
+    }
+
+    /**
+     * Provides the path of the partial summary of a partition.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param summaryPartition index of the partition.
+     * @return path of the partial summary file.
+     */
+    private String getSummaryPath(final String output, final String method, final int summaryPartition) {
+        return output + method + "_summary.part" + summaryPartition + ".bin";
+    }
+
+    /**
+     * Writes the summary and score histogram of a method.
+     *
+     * @param scanSummary summary of the method.
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @throws IOException could not write the csv files.
+     */
+    private void writeSummary(final ScanSummary scanSummary, final String output, final String method) throws IOException {
+        summaryWriter.generateSummaryFile(scanSummary, output + method + "_summary.csv");
+        summaryWriter.generateHistogramFile(scanSummary, output + method + "_score_histogram.csv");
+    }
+
+    /**
+     * Provides the path of the partial presence matrix of a partition.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param matrixPartition index of the partition.
+     * @return path of the partial presence matrix file.
+     */
+    private String getPresenceMatrixPath(final String output, final String method, final int matrixPartition) {
+        return output + method + "_peptide_presence.part" + matrixPartition + ".bin";
+    }
+
+    /**
+     * Writes the presence matrix and the overlap counts of a method.
+     *
+     * @param presenceMatrix presence matrix of the method.
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @throws IOException could not write the csv files.
+     */
+    private void writePresenceMatrix(final PeptidePresenceMatrix presenceMatrix, final String output, final String method)
+            throws IOException {
+        presenceMatrixWriter.generateMatrixFile(presenceMatrix, output + method + "_peptide_presence.csv");
+        presenceMatrixWriter.generateOverlapFile(presenceMatrix, output + method + "_peptide_overlap.csv");
+    }
+
+    /**
+     * Merges the presence matrices of all partitions of a method, writes the merged matrix and removes the partial matrices.
+     * Partitions contain different file numbers, so a peptide is present in a column if any partition contains it.
+     *
+     * @param output path of the output folder.
+     * @param method name of the ms method.
+     * @param partitions amount of partitions.
+     * @throws IOException could not read a partial matrix or write the merged matrix.
+     */
+    private void mergePresenceMatrices(final String output, final String method, final int partitions) throws IOException {
+        PeptidePresenceMatrix mergedMatrix = PeptidePresenceMatrix.read(getPresenceMatrixPath(output, method, 0));
+        for (int i = 1; i < partitions; i++) {
+            mergedMatrix.addAll(PeptidePresenceMatrix.read(getPresenceMatrixPath(output, method, i)));
+        }
+        writePresenceMatrix(mergedMatrix, output, method);
+        for (int i = 0; i < partitions; i++) {
+            new File(getPresenceMatrixPath(output, method, i)).delete();
+        }
+    }
+
+    /**
+     * Finds the fasta database of each sample and opens or builds their indexes in the output folder.
+     *
+     * @param output path of the output folder.
+     * @throws IOException could not read a database or write an index.
+     */
+    private void openDatabases(final String output) throws IOException {
+        ArrayList<String> databaseFiles = fileChecker.getFastaDatabaseFiles(fastaFolder, new ArrayList<String>(), sampleList);
+        if (databaseFiles.isEmpty()) {
+            throw new FileNotFoundException("No sample databases found in " + fastaFolder);
+        }
+        for (String databaseFile : databaseFiles) {
+            fileChecker.isFasta(databaseFile);
+        }
+        provenanceChecker = new DatabaseProvenanceChecker(databaseFiles, sampleList, output + "fasta_index");
+    }
+
+    /**
+     * Gathers scan ids from the cache, from a checkpoint or from the psm files if the scan ids are not cached.
+     *
+     * @param peptideFiles a list of peptide data files.
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param datasets list of all dataset names.
+     * @param scanFilter set of scan IDs to keep. (null keeps all scan IDs)
+     * @param key cache and checkpoint key of the scan collection. (null if scan collections are not cached)
+     * @return HashMap with the file number as key and a list of ScanIDs as value.
+     * @throws IOException could not find/open the specified file.
+     */
+    private HashMap<String, ArrayList<ScanID>> collectScans(final ArrayList<String> peptideFiles, final String dataset,
+            final String method, final ArrayList<String> datasets, final HashSet<String> scanFilter, final String key) throws IOException {
+        HashMap<String, ArrayList<ScanID>> scanFiles = getStoredScans(dataset, method, key);
+        if (scanFiles == null) {
+            scanFiles = scanCollection.createScanCollection(peptideFiles, dataset, method, datasets, sampleList, scanFilter, psmFilter);
+            storeScans(dataset, method, key, scanFiles);
+        }
+        return scanFiles;
+    }
+
+    /**
+     * Gathers scan ids like collectScans and records the sample folders of the psm files that contain each file number.
+     * Scan ids from the cache or from a checkpoint have no psm files, then no sample folders are recorded.
+     *
+     * @param peptideFiles a list of peptide data files.
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param datasets list of all dataset names.
+     * @param key cache and checkpoint key of the scan collection. (null if scan collections are not cached)
+     * @param fileNumberSamples receives the sample folders of each file number.
+     * @return HashMap with the file number as key and a list of ScanIDs as value.
+     * @throws IOException could not find/open the specified file.
+     */
+    private HashMap<String, ArrayList<ScanID>> collectSampleScans(final ArrayList<String> peptideFiles, final String dataset,
+            final String method, final ArrayList<String> datasets, final String key,
+            final HashMap<String, HashSet<String>> fileNumberSamples) throws IOException {
+        HashMap<String, ArrayList<ScanID>> scanFiles = getStoredScans(dataset, method, key);
+        if (scanFiles == null) {
+            ArrayList<HashMap<String, ArrayList<ScanID>>> fileScanList = new ArrayList<>();
+            ArrayList<String> fileDatasets = new ArrayList<>();
+            for (String peptideFile : peptideFiles) {
+                fileScanList.add(null);
+                fileDatasets.add(dataset);
+            }
+            scanCollection.parseScanFiles(peptideFiles, fileDatasets, method, datasets, sampleList, null, psmFilter,
+                    (index, fileScans) -> fileScanList.set(index, fileScans));
+            for (int i = 0; i < peptideFiles.size(); i++) {
+                String sample = new File(peptideFiles.get(i)).getAbsoluteFile().getParentFile().getName();
+                for (String fileNumber : fileScanList.get(i).keySet()) {
+                    if (!fileNumberSamples.containsKey(fileNumber)) {
+                        fileNumberSamples.put(fileNumber, new HashSet<String>());
+                    }
+                    fileNumberSamples.get(fileNumber).add(sample);
+                }
+            }
+            scanFiles = scanCollection.mergeScanCollections(fileScanList, dataset, datasets, psmFilter);
+            storeScans(dataset, method, key, scanFiles);
+        }
+        return scanFiles;
+    }
+
+    /**
+     * Provides the scan ids of a dataset from the cache or from a checkpoint.
+     *
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param key cache and checkpoint key of the scan collection. (null if scan collections are not cached)
+     * @return HashMap with the file number as key and a list of ScanIDs as value, or null if the psm files have to be parsed.
+     * @throws IOException could not read the checkpoint.
+     */
+    private HashMap<String, ArrayList<ScanID>> getStoredScans(final String dataset, final String method, final String key)
+            throws IOException {
+        //Accessions and peptide presence are only collected while psm files are parsed.
+        if (indexAccessions || buildPresenceMatrix) {
+            return null;
+        }
+        if (cache != null) {
+            HashMap<String, ArrayList<ScanID>> cachedScans = cache.get(key);
+            if (cachedScans != null) {
+                System.out.println("Using cached scan ids of " + method + " " + dataset + ".");
+                return cachedScans;
+            }
+        }
+        HashMap<String, ArrayList<ScanID>> scanFiles = null;
+        if (checkpointStore != null) {
+            scanFiles = checkpointStore.loadScans(method, dataset, key);
+        }
+        if (scanFiles != null && cache != null) {
+            cache.put(key, scanFiles);
+        }
+        return scanFiles;
+    }
+
+    /**
+     * Keeps the parsed scan ids of a dataset in the cache and in a checkpoint.
+     *
+     * @param dataset name of the dataset.
+     * @param method name of the ms method that was used.
+     * @param key cache and checkpoint key of the scan collection. (null if scan collections are not cached)
+     * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+     * @throws IOException could not write the checkpoint.
+     */
+    private void storeScans(final String dataset, final String method, final String key,
+            final HashMap<String, ArrayList<ScanID>> scanFiles) throws IOException {
+        if (checkpointStore != null) {
+            checkpointStore.saveScans(method, dataset, key, scanFiles);
+        }
+        if (cache != null) {
+            cache.put(key, scanFiles);
+        }
+    }
 }
\ No newline at end of file
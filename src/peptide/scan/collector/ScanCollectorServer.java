@@ -0,0 +1,113 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package peptide.scan.collector;
+
+import collections.ScanCollectionCache;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Local server that keeps running and executes comparison jobs that are sent to a local socket.
+ * Each job is sent as one command line argument per line and ends with an empty line.
+ * Parsed scan collections are kept in a cache so repeated jobs over the same datasets skip parsing.
+ *
+ * @author vnijenhuis
+ */
+public class ScanCollectorServer {
+
+    /**
+     * Job that stops the server.
+     */
+    public static final String SHUTDOWN = "-shutdown";
+
+    /**
+     * Port of the local socket.
+     */
+    private final int port;
+
+    /**
+     * Cache of parsed scan collections that is shared between jobs.
+     */
+    private final ScanCollectionCache cache;
+
+    /**
+     * Creates a local comparison server.
+     *
+     * @param port port of the local socket.
+     * @param cache cache of parsed scan collections.
+     */
+    public ScanCollectorServer(final int port, final ScanCollectionCache cache) {
+        this.port = port;
+        this.cache = cache;
+    }
+
+    /**
+     * Accepts and executes comparison jobs until a shutdown job is received. Jobs are executed one at a time.
+     *
+     * @throws IOException could not open the local socket.
+     */
+    public final void run() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Waiting for comparison jobs on port " + port + "...");
+            while (true) {
+                try (Socket socket = server.accept();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+                    ArrayList<String> arguments = new ArrayList<>();
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        arguments.add(line);
+                    }
+                    if (arguments.contains(SHUTDOWN)) {
+                        writer.println("Server stopped.");
+                        System.out.println("Received shutdown job, server stopped.");
+                        return;
+                    }
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        PeptideScanCollector collector = new PeptideScanCollector(cache);
+                        collector.start(arguments.toArray(new String[arguments.size()]));
+                        writer.println("Finished job in " + (System.currentTimeMillis() - startTime) / 1000 + " seconds.");
+                    } catch (Exception e) {
+                        //Failed jobs are reported to the client and do not stop the server.
+                        e.printStackTrace();
+                        writer.println("Failed job: " + e);
+                    }
+                    System.out.println("Cached scan collections use " + cache.getSize() / (1024 * 1024) + " MB.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a comparison job to a running server and prints the reply.
+     *
+     * @param port port of the local socket.
+     * @param arguments command line arguments of the job.
+     * @throws IOException could not connect to the server.
+     */
+    public static void submit(final int port, final ArrayList<String> arguments) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String argument : arguments) {
+                writer.println(argument);
+            }
+            writer.println();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+    }
+}
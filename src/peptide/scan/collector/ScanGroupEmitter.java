@@ -0,0 +1,434 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package peptide.scan.collector;
+
+import collection.creator.IngestionExecutor;
+import collection.creator.PsmFilter;
+import collection.creator.ScanIDCollectionCreator;
+import collections.ScanIDCollection;
+import filewriter.CsvWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import matrix.ScanIDComparator;
+import objects.PeptideCanonicalizer;
+import objects.ScanID;
+import objects.ScanIDOrder;
+import objects.ScanIDSorter;
+
+/**
+ * Appends the rows of groups of file numbers to the csv output while the combined and individual psm files are parsed.
+ * The sorted file numbers of the uniprot scan IDs are divided into consecutive groups with about the same amount of scan
+ * IDs. The samples of a group are the samples whose uniprot psm files have its file numbers. A group is matched, sorted and
+ * appended as soon as the combined and individual files of its samples are parsed and the groups before it are appended,
+ * so the csv file has the same order as a csv file that is written at once. The files of each dataset are merged in their
+ * original order, so the candidate sequences have the same order as well.
+ * A file of another sample that contains rows of an appended file number stops the run, instead of writing incomplete rows.
+ *
+ * @author vnijenhuis
+ */
+public class ScanGroupEmitter implements IngestionExecutor.FileListener<HashMap<String, ArrayList<ScanID>>> {
+
+    /**
+     * Uniprot scan IDs of each file number.
+     */
+    private final HashMap<String, ArrayList<ScanID>> uniprotScans;
+
+    /**
+     * List of all datasets.
+     */
+    private final ArrayList<String> datasets;
+
+    /**
+     * Merges the scan IDs of the files of a dataset.
+     */
+    private final ScanIDCollectionCreator scanCollection;
+
+    /**
+     * Candidate filter that is used while merging the scan IDs of the files.
+     */
+    private final PsmFilter psmFilter;
+
+    /**
+     * Matches sequences on their canonical form. (null matches the sequences as they are)
+     */
+    private final PeptideCanonicalizer canonicalizer;
+
+    /**
+     * Pool of compute threads that match the scan IDs.
+     */
+    private final ForkJoinPool computePool;
+
+    /**
+     * Appends the rows of each group.
+     */
+    private final CsvWriter csvWriter;
+
+    /**
+     * Sorts the scan IDs of each group.
+     */
+    private final ScanIDSorter scanSorter;
+
+    /**
+     * Path of the csv file.
+     */
+    private final String outputPath;
+
+    /**
+     * True if all appended scan IDs are kept, such as for the provenance file.
+     */
+    private final boolean keepScans;
+
+    /**
+     * Sorted file numbers of each group.
+     */
+    private final ArrayList<ArrayList<String>> groupFileNumbers;
+
+    /**
+     * Samples of the file numbers of each group.
+     */
+    private final ArrayList<HashSet<String>> groupSamples;
+
+    /**
+     * Group of each file number.
+     */
+    private final HashMap<String, Integer> fileNumberGroups;
+
+    /**
+     * Samples of all uniprot psm files.
+     */
+    private final HashSet<String> samples;
+
+    /**
+     * Psm files and stored collections in the order of their dataset, each dataset in the order of its files.
+     */
+    private final ArrayList<String> sources;
+
+    /**
+     * Dataset of each source.
+     */
+    private final ArrayList<String> sourceDatasets;
+
+    /**
+     * Sample folder of each source. (null for a stored collection)
+     */
+    private final ArrayList<String> sourceSamples;
+
+    /**
+     * Scan IDs of each source that are not appended yet. (null until the file is parsed)
+     */
+    private final ArrayList<HashMap<String, ArrayList<ScanID>>> sourceScans;
+
+    /**
+     * Sources in the order in which the files are parsed.
+     */
+    private final ArrayList<Integer> parseOrder;
+
+    /**
+     * Merged combined and individual scan IDs of the appended groups, for the cache and the checkpoints.
+     */
+    private final HashMap<String, HashMap<String, ArrayList<ScanID>>> mergedScans;
+
+    /**
+     * All appended scan IDs in the order of the csv file. (empty unless the scan IDs are kept)
+     */
+    private final ScanIDCollection appendedScans;
+
+    /**
+     * Index of the next group that is appended.
+     */
+    private int nextGroup;
+
+    /**
+     * Divides the file numbers of the uniprot scan IDs into groups.
+     *
+     * @param uniprotScans uniprot scan IDs of each file number.
+     * @param fileNumberSamples sample folders of the uniprot psm files that contain each file number. (empty if they are
+     * not known, then each group waits for all psm files)
+     * @param groups amount of groups.
+     * @param datasets list of all datasets.
+     * @param scanCollection merges the scan IDs of the files of a dataset.
+     * @param psmFilter candidate filter that is used while merging the scan IDs of the files.
+     * @param canonicalizer canonical form table of the sequences. (null matches the sequences as they are)
+     * @param computePool pool of compute threads that match the scan IDs.
+     * @param csvWriter appends the rows of each group.
+     * @param outputPath path of the csv file.
+     * @param keepScans true to keep all appended scan IDs.
+     */
+    public ScanGroupEmitter(final HashMap<String, ArrayList<ScanID>> uniprotScans,
+            final HashMap<String, HashSet<String>> fileNumberSamples, final int groups,
+            final ArrayList<String> datasets, final ScanIDCollectionCreator scanCollection, final PsmFilter psmFilter,
+            final PeptideCanonicalizer canonicalizer, final ForkJoinPool computePool, final CsvWriter csvWriter,
+            final String outputPath, final boolean keepScans) {
+        this.uniprotScans = uniprotScans;
+        this.datasets = datasets;
+        this.scanCollection = scanCollection;
+        this.psmFilter = psmFilter;
+        this.canonicalizer = canonicalizer;
+        this.computePool = computePool;
+        this.csvWriter = csvWriter;
+        this.scanSorter = new ScanIDSorter();
+        this.outputPath = outputPath;
+        this.keepScans = keepScans;
+        this.groupFileNumbers = new ArrayList<>();
+        this.groupSamples = new ArrayList<>();
+        this.fileNumberGroups = new HashMap<>();
+        this.samples = new HashSet<>();
+        this.sources = new ArrayList<>();
+        this.sourceDatasets = new ArrayList<>();
+        this.sourceSamples = new ArrayList<>();
+        this.sourceScans = new ArrayList<>();
+        this.parseOrder = new ArrayList<>();
+        this.mergedScans = new HashMap<>();
+        this.appendedScans = new ScanIDCollection();
+        ScanIDOrder order = new ScanIDOrder();
+        ArrayList<String> fileNumbers = new ArrayList<>(uniprotScans.keySet());
+        Collections.sort(fileNumbers, (first, second) -> order.compareFileNumbers(first, second));
+        long total = 0;
+        for (ArrayList<ScanID> scans : uniprotScans.values()) {
+            total += scans.size();
+        }
+        //The first group always writes the header, even without file numbers.
+        int groupCount = Math.max(1, Math.min(groups, fileNumbers.size()));
+        int index = 0;
+        long count = 0;
+        for (int group = 0; group < groupCount; group++) {
+            //A group ends at the first file number that reaches its share of the scan IDs, the last group takes the rest.
+            long limit = total * (group + 1) / groupCount;
+            ArrayList<String> groupNumbers = new ArrayList<>();
+            HashSet<String> numberSamples = new HashSet<>();
+            while (index < fileNumbers.size() && (count < limit || group == groupCount - 1)) {
+                String fileNumber = fileNumbers.get(index++);
+                groupNumbers.add(fileNumber);
+                fileNumberGroups.put(fileNumber, group);
+                if (fileNumberSamples.containsKey(fileNumber)) {
+                    numberSamples.addAll(fileNumberSamples.get(fileNumber));
+                }
+                count += uniprotScans.get(fileNumber).size();
+            }
+            groupFileNumbers.add(groupNumbers);
+            groupSamples.add(numberSamples);
+            samples.addAll(numberSamples);
+        }
+    }
+
+    /**
+     * Adds the psm files of a dataset that are parsed.
+     *
+     * @param peptideFiles psm files inside sample folders.
+     * @param dataset name of the dataset.
+     */
+    public final void addFiles(final ArrayList<String> peptideFiles, final String dataset) {
+        for (String file : peptideFiles) {
+            addSource(file, dataset, new File(file).getAbsoluteFile().getParentFile().getName(), null);
+        }
+    }
+
+    /**
+     * Adds the scan IDs of a dataset that were already collected, such as from the cache or a checkpoint.
+     *
+     * @param scanFiles scan IDs of each file number.
+     * @param dataset name of the dataset.
+     */
+    public final void addStoredScans(final HashMap<String, ArrayList<ScanID>> scanFiles, final String dataset) {
+        addSource(dataset, dataset, null, scanFiles);
+    }
+
+    /**
+     * Provides the psm files in the order in which they are parsed: the files of the samples of the first groups first.
+     * The index of each file in this list is the index of the file in fileParsed.
+     *
+     * @return psm files that are not parsed yet.
+     */
+    public final ArrayList<String> getFiles() {
+        parseOrder.clear();
+        for (int group = 0; group <= groupSamples.size(); group++) {
+            for (int source = 0; source < sources.size(); source++) {
+                if (sourceScans.get(source) == null && !parseOrder.contains(source)
+                        && (group == groupSamples.size() || isRequired(source, group))) {
+                    parseOrder.add(source);
+                }
+            }
+        }
+        ArrayList<String> files = new ArrayList<>();
+        for (int source : parseOrder) {
+            files.add(sources.get(source));
+        }
+        return files;
+    }
+
+    /**
+     * Provides the dataset of each psm file of getFiles.
+     *
+     * @return dataset names in the order of getFiles.
+     */
+    public final ArrayList<String> getFileDatasets() {
+        ArrayList<String> fileDatasets = new ArrayList<>();
+        for (int source : parseOrder) {
+            fileDatasets.add(sourceDatasets.get(source));
+        }
+        return fileDatasets;
+    }
+
+    /**
+     * Keeps the scan IDs of a parsed file and appends the groups that are complete.
+     *
+     * @param index index of the file in getFiles.
+     * @param result scan IDs of the file.
+     * @throws IOException could not append the rows of a group.
+     * @throws IllegalStateException the file contains rows of a file number that was already appended.
+     */
+    @Override
+    public final void fileParsed(final int index, final HashMap<String, ArrayList<ScanID>> result) throws IOException {
+        int source = parseOrder.get(index);
+        for (String fileNumber : result.keySet()) {
+            Integer group = fileNumberGroups.get(fileNumber);
+            if (group != null && group < nextGroup) {
+                throw new IllegalStateException("Rows of file number " + fileNumber + " were found in " + sources.get(source)
+                        + " after the file number was appended. The uniprot psm file of its sample folder has no rows of this "
+                        + "file number, run without -emit.");
+            }
+        }
+        sourceScans.set(source, result);
+        appendCompleteGroups();
+    }
+
+    /**
+     * Appends the groups that are left after all files are parsed.
+     *
+     * @return all appended scan IDs in the order of the csv file, or an empty collection if the scan IDs are not kept.
+     * @throws IOException could not append the rows of a group.
+     */
+    public final ScanIDCollection finish() throws IOException {
+        appendCompleteGroups();
+        if (nextGroup < groupFileNumbers.size()) {
+            throw new IllegalStateException("Not all psm files were parsed before the last group of file numbers.");
+        }
+        return appendedScans;
+    }
+
+    /**
+     * Provides the merged scan IDs of a dataset after all groups are appended.
+     *
+     * @param dataset name of the combined or individual dataset.
+     * @return scan IDs of each file number.
+     */
+    public final HashMap<String, ArrayList<ScanID>> getScans(final String dataset) {
+        HashMap<String, ArrayList<ScanID>> scanFiles = mergedScans.get(dataset);
+        return scanFiles == null ? new HashMap<String, ArrayList<ScanID>>() : scanFiles;
+    }
+
+    /**
+     * Adds a psm file or stored collection.
+     *
+     * @param source path of the psm file or name of the stored dataset.
+     * @param dataset name of the dataset.
+     * @param sample sample folder of the psm file. (null for a stored collection)
+     * @param scanFiles stored scan IDs. (null for a psm file that is not parsed yet)
+     */
+    private void addSource(final String source, final String dataset, final String sample,
+            final HashMap<String, ArrayList<ScanID>> scanFiles) {
+        sources.add(source);
+        sourceDatasets.add(dataset);
+        sourceSamples.add(sample);
+        sourceScans.add(scanFiles);
+        if (!mergedScans.containsKey(dataset)) {
+            mergedScans.put(dataset, new HashMap<String, ArrayList<ScanID>>());
+        }
+    }
+
+    /**
+     * Checks if a group waits for a psm file. Files of samples without a uniprot psm file can have any file number, so every
+     * group waits for them.
+     *
+     * @param source index of the psm file.
+     * @param group index of the group.
+     * @return true if the group can not be appended before the file is parsed.
+     */
+    private boolean isRequired(final int source, final int group) {
+        String sample = sourceSamples.get(source);
+        return !samples.contains(sample) || groupSamples.get(group).contains(sample);
+    }
+
+    /**
+     * Appends the next groups as long as all their psm files are parsed.
+     *
+     * @throws IOException could not append the rows of a group.
+     */
+    private void appendCompleteGroups() throws IOException {
+        while (nextGroup < groupFileNumbers.size() && isComplete(nextGroup)) {
+            appendGroup(nextGroup);
+            nextGroup++;
+        }
+    }
+
+    /**
+     * Checks if all psm files of a group are parsed.
+     *
+     * @param group index of the group.
+     * @return true if the group can be appended.
+     */
+    private boolean isComplete(final int group) {
+        for (int source = 0; source < sources.size(); source++) {
+            if (sourceScans.get(source) == null && isRequired(source, group)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges, matches, sorts and appends the scan IDs of a group of file numbers.
+     *
+     * @param group index of the group.
+     * @throws IOException could not append the rows.
+     */
+    private void appendGroup(final int group) throws IOException {
+        System.out.println("Comparing file number group " + (group + 1) + " of " + groupFileNumbers.size() + "...");
+        HashMap<String, ArrayList<ScanID>> matchedScans = new HashMap<>();
+        for (String fileNumber : groupFileNumbers.get(group)) {
+            matchedScans.put(fileNumber, uniprotScans.get(fileNumber));
+        }
+        for (String dataset : datasets.subList(1, datasets.size())) {
+            //Takes the scan IDs of the group from each source in the original order of the files.
+            ArrayList<HashMap<String, ArrayList<ScanID>>> groupSources = new ArrayList<>();
+            for (int source = 0; source < sources.size(); source++) {
+                HashMap<String, ArrayList<ScanID>> scanFiles = sourceScans.get(source);
+                if (sourceDatasets.get(source).equals(dataset) && scanFiles != null) {
+                    HashMap<String, ArrayList<ScanID>> groupScans = new HashMap<>();
+                    for (String fileNumber : groupFileNumbers.get(group)) {
+                        ArrayList<ScanID> scans = scanFiles.remove(fileNumber);
+                        if (scans != null) {
+                            groupScans.put(fileNumber, scans);
+                        }
+                    }
+                    groupSources.add(groupScans);
+                }
+            }
+            HashMap<String, ArrayList<ScanID>> groupScans = scanCollection.mergeScanCollections(groupSources, dataset, datasets,
+                    psmFilter);
+            if (mergedScans.containsKey(dataset)) {
+                mergedScans.get(dataset).putAll(groupScans);
+            }
+            //Matched sequences of the dataset are added to the uniprot scan IDs.
+            ScanIDComparator scanMatcher = new ScanIDComparator(matchedScans, groupScans, dataset, datasets);
+            scanMatcher.setCanonicalizer(canonicalizer);
+            matchedScans = scanMatcher.matchScanIDs(computePool);
+        }
+        ScanIDCollection groupScanIDs = new ScanIDCollection();
+        for (ScanID scanEntry : scanSorter.sort(matchedScans)) {
+            groupScanIDs.addScanID(scanEntry);
+            if (keepScans) {
+                appendedScans.addScanID(scanEntry);
+            }
+        }
+        //The first group starts a new file.
+        csvWriter.appendCsvRows(groupScanIDs, outputPath, datasets, group == 0);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package peptide.scan.collector;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import objects.ScanIDOrder;
+
+/**
+ * Divides a comparison over multiple worker processes and merges their output.
+ * Each worker only parses and matches the file numbers of its own partition and writes a partial csv file to the shared
+ * output folder. A marker file is written when a partial csv file is finished. The coordinator waits for the markers of all
+ * workers and merges the sorted partial csv files into a single sorted csv file per method.
+ *
+ * @author vnijenhuis
+ */
+public class WorkerCoordinator {
+
+    /**
+     * Time between checks for finished workers in milliseconds.
+     */
+    private static final long POLL_INTERVAL = 2000;
+
+    /**
+     * Name of the scan data csv file after the method name.
+     */
+    private static final String SCAN_DATA = "scan_data";
+
+    /**
+     * Amount of worker processes.
+     */
+    private final int workers;
+
+    /**
+     * Order of the scan IDs in the partial csv files.
+     */
+    private final ScanIDOrder scanOrder;
+
+    /**
+     * Creates a worker coordinator.
+     *
+     * @param workers amount of worker processes.
+     */
+    public WorkerCoordinator(final int workers) {
+        this.workers = workers;
+        this.scanOrder = new ScanIDOrder();
+    }
+
+    /**
+     * Provides the amount of worker processes.
+     * @return amount of workers.
+     */
+    public final int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Starts a local worker process for each partition and waits until all workers are finished.
+     * Workers receive the same command line arguments together with the -worker parameter.
+     *
+     * @param args command line arguments of the coordinator.
+     * @throws IOException could not start a worker or a worker failed.
+     * @throws InterruptedException interrupted while waiting for the workers.
+     */
+    public final void runLocalWorkers(final String[] args) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ArrayList<Process> processes = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            ArrayList<String> command = new ArrayList<>();
+            command.add(java);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(PeptideScanCollector.class.getName());
+            command.addAll(Arrays.asList(args));
+            command.add("-worker");
+            command.add(Integer.toString(worker));
+            System.out.println("Starting worker " + worker + " of " + workers + "...");
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        for (int worker = 0; worker < processes.size(); worker++) {
+            int exitCode = processes.get(worker).waitFor();
+            if (exitCode != 0) {
+                for (Process process : processes) {
+                    process.destroy();
+                }
+                throw new IOException("Worker " + worker + " failed with exit code " + exitCode + ".");
+            }
+        }
+    }
+
+    /**
+     * Waits until all workers have finished the partial csv file of a method, for workers that are started elsewhere.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @throws InterruptedException interrupted while waiting for the workers.
+     */
+    public final void waitForWorkers(final String output, final String method) throws InterruptedException {
+        System.out.println("Waiting for " + workers + " workers to finish " + method + "...");
+        for (int worker = 0; worker < workers; worker++) {
+            while (!new File(getMarkerPath(output, method, worker)).isFile()) {
+                Thread.sleep(POLL_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Merges the partial scan data csv files of all workers and removes the partial files and marker files.
+     * Other partial files of the method should be merged first, because they can only be merged while the markers exist.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @return path of the merged csv file.
+     * @throws IOException could not read a partial csv file or write the merged file.
+     */
+    public final String mergePartitions(final String output, final String method) throws IOException {
+        String outputPath = mergePartitions(output, method, SCAN_DATA);
+        clearFinished(output, method);
+        return outputPath;
+    }
+
+    /**
+     * Merges the sorted partial csv files of all workers into a single sorted csv file and removes the partial files.
+     * Each partial file is sorted on scan ID in the first column, so the files are merged with a k-way merge.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param name name of the csv file after the method name. (scan_data)
+     * @return path of the merged csv file.
+     * @throws IOException could not read a partial csv file or write the merged file.
+     */
+    public final String mergePartitions(final String output, final String method, final String name) throws IOException {
+        String outputPath = output + method + "_" + name + ".csv";
+        System.out.println("Merging worker output to " + outputPath);
+        ArrayList<BufferedReader> readers = new ArrayList<>();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), 1 << 16)) {
+            PriorityQueue<PartitionLine> lines = new PriorityQueue<>(workers, new Comparator<PartitionLine>() {
+                @Override
+                public int compare(final PartitionLine first, final PartitionLine second) {
+                    int order = scanOrder.compare(first.scanID, second.scanID);
+                    return order != 0 ? order : Integer.compare(first.worker, second.worker);
+                }
+            });
+            for (int worker = 0; worker < workers; worker++) {
+                String partitionPath = getPartitionPath(output, method, name, worker);
+                if (!new File(getMarkerPath(output, method, worker)).isFile()) {
+                    throw new IOException("Worker " + worker + " did not finish " + partitionPath);
+                }
+                BufferedReader reader = new BufferedReader(new FileReader(partitionPath), 1 << 16);
+                readers.add(reader);
+                String header = reader.readLine();
+                //Only the header of the first partition is kept.
+                if (worker == 0 && header != null) {
+                    writer.append(header).append('\n');
+                }
+                addLine(lines, reader, worker);
+            }
+            while (!lines.isEmpty()) {
+                PartitionLine line = lines.poll();
+                writer.append(line.line).append('\n');
+                addLine(lines, readers.get(line.worker), line.worker);
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+        for (int worker = 0; worker < workers; worker++) {
+            new File(getPartitionPath(output, method, name, worker)).delete();
+        }
+        System.out.println("Finished writing to " + outputPath);
+        return outputPath;
+    }
+
+    /**
+     * Reads the next line of a partial csv file and adds it to the merge queue.
+     *
+     * @param lines merge queue.
+     * @param reader reader of the partial csv file.
+     * @param worker index of the worker.
+     * @throws IOException could not read the partial csv file.
+     */
+    private void addLine(final PriorityQueue<PartitionLine> lines, final BufferedReader reader, final int worker)
+            throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            int split = line.indexOf(',');
+            lines.add(new PartitionLine(line, split < 0 ? line : line.substring(0, split), worker));
+        }
+    }
+
+    /**
+     * Writes the marker file that tells the coordinator that a partial csv file is finished.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param worker index of the worker.
+     * @throws IOException could not write the marker file.
+     */
+    public final void markFinished(final String output, final String method, final int worker) throws IOException {
+        new File(getMarkerPath(output, method, worker)).createNewFile();
+    }
+
+    /**
+     * Removes the marker file of a previous run, so the coordinator does not merge an unfinished partial csv file.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param worker index of the worker.
+     */
+    public final void clearFinished(final String output, final String method, final int worker) {
+        new File(getMarkerPath(output, method, worker)).delete();
+    }
+
+    /**
+     * Removes the marker files of all workers once the output of a method is merged.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     */
+    public final void clearFinished(final String output, final String method) {
+        for (int worker = 0; worker < workers; worker++) {
+            clearFinished(output, method, worker);
+        }
+    }
+
+    /**
+     * Provides the path of the partial scan data csv file of a worker.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param worker index of the worker.
+     * @return path of the partial csv file.
+     */
+    public final String getPartitionPath(final String output, final String method, final int worker) {
+        return getPartitionPath(output, method, SCAN_DATA, worker);
+    }
+
+    /**
+     * Provides the path of a partial csv file of a worker.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param name name of the csv file after the method name. (scan_data)
+     * @param worker index of the worker.
+     * @return path of the partial csv file.
+     */
+    public final String getPartitionPath(final String output, final String method, final String name, final int worker) {
+        return output + method + "_" + name + ".part" + worker + ".csv";
+    }
+
+    /**
+     * Provides the path of the marker file of a worker.
+     *
+     * @param output shared output folder.
+     * @param method name of the ms method.
+     * @param worker index of the worker.
+     * @return path of the marker file.
+     */
+    private String getMarkerPath(final String output, final String method, final int worker) {
+        return output + method + "_scan_data.part" + worker + ".done";
+    }
+
+    /**
+     * Line of a partial csv file in the merge queue.
+     */
+    private static class PartitionLine {
+
+        /**
+         * Complete csv line.
+         */
+        private final String line;
+
+        /**
+         * Scan ID of the line.
+         */
+        private final String scanID;
+
+        /**
+         * Index of the worker that wrote the line.
+         */
+        private final int worker;
+
+        /**
+         * Creates a line of a partial csv file.
+         *
+         * @param line complete csv line.
+         * @param scanID scan ID of the line.
+         * @param worker index of the worker that wrote the line.
+         */
+        PartitionLine(final String line, final String scanID, final int worker) {
+            this.line = line;
+            this.scanID = scanID;
+            this.worker = worker;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package planner;
+
+/**
+ * Creates an ExecutionPlan object with the strategy, thread count and estimates of a single method.
+ *
+ * @author vnijenhuis
+ */
+public class ExecutionPlan {
+
+    /**
+     * Strategies to compare the datasets of a method.
+     */
+    public enum Strategy {
+        /**
+         * All datasets are kept in memory and matched in a single pass.
+         */
+        IN_MEMORY,
+        /**
+         * File numbers are divided over partitions that are compared one after another.
+         */
+        PARTITIONED,
+        /**
+         * Partitions are compared one after another with a single thread, so only one psm file is collected at a time.
+         */
+        STREAMING
+    }
+
+    /**
+     * Name of the mass spectrometry method.
+     */
+    private final String method;
+
+    /**
+     * Chosen strategy.
+     */
+    private final Strategy strategy;
+
+    /**
+     * Amount of parsing and matching threads.
+     */
+    private final int threads;
+
+    /**
+     * Amount of file number partitions.
+     */
+    private final int partitions;
+
+    /**
+     * Estimated amount of psm rows of all datasets.
+     */
+    private final long estimatedRows;
+
+    /**
+     * Estimated amount of distinct uniprot scan IDs.
+     */
+    private final long estimatedScans;
+
+    /**
+     * Estimated amount of distinct file numbers.
+     */
+    private final int estimatedFileNumbers;
+
+    /**
+     * Estimated heap usage in bytes for each scan ID.
+     */
+    private final long bytesPerScan;
+
+    /**
+     * Estimated heap usage in bytes of the complete comparison.
+     */
+    private final long estimatedBytes;
+
+    /**
+     * Heap in bytes that is available for the comparison.
+     */
+    private final long availableBytes;
+
+    /**
+     * Amount of available processors.
+     */
+    private final int cores;
+
+    /**
+     * Creates an ExecutionPlan object.
+     *
+     * @param method name of the ms method.
+     * @param strategy chosen strategy.
+     * @param threads amount of parsing and matching threads.
+     * @param partitions amount of file number partitions.
+     * @param estimatedRows estimated amount of psm rows of all datasets.
+     * @param estimatedScans estimated amount of distinct uniprot scan IDs.
+     * @param estimatedFileNumbers estimated amount of distinct file numbers.
+     * @param bytesPerScan estimated heap usage in bytes for each scan ID.
+     * @param estimatedBytes estimated heap usage in bytes of the complete comparison.
+     * @param availableBytes heap in bytes that is available for the comparison.
+     * @param cores amount of available processors.
+     */
+    public ExecutionPlan(final String method, final Strategy strategy, final int threads, final int partitions,
+            final long estimatedRows, final long estimatedScans, final int estimatedFileNumbers, final long bytesPerScan,
+            final long estimatedBytes, final long availableBytes, final int cores) {
+        this.method = method;
+        this.strategy = strategy;
+        this.threads = threads;
+        this.partitions = partitions;
+        this.estimatedRows = estimatedRows;
+        this.estimatedScans = estimatedScans;
+        this.estimatedFileNumbers = estimatedFileNumbers;
+        this.bytesPerScan = bytesPerScan;
+        this.estimatedBytes = estimatedBytes;
+        this.availableBytes = availableBytes;
+        this.cores = cores;
+    }
+
+    /**
+     * Provides the name of the mass spectrometry method.
+     * @return method name as String.
+     */
+    public final String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Provides the chosen strategy.
+     * @return strategy of the plan.
+     */
+    public final Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Provides the amount of parsing and matching threads.
+     * @return amount of threads.
+     */
+    public final int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Provides the amount of file number partitions.
+     * @return amount of partitions. (1 if the method is compared in a single pass)
+     */
+    public final int getPartitions() {
+        return this.partitions;
+    }
+
+    /**
+     * Provides the estimated heap usage of the complete comparison.
+     * @return estimated heap usage in bytes.
+     */
+    public final long getEstimatedBytes() {
+        return this.estimatedBytes;
+    }
+
+    /**
+     * Provides the heap that is available for the comparison.
+     * @return available heap in bytes.
+     */
+    public final long getAvailableBytes() {
+        return this.availableBytes;
+    }
+
+    /**
+     * Describes the plan and all estimates on multiple lines.
+     * @return description of the plan.
+     */
+    public final String describe() {
+        long megabyte = 1024 * 1024;
+        return "Execution plan for " + method + ":\n"
+                + "  Strategy: " + strategy + "\n"
+                + "  Threads: " + threads + " of " + cores + " cores\n"
+                + "  Partitions: " + partitions + "\n"
+                + "  Estimated psm rows: " + estimatedRows + "\n"
+                + "  Estimated scan IDs: " + estimatedScans + "\n"
+                + "  Estimated file numbers: " + estimatedFileNumbers + "\n"
+                + "  Estimated bytes per scan ID: " + bytesPerScan + "\n"
+                + "  Estimated heap: " + (estimatedBytes / megabyte) + " MB of " + (availableBytes / megabyte) + " MB available\n";
+    }
+
+    /**
+     * Overrides the normal toString() function to display the plan on a single line.
+     * @return return ExecutionPlan string values.
+     */
+    @Override
+    public final String toString() {
+        return "ExecutionPlan{Method; " + method + ", Strategy; " + strategy + ", Threads; " + threads + ", Partitions; "
+                + partitions + ", Estimated MB; " + (estimatedBytes / (1024 * 1024)) + ", Available MB; "
+                + (availableBytes / (1024 * 1024)) + "}";
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package planner;
+
+import collection.creator.LineChunkReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Chooses the strategy and thread count of a comparison before any psm file is parsed.
+ * The first part of each psm file is sampled to estimate the amount of rows, distinct scan IDs and the heap usage per
+ * scan ID. The estimate is compared with the available heap to choose between an in-memory comparison, a partitioned
+ * comparison or a streaming comparison.
+ *
+ * @author vnijenhuis
+ */
+public class ExecutionPlanner {
+
+    /**
+     * Amount of bytes that is sampled from the start of each psm file.
+     */
+    private static final int SAMPLE_BYTES = 1 << 20;
+
+    /**
+     * Estimated heap usage of a ScanID object with its lists, scan ID string and map entries.
+     */
+    private static final long SCAN_OVERHEAD = 480;
+
+    /**
+     * Estimated heap usage of a candidate sequence and score without the sequence characters.
+     */
+    private static final long CANDIDATE_OVERHEAD = 120;
+
+    /**
+     * Additional heap used by the matching indexes as a fraction of the collections.
+     */
+    private static final double MATCH_OVERHEAD = 1.25;
+
+    /**
+     * Fraction of the available heap that the comparison may use.
+     */
+    private static final double HEAP_FRACTION = 0.6;
+
+    /**
+     * Maximum amount of partitions before the streaming strategy is chosen.
+     */
+    private static final int MAX_PARTITIONS = 16;
+
+    /**
+     * Amount of available processors.
+     */
+    private final int cores;
+
+    /**
+     * Heap in bytes that is available for the comparison.
+     */
+    private final long availableBytes;
+
+    /**
+     * Creates an execution planner for the processors and heap of this JVM.
+     */
+    public ExecutionPlanner() {
+        Runtime runtime = Runtime.getRuntime();
+        this.cores = runtime.availableProcessors();
+        this.availableBytes = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Creates an execution planner for the given processors and heap.
+     *
+     * @param cores amount of available processors.
+     * @param availableBytes heap in bytes that is available for the comparison.
+     */
+    public ExecutionPlanner(final int cores, final long availableBytes) {
+        this.cores = cores;
+        this.availableBytes = availableBytes;
+    }
+
+    /**
+     * Creates the execution plan of a single method.
+     *
+     * @param method name of the ms method.
+     * @param uniprotFiles uniprot psm files.
+     * @param combinedFiles combinedmRNASeq psm files.
+     * @param individualFiles individualmRNASeq psm files.
+     * @param requestedThreads amount of threads given by the user. (0 lets the planner choose)
+     * @param ioThreads maximum amount of psm files that are read at the same time.
+     * @return execution plan of the method.
+     * @throws IOException could not read one of the psm files.
+     */
+    public final ExecutionPlan createPlan(final String method, final ArrayList<String> uniprotFiles,
+            final ArrayList<String> combinedFiles, final ArrayList<String> individualFiles, final int requestedThreads,
+            final int ioThreads) throws IOException {
+        HashSet<String> fileNumbers = new HashSet<>();
+        DatasetEstimate uniprot = estimateDataset(uniprotFiles, fileNumbers);
+        DatasetEstimate combined = estimateDataset(combinedFiles, fileNumbers);
+        DatasetEstimate individual = estimateDataset(individualFiles, fileNumbers);
+        //Combined and individual scan IDs are only kept if they are present in uniprot.
+        long scans = uniprot.scans;
+        long rows = uniprot.rows + combined.rows + individual.rows;
+        long collectionBytes = uniprot.getBytes(scans) + combined.getBytes(scans) + individual.getBytes(scans);
+        long estimatedBytes = (long) (collectionBytes * MATCH_OVERHEAD);
+        long bytesPerScan = scans == 0 ? 0 : estimatedBytes / scans;
+        int files = uniprotFiles.size() + combinedFiles.size() + individualFiles.size();
+        int threads = requestedThreads;
+        if (threads <= 0) {
+            threads = Math.max(1, Math.min(cores, files));
+        }
+        //Psm files are read in chunks, each reading and parsing thread buffers a single chunk.
+        long usableBytes = (long) (availableBytes * HEAP_FRACTION) - (long) LineChunkReader.CHUNK_BYTES * (threads + ioThreads);
+        ExecutionPlan.Strategy strategy = ExecutionPlan.Strategy.IN_MEMORY;
+        int partitions = 1;
+        if (estimatedBytes > usableBytes) {
+            strategy = ExecutionPlan.Strategy.PARTITIONED;
+            partitions = getPartitions(estimatedBytes, usableBytes);
+            if (partitions > MAX_PARTITIONS) {
+                //Streaming only collects a single psm file at a time.
+                strategy = ExecutionPlan.Strategy.STREAMING;
+                threads = 1;
+                partitions = getPartitions(estimatedBytes, (long) (availableBytes * HEAP_FRACTION) - LineChunkReader.CHUNK_BYTES);
+            }
+            //Partitions are divided on file number, so more partitions than file numbers do not reduce memory.
+            int fileNumberCount = Math.max(1, fileNumbers.size());
+            if (partitions > fileNumberCount) {
+                System.out.println("Warning: " + method + " has " + fileNumberCount + " file numbers, partitions can not"
+                        + " reduce the heap usage enough. The comparison may run out of memory.");
+                partitions = fileNumberCount;
+            }
+        }
+        return new ExecutionPlan(method, strategy, threads, partitions, rows, scans, fileNumbers.size(), bytesPerScan,
+                estimatedBytes, availableBytes, cores);
+    }
+
+    /**
+     * Calculates the amount of partitions that keeps each partition below the usable heap.
+     *
+     * @param estimatedBytes estimated heap usage of the complete comparison.
+     * @param usableBytes heap that a single partition may use.
+     * @return amount of partitions.
+     */
+    private int getPartitions(final long estimatedBytes, final long usableBytes) {
+        long partitionBytes = Math.max(usableBytes, 1 << 20);
+        return (int) Math.min(Integer.MAX_VALUE, (estimatedBytes + partitionBytes - 1) / partitionBytes);
+    }
+
+    /**
+     * Estimates the rows, scan IDs and sequence lengths of all psm files of a dataset.
+     *
+     * @param files psm files of the dataset.
+     * @param fileNumbers set that collects the file numbers that are found in the samples.
+     * @return estimate of the dataset.
+     * @throws IOException could not read one of the psm files.
+     */
+    private DatasetEstimate estimateDataset(final ArrayList<String> files, final HashSet<String> fileNumbers)
+            throws IOException {
+        DatasetEstimate estimate = new DatasetEstimate();
+        for (String file : files) {
+            sampleFile(file, estimate, fileNumbers);
+        }
+        return estimate;
+    }
+
+    /**
+     * Samples the start of a psm file and adds the estimate of the complete file to the dataset estimate.
+     *
+     * @param file psm file.
+     * @param estimate estimate of the dataset.
+     * @param fileNumbers set that collects the file numbers that are found in the sample.
+     * @throws IOException could not read the psm file.
+     */
+    private void sampleFile(final String file, final DatasetEstimate estimate, final HashSet<String> fileNumbers)
+            throws IOException {
+        long fileSize = new File(file).length();
+        byte[] content = new byte[(int) Math.min(fileSize, SAMPLE_BYTES)];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.readFully(content);
+        }
+        String[] lines = new String(content).split("\n");
+        //The last line of a partial sample can be cut off.
+        int lineCount = content.length < fileSize ? lines.length - 1 : lines.length;
+        if (lineCount < 2) {
+            return;
+        }
+        int sequenceIndex = -1;
+        int scanIndex = -1;
+        String[] header = lines[0].split(",");
+        for (int i = 0; i < header.length; i++) {
+            String column = header[i].toLowerCase();
+            if (column.equals("peptide")) {
+                sequenceIndex = i;
+            } else if (column.contains("scan") && !column.contains("accession")) {
+                scanIndex = i;
+            }
+        }
+        long sampledBytes = lines[0].length() + 1;
+        long rows = 0;
+        long sequenceChars = 0;
+        HashSet<String> scans = new HashSet<>();
+        for (int i = 1; i < lineCount; i++) {
+            sampledBytes += lines[i].length() + 1;
+            String[] data = lines[i].split(",");
+            rows++;
+            if (sequenceIndex >= 0 && data.length > sequenceIndex) {
+                sequenceChars += data[sequenceIndex].length();
+            }
+            if (scanIndex >= 0 && data.length > scanIndex) {
+                String scan = data[scanIndex];
+                scans.add(scan);
+                if (scan.contains(":")) {
+                    fileNumbers.add(scan.substring(0, scan.indexOf(':')));
+                }
+            }
+        }
+        //Scales the sample to the size of the complete file.
+        double scale = (double) fileSize / sampledBytes;
+        estimate.rows += (long) (rows * scale);
+        estimate.scans += (long) (scans.size() * scale);
+        estimate.sequenceChars += (long) (sequenceChars * scale);
+    }
+
+    /**
+     * Estimate of the psm files of a single dataset.
+     */
+    private static class DatasetEstimate {
+
+        /**
+         * Estimated amount of psm rows.
+         */
+        private long rows;
+
+        /**
+         * Estimated amount of distinct scan IDs.
+         */
+        private long scans;
+
+        /**
+         * Estimated amount of peptide sequence characters.
+         */
+        private long sequenceChars;
+
+        /**
+         * Estimates the heap usage of the scan collection of this dataset.
+         *
+         * @param maximumScans maximum amount of scan IDs that are kept.
+         * @return estimated heap usage in bytes.
+         */
+        private long getBytes(final long maximumScans) {
+            long keptScans = Math.min(scans, maximumScans);
+            double keptFraction = scans == 0 ? 0 : (double) keptScans / scans;
+            return keptScans * SCAN_OVERHEAD + (long) ((rows * CANDIDATE_OVERHEAD + sequenceChars * 2) * keptFraction);
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide fragmentation control
+ */
+package query;
+
+import collection.creator.IngestionExecutor;
+import collection.creator.PsmFilter;
+import collection.creator.ScanIDCollectionCreator;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import matrix.ScanIDComparator;
+import objects.PeptideCanonicalizer;
+import objects.ScanID;
+import tools.SampleSizeGenerator;
+import tools.ValidFileChecker;
+
+/**
+ * Queries matched scan IDs of a single method without writing an output file.
+ * The psm files are parsed when the first result is requested, each uniprot scan ID is matched with the combined and
+ * individual datasets when it is returned.
+ *
+ * Example: new ScanQuery(uniprot, combined, individual, "DB search psm.csv").setMinimumScore(20).stream()
+ *
+ * @author vnijenhuis
+ */
+public class ScanQuery implements Iterable<ScanID> {
+
+    /**
+     * Path to the uniprot dataset folder.
+     */
+    private final String uniprotPath;
+
+    /**
+     * Path to the combined dataset folder.
+     */
+    private final String combinedPath;
+
+    /**
+     * Path to the individual dataset folder.
+     */
+    private final String individualPath;
+
+    /**
+     * Name of the psm file.
+     */
+    private final String psmFile;
+
+    /**
+     * File numbers to return. (null returns all file numbers)
+     */
+    private HashSet<String> fileNumbers;
+
+    /**
+     * Sample folder names to return. (null returns all samples)
+     */
+    private HashSet<String> samples;
+
+    /**
+     * Minimum -10lgP score of a peptide spectrum match.
+     */
+    private double minimumScore;
+
+    /**
+     * Maximum amount of candidate sequences per scan ID and dataset. (0 keeps all candidates)
+     */
+    private int maximumCandidates;
+
+    /**
+     * Keeps the candidate sequences with the highest scores instead of the first candidate sequences if true.
+     */
+    private boolean topScores;
+
+    /**
+     * Skips decoy accessions if true.
+     */
+    private boolean excludeDecoys;
+
+    /**
+     * Only returns scan IDs that are matched in the combined or individual dataset if true.
+     */
+    private boolean matchedOnly;
+
+    /**
+     * Matches sequences regardless of their modifications if true.
+     */
+    private boolean ignoreModifications;
+
+    /**
+     * Amount of threads that parse psm files.
+     */
+    private int threads;
+
+    /**
+     * Maximum amount of psm files that are read at the same time.
+     */
+    private int ioThreads;
+
+    /**
+     * Creates a query for the datasets of a single method.
+     *
+     * @param uniprotPath path to the uniprot dataset folder. (/home/name/1D25/Uniprot/)
+     * @param combinedPath path to the combined dataset folder. (/home/name/1D25/CombinedmRNASeq/)
+     * @param individualPath path to the individual dataset folder. (/home/name/1D25/IndividualmRNASeq/)
+     * @param psmFile name of the psm file. (DB search psm.csv)
+     */
+    public ScanQuery(final String uniprotPath, final String combinedPath, final String individualPath, final String psmFile) {
+        this.uniprotPath = uniprotPath;
+        this.combinedPath = combinedPath;
+        this.individualPath = individualPath;
+        this.psmFile = psmFile;
+        this.minimumScore = Double.NEGATIVE_INFINITY;
+        this.maximumCandidates = 0;
+        this.topScores = false;
+        this.excludeDecoys = true;
+        this.matchedOnly = false;
+        this.ignoreModifications = false;
+        this.threads = 2;
+        this.ioThreads = 4;
+    }
+
+    /**
+     * Only returns scan IDs of the given file numbers. Rows of other file numbers are skipped while parsing.
+     *
+     * @param fileNumbers file numbers such as F1.
+     * @return this query.
+     */
+    public final ScanQuery setFileNumbers(final Collection<String> fileNumbers) {
+        this.fileNumbers = new HashSet<>(fileNumbers);
+        return this;
+    }
+
+    /**
+     * Only returns scan IDs of the given samples. Psm files of other samples are not read.
+     *
+     * @param samples sample folder names such as COPD1.
+     * @return this query.
+     */
+    public final ScanQuery setSamples(final Collection<String> samples) {
+        this.samples = new HashSet<>(samples);
+        return this;
+    }
+
+    /**
+     * Skips peptide spectrum matches below the given -10lgP score in all datasets.
+     *
+     * @param minimumScore minimum -10lgP score.
+     * @return this query.
+     */
+    public final ScanQuery setMinimumScore(final double minimumScore) {
+        this.minimumScore = minimumScore;
+        return this;
+    }
+
+    /**
+     * Limits the amount of candidate sequences per scan ID and dataset.
+     *
+     * @param maximumCandidates maximum amount of candidate sequences. (0 keeps all candidates)
+     * @return this query.
+     */
+    public final ScanQuery setMaximumCandidates(final int maximumCandidates) {
+        this.maximumCandidates = maximumCandidates;
+        this.topScores = false;
+        return this;
+    }
+
+    /**
+     * Keeps the candidate sequences with the highest scores per scan ID and dataset.
+     *
+     * @param topCandidates amount of candidate sequences with the highest -10lgP scores. (0 keeps all candidates)
+     * @return this query.
+     */
+    public final ScanQuery setTopCandidates(final int topCandidates) {
+        this.maximumCandidates = topCandidates;
+        this.topScores = topCandidates > 0;
+        return this;
+    }
+
+    /**
+     * Sets if decoy accessions are skipped.
+     *
+     * @param excludeDecoys skips decoy accessions if true.
+     * @return this query.
+     */
+    public final ScanQuery setExcludeDecoys(final boolean excludeDecoys) {
+        this.excludeDecoys = excludeDecoys;
+        return this;
+    }
+
+    /**
+     * Sets if only scan IDs that are matched in the combined or individual dataset are returned.
+     *
+     * @param matchedOnly only returns matched scan IDs if true.
+     * @return this query.
+     */
+    public final ScanQuery setMatchedOnly(final boolean matchedOnly) {
+        this.matchedOnly = matchedOnly;
+        return this;
+    }
+
+    /**
+     * Sets if sequences are matched regardless of their modifications, such as M(+15.99)PEPTIDE and MPEPTIDE.
+     *
+     * @param ignoreModifications matches sequences on their canonical form if true.
+     * @return this query.
+     */
+    public final ScanQuery setIgnoreModifications(final boolean ignoreModifications) {
+        this.ignoreModifications = ignoreModifications;
+        return this;
+    }
+
+    /**
+     * Sets the amount of threads used to read and parse psm files.
+     *
+     * @param threads amount of threads that parse psm files.
+     * @param ioThreads maximum amount of psm files that are read at the same time.
+     * @return this query.
+     */
+    public final ScanQuery setThreads(final int threads, final int ioThreads) {
+        this.threads = threads;
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Provides an iterator over the matched uniprot scan IDs. Psm files are parsed on the first call to hasNext() or next().
+     *
+     * @return iterator of ScanID objects.
+     */
+    @Override
+    public final Iterator<ScanID> iterator() {
+        return new MatchIterator();
+    }
+
+    /**
+     * Provides a sequential stream over the matched uniprot scan IDs. Psm files are parsed when the stream is consumed.
+     *
+     * @return stream of ScanID objects.
+     */
+    public final Stream<ScanID> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Parses the datasets and matches each uniprot scan ID when it is requested.
+     */
+    private class MatchIterator implements Iterator<ScanID> {
+
+        /**
+         * Iterator over the lists of uniprot scan IDs per file number.
+         */
+        private Iterator<ArrayList<ScanID>> fileIterator;
+
+        /**
+         * Iterator over the uniprot scan IDs of the current file number.
+         */
+        private Iterator<ScanID> scanIterator;
+
+        /**
+         * Combined scan IDs by scan ID.
+         */
+        private HashMap<String, ScanID> combinedIndex;
+
+        /**
+         * Individual scan IDs by scan ID.
+         */
+        private HashMap<String, ScanID> individualIndex;
+
+        /**
+         * Matches uniprot scan IDs with the combined dataset.
+         */
+        private ScanIDComparator combinedMatcher;
+
+        /**
+         * Matches uniprot scan IDs with the individual dataset.
+         */
+        private ScanIDComparator individualMatcher;
+
+        /**
+         * Next matched scan ID. (null if it is not matched yet)
+         */
+        private ScanID next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public ScanID next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ScanID scanObject = next;
+            next = null;
+            return scanObject;
+        }
+
+        /**
+         * Matches the next uniprot scan ID.
+         *
+         * @return matched ScanID or null if all scan IDs are returned.
+         */
+        private ScanID advance() {
+            if (fileIterator == null) {
+                try {
+                    load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            while (true) {
+                while (scanIterator == null || !scanIterator.hasNext()) {
+                    if (!fileIterator.hasNext()) {
+                        return null;
+                    }
+                    scanIterator = fileIterator.next().iterator();
+                }
+                ScanID uniprotScanObject = scanIterator.next();
+                ScanID combinedScanObject = combinedIndex.get(uniprotScanObject.getScanID());
+                if (combinedScanObject != null) {
+                    combinedMatcher.matchScan(uniprotScanObject, combinedScanObject);
+                }
+                ScanID individualScanObject = individualIndex.get(uniprotScanObject.getScanID());
+                if (individualScanObject != null) {
+                    individualMatcher.matchScan(uniprotScanObject, individualScanObject);
+                }
+                if (!matchedOnly || !uniprotScanObject.getCombinedSequences().isEmpty()
+                        || !uniprotScanObject.getIndividualSequences().isEmpty()) {
+                    return uniprotScanObject;
+                }
+            }
+        }
+
+        /**
+         * Parses the psm files of all datasets.
+         *
+         * @throws IOException could not find or read the psm files.
+         */
+        private void load() throws IOException {
+            ValidFileChecker fileChecker = new ValidFileChecker();
+            fileChecker.isDirectory(uniprotPath);
+            fileChecker.isDirectory(combinedPath);
+            fileChecker.isDirectory(individualPath);
+            ArrayList<String> uniprotPSMList = fileChecker.checkFileValidity(uniprotPath, psmFile);
+            ArrayList<String> combinedPSMList = fileChecker.checkFileValidity(combinedPath, psmFile);
+            ArrayList<String> individualPSMList = fileChecker.checkFileValidity(individualPath, psmFile);
+            //Sample names are taken from all files, so they do not depend on the sample filter.
+            ArrayList<String> sampleList = new ArrayList<>();
+            new SampleSizeGenerator().addSampleNames(uniprotPSMList, sampleList);
+            //Use folder names to get dataset and method names.
+            String separator = Pattern.quote(File.separator);
+            String[] uniprotFolders = uniprotPSMList.get(0).split(separator);
+            String[] combinedFolders = combinedPSMList.get(0).split(separator);
+            String[] individualFolders = individualPSMList.get(0).split(separator);
+            String method = uniprotFolders[uniprotFolders.length - 4];
+            ArrayList<String> datasets = new ArrayList<>();
+            datasets.add(uniprotFolders[uniprotFolders.length - 3]);
+            datasets.add(combinedFolders[combinedFolders.length - 3]);
+            datasets.add(individualFolders[individualFolders.length - 3]);
+            PsmFilter psmFilter = new PsmFilter(minimumScore, maximumCandidates, excludeDecoys, fileNumbers);
+            if (topScores) {
+                psmFilter = psmFilter.forTopScores(maximumCandidates);
+            }
+            IngestionExecutor executor = new IngestionExecutor(ioThreads, threads);
+            try {
+                ScanIDCollectionCreator scanCollection = new ScanIDCollectionCreator(executor);
+                HashMap<String, ArrayList<ScanID>> uniprotScans = scanCollection.createScanCollection(filterSamples(uniprotPSMList),
+                        datasets.get(0), method, datasets, sampleList, null, psmFilter);
+                HashSet<String> uniprotScanIDs = scanCollection.createScanFilter(uniprotScans);
+                combinedIndex = createIndex(scanCollection.createScanCollection(filterSamples(combinedPSMList),
+                        datasets.get(1), method, datasets, sampleList, uniprotScanIDs, psmFilter));
+                individualIndex = createIndex(scanCollection.createScanCollection(filterSamples(individualPSMList),
+                        datasets.get(2), method, datasets, sampleList, uniprotScanIDs, psmFilter));
+                combinedMatcher = new ScanIDComparator(uniprotScans, null, datasets.get(1), datasets);
+                individualMatcher = new ScanIDComparator(uniprotScans, null, datasets.get(2), datasets);
+                if (ignoreModifications) {
+                    PeptideCanonicalizer canonicalizer = new PeptideCanonicalizer();
+                    combinedMatcher.setCanonicalizer(canonicalizer);
+                    individualMatcher.setCanonicalizer(canonicalizer);
+                }
+                fileIterator = uniprotScans.values().iterator();
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        /**
+         * Removes psm files of samples that are not requested.
+         *
+         * @param files list of psm files.
+         * @return list of psm files of the requested samples.
+         */
+        private ArrayList<String> filterSamples(final ArrayList<String> files) {
+            if (samples == null) {
+                return files;
+            }
+            ArrayList<String> sampleFiles = new ArrayList<>();
+            for (String file : files) {
+                String[] folders = file.split(Pattern.quote(File.separator));
+                if (samples.contains(folders[folders.length - 2])) {
+                    sampleFiles.add(file);
+                }
+            }
+            return sampleFiles;
+        }
+
+        /**
+         * Creates an index of scan IDs.
+         *
+         * @param scanFiles HashMap with the file number as key and a list of ScanIDs as value.
+         * @return HashMap with the scan ID as key and the ScanID object as value.
+         */
+        private HashMap<String, ScanID> createIndex(final HashMap<String, ArrayList<ScanID>> scanFiles) {
+            HashMap<String, ScanID> index = new HashMap<>();
+            for (ArrayList<ScanID> scanList : scanFiles.values()) {
+                for (ScanID scanObject : scanList) {
+                    index.put(scanObject.getScanID(), scanObject);
+                }
+            }
+            return index;
+        }
+    }
+}
@@ -1,60 +1,149 @@
-/*
- * @author Vikthor Nijenhuis
- * @project peptide spectrum identification quality control  *
- */
-package tools;
-
-import java.io.File;
-import java.io.FilenameFilter;
-import java.util.ArrayList;
-
-/**
- * Determines the highest sampleSize of COPD and Healthy samples.
- * @author vnijenhuis
- */
-public class SampleSizeGenerator {
-    /**
-     * Gathers sample numbers from the files.
-     * @param filePath path of the files.
-     * @param sampleList list of samples.
-     * @return list of samples sizes: Healthy on index 0, COPD on index 1.
-     */
-    public final ArrayList<Integer> getSamples(final String filePath, final ArrayList<String> sampleList) {
-        File file = new File(filePath);
-        String[] directories = file.list(new FilenameFilter() {
-            @Override
-            public boolean accept(File current, String name) {
-                return new File(current, name).isDirectory();
-            }
-        });
-        Integer targetSampleSize = 0;
-        Integer controlSampleSize = 0;
-        String controlSample = sampleList.get(0);
-        String targetSample = sampleList.get(1);
-        //Goes through all sample folders inside the RNASeq folder.
-        for (String sample: directories) {
-            //Matches to the target sample(s)
-            if (sample.contains(targetSample)) {
-                int index = (Integer.parseInt(sample.substring(targetSample.length())));
-                //Amount of copd samples.
-                if (targetSampleSize < index) {
-                    targetSampleSize = index;
-                }
-            }
-            //Matches to the control sample(s).
-            if (sample.contains(controlSample)) {
-                int index = (Integer.parseInt(sample.substring(controlSample.length())));
-                //Amount of control samples.
-                if (controlSampleSize < index) {
-                    controlSampleSize = index;
-                }
-            } 
-        }
-        //Returns sample sizes of COPD and Healthy.
-        ArrayList<Integer> sampleSize = new ArrayList<>();
-        sampleSize.add(controlSampleSize);
-        sampleSize.add(targetSampleSize);
-        //Matrix is generated based on the biggest samplesize.
-        return sampleSize;
-    }
-}
+/*
+ * @author Vikthor Nijenhuis
+ * @project peptide spectrum identification quality control  *
+ */
+package tools;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Determines the highest sampleSize of COPD and Healthy samples.
+ * @author vnijenhuis
+ */
+public class SampleSizeGenerator {
+    /**
+     * Sample folder name: the sample name and a sample number of at most 9 digits, optionally separated by an underscore.
+     */
+    private static final Pattern SAMPLE_FOLDER = Pattern.compile("(.*?)_?(\\d{1,9})");
+
+    /**
+     * Gathers sample numbers from the files.
+     * @param filePath path of the files.
+     * @param sampleList list of samples.
+     * @return list of samples sizes: Healthy on index 0, COPD on index 1.
+     */
+    public final ArrayList<Integer> getSamples(final String filePath, final ArrayList<String> sampleList) {
+        File file = new File(filePath);
+        String[] directories = file.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File current, String name) {
+                return new File(current, name).isDirectory();
+            }
+        });
+        Integer targetSampleSize = 0;
+        Integer controlSampleSize = 0;
+        String controlSample = sampleList.get(0);
+        String targetSample = sampleList.get(1);
+        //Goes through all sample folders inside the RNASeq folder.
+        for (String sample: directories) {
+            //Matches to the target sample(s)
+            if (sample.contains(targetSample)) {
+                int index = (Integer.parseInt(sample.substring(targetSample.length())));
+                //Amount of copd samples.
+                if (targetSampleSize < index) {
+                    targetSampleSize = index;
+                }
+            }
+            //Matches to the control sample(s).
+            if (sample.contains(controlSample)) {
+                int index = (Integer.parseInt(sample.substring(controlSample.length())));
+                //Amount of control samples.
+                if (controlSampleSize < index) {
+                    controlSampleSize = index;
+                }
+            } 
+        }
+        //Returns sample sizes of COPD and Healthy.
+        ArrayList<Integer> sampleSize = new ArrayList<>();
+        sampleSize.add(controlSampleSize);
+        sampleSize.add(targetSampleSize);
+        //Matrix is generated based on the biggest samplesize.
+        return sampleSize;
+    }
+
+    /**
+     * Adds the sample names (without sample numbers) of the sample folders of each file to the list of samples.
+     * @param files list of psm files inside sample folders.
+     * @param sampleList list of samples.
+     * @return highest sample number.
+     */
+    public final int addSampleNames(final ArrayList<String> files, final ArrayList<String> sampleList) {
+        int sampleSize = 0;
+        for (String file: files) {
+            String sample = getSampleFolder(file);
+            int newSize = getSampleNumber(sample);
+            if (sampleSize < newSize) {
+                sampleSize = newSize;
+            }
+            sample = getSampleName(sample);
+            if (!sampleList.contains(sample)) {
+                sampleList.add(sample);
+            }
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Provides the sample folders of the psm files, ordered on the sample name in the order of the list of samples and
+     * then on the sample number.
+     * @param files list of psm files inside sample folders.
+     * @param sampleList list of samples.
+     * @return list of sample folder names. (Control1, Control2, COPD1)
+     */
+    public final ArrayList<String> getSampleFolders(final ArrayList<String> files, final ArrayList<String> sampleList) {
+        ArrayList<String> sampleFolders = new ArrayList<>();
+        for (String file: files) {
+            String sample = getSampleFolder(file);
+            if (!sampleFolders.contains(sample)) {
+                sampleFolders.add(sample);
+            }
+        }
+        sampleFolders.sort((first, second) -> {
+            int order = Integer.compare(sampleList.indexOf(getSampleName(first)), sampleList.indexOf(getSampleName(second)));
+            if (order == 0) {
+                order = Integer.compare(getSampleNumber(first), getSampleNumber(second));
+            }
+            return order;
+        });
+        return sampleFolders;
+    }
+
+    /**
+     * Provides the sample folder of a psm file.
+     * @param file path of a psm file inside a sample folder.
+     * @return name of the sample folder. (COPD1)
+     * @throws IllegalArgumentException the sample folder does not end with a sample number.
+     */
+    private String getSampleFolder(final String file) {
+        String[] folders = file.split(Pattern.quote(File.separator));
+        String sample = folders[folders.length - 2];
+        if (!SAMPLE_FOLDER.matcher(sample).matches()) {
+            throw new IllegalArgumentException("Sample folder '" + sample + "' does not end with a sample number: " + file);
+        }
+        return sample;
+    }
+
+    /**
+     * Removes the sample number at the end of a sample folder name, digits inside the sample name are kept.
+     * @param sample name of the sample folder. (COPD1 or COPD_1)
+     * @return sample name without sample number. (COPD)
+     */
+    private String getSampleName(final String sample) {
+        Matcher matcher = SAMPLE_FOLDER.matcher(sample);
+        return matcher.matches() ? matcher.group(1) : sample;
+    }
+
+    /**
+     * Provides the sample number at the end of a sample folder name.
+     * @param sample name of the sample folder. (COPD1 or COPD_1)
+     * @return sample number or 0 if the folder name does not end with a sample number.
+     */
+    private int getSampleNumber(final String sample) {
+        Matcher matcher = SAMPLE_FOLDER.matcher(sample);
+        return matcher.matches() ? Integer.parseInt(matcher.group(2)) : 0;
+    }
+}